@@ -0,0 +1,21 @@
+package com.bscllc.taxis.util;
+
+import java.util.List;
+
+/**
+ * Receives consecutive chunks of records emitted by a streaming producer
+ * such as {@link TripDataParser#streamGreenTripdata}.
+ *
+ * @param <T> record type
+ */
+@FunctionalInterface
+public interface ChunkConsumer<T> {
+
+    /**
+     * Accepts the next chunk of records. Implementations may block to apply backpressure.
+     *
+     * @param chunk records in file order; ownership passes to the consumer
+     * @throws InterruptedException if interrupted while waiting to accept the chunk
+     */
+    void accept(List<T> chunk) throws InterruptedException;
+}
@@ -0,0 +1,219 @@
+package com.bscllc.taxis.util;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Producer/consumer pipeline that overlaps producing chunks of records (e.g. parsing a
+ * parquet file) with writing them to a sink.
+ * The producer runs on the calling thread and hands chunks to a bounded queue that is
+ * drained by a configurable number of writer threads. When the queue is full the producer
+ * blocks, so at most {@code queueCapacity + writerThreads} chunks are in memory at once.
+ * Writers run on platform or virtual threads depending on the {@link ExecutorMode}; with
+ * virtual threads, hundreds of blocking writers cost no more than a few OS threads.
+ * <p>
+ * This is a {@link FanOutPipeline} with a single sink whose writes are acknowledged as soon as
+ * they return.
+ */
+public class ChunkPipeline implements AutoCloseable {
+
+    private final FanOutPipeline pipeline;
+
+    /**
+     * Produces chunks of records into the pipeline.
+     *
+     * @param <T> record type
+     */
+    @FunctionalInterface
+    public interface Producer<T> {
+
+        /**
+         * Emits all chunks to the consumer, blocking when the pipeline is full.
+         *
+         * @param consumer pipeline entry point
+         * @throws Exception if producing fails
+         */
+        void produce(ChunkConsumer<T> consumer) throws Exception;
+    }
+
+    /**
+     * Writes a chunk of records to the sink. Called concurrently from the writer threads.
+     *
+     * @param <T> record type
+     */
+    @FunctionalInterface
+    public interface Writer<T> {
+
+        /**
+         * Writes one chunk.
+         *
+         * @param chunk records to write
+         * @throws Exception if writing fails; the pipeline is aborted
+         */
+        void write(List<T> chunk) throws Exception;
+    }
+
+    /**
+     * Builder class for creating ChunkPipeline instances.
+     */
+    public static class Builder {
+        private String name = "ChunkPipeline";
+        private int queueCapacity = 4;
+        private int writerThreads = 2;
+        private ExecutorMode executorMode = ExecutorMode.PLATFORM;
+
+        /**
+         * Sets the name used for writer threads.
+         *
+         * @param name pipeline name
+         * @return this builder
+         */
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of chunks waiting between producer and writers.
+         *
+         * @param queueCapacity queue capacity in chunks
+         * @return this builder
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the number of writer threads draining the queue per run.
+         *
+         * @param writerThreads number of concurrent writers
+         * @return this builder
+         */
+        public Builder writerThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+            return this;
+        }
+
+        /**
+         * Sets the thread model for writers.
+         *
+         * @param executorMode PLATFORM or VIRTUAL threads
+         * @return this builder
+         */
+        public Builder executorMode(ExecutorMode executorMode) {
+            this.executorMode = executorMode;
+            return this;
+        }
+
+        /**
+         * Builds the ChunkPipeline instance.
+         *
+         * @return configured ChunkPipeline
+         * @throws IllegalArgumentException if capacity or writer count is not positive
+         */
+        public ChunkPipeline build() {
+            if (queueCapacity <= 0) {
+                throw new IllegalArgumentException("Queue capacity must be positive");
+            }
+            if (writerThreads <= 0) {
+                throw new IllegalArgumentException("Writer threads must be positive");
+            }
+            return new ChunkPipeline(this);
+        }
+    }
+
+    /**
+     * Creates a new Builder instance.
+     *
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private ChunkPipeline(Builder builder) {
+        this.pipeline = FanOutPipeline.builder()
+                .name(builder.name)
+                .queueCapacity(builder.queueCapacity)
+                .writerThreads(builder.writerThreads)
+                .executorMode(builder.executorMode)
+                .build();
+    }
+
+    /**
+     * Runs the producer on the calling thread while the writer threads drain its chunks.
+     * Returns once every chunk has been written. If the producer or any writer fails,
+     * the remaining chunks are discarded and the first failure is rethrown.
+     *
+     * @param producer source of chunks
+     * @param writer sink for chunks
+     * @param <T> record type
+     * @return total number of records written
+     * @throws Exception the first failure raised by the producer or a writer
+     */
+    public <T> long run(Producer<T> producer, Writer<T> writer) throws Exception {
+        FanOutPipeline.Sink<T> sink = new FanOutPipeline.Sink<>() {
+            @Override
+            public String name() {
+                return pipeline.getName();
+            }
+
+            @Override
+            public CompletionStage<?> write(List<T> chunk) throws Exception {
+                writer.write(chunk);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        try {
+            return pipeline.run(producer, List.of(sink)).get(sink.name());
+        } catch (FanOutPipeline.SinkFailureException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Gets the pipeline name.
+     *
+     * @return pipeline name
+     */
+    public String getName() {
+        return pipeline.getName();
+    }
+
+    /**
+     * Gets the queue capacity in chunks.
+     *
+     * @return queue capacity
+     */
+    public int getQueueCapacity() {
+        return pipeline.getQueueCapacity();
+    }
+
+    /**
+     * Gets the number of writer threads per run.
+     *
+     * @return writer threads
+     */
+    public int getWriterThreads() {
+        return pipeline.getWriterThreads();
+    }
+
+    /**
+     * Gets the thread model of the writers.
+     *
+     * @return executor mode
+     */
+    public ExecutorMode getExecutorMode() {
+        return pipeline.getExecutorMode();
+    }
+
+    /**
+     * Shuts down the writer threads.
+     */
+    @Override
+    public void close() {
+        pipeline.close();
+    }
+}
@@ -0,0 +1,49 @@
+package com.bscllc.taxis.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread model for blocking sink work (JDBC batches, HTTP bulk requests).
+ * <ul>
+ *   <li>{@link #PLATFORM}: a cached pool of daemon platform threads, one OS thread per task.</li>
+ *   <li>{@link #VIRTUAL}: one virtual thread per task. Blocking I/O unmounts the virtual thread,
+ *       so hundreds of in-flight writes share a handful of carrier threads. Shared state touched
+ *       from such tasks must be guarded with {@code java.util.concurrent} locks rather than
+ *       {@code synchronized}, which pins the carrier thread while blocked.</li>
+ * </ul>
+ */
+public enum ExecutorMode {
+    PLATFORM,
+    VIRTUAL;
+
+    /**
+     * Creates an unbounded executor running each task on a thread of this mode.
+     * Threads are named {@code namePrefix-N}.
+     *
+     * @param namePrefix thread name prefix
+     * @return new executor; the caller shuts it down
+     */
+    public ExecutorService newExecutor(String namePrefix) {
+        if (this == VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix + "-", 1).factory());
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, namePrefix + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Parses a configured mode name, case-insensitively. Unknown names fall back to PLATFORM.
+     *
+     * @param name mode name
+     * @return executor mode
+     */
+    public static ExecutorMode fromString(String name) {
+        return "VIRTUAL".equalsIgnoreCase(name) ? VIRTUAL : PLATFORM;
+    }
+}
@@ -0,0 +1,499 @@
+package com.bscllc.taxis.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipeline that produces chunks of records once (e.g. parsing a parquet file) and fans every
+ * chunk out to several sinks, such as the database and the search index, concurrently.
+ * <p>
+ * Each sink has its own bounded queue and writer threads, so a slow write to one sink does not
+ * hold up the others; the producer blocks only when some sink's queue is full, which bounds
+ * memory to {@code queueCapacity + writerThreads} chunks per sink. Chunks are shared between
+ * sinks and must not be modified by them.
+ * <p>
+ * A sink may acknowledge a chunk later than its write returns (e.g. once a bulk request
+ * completes). {@link #run} flushes every sink and returns only after every sink has
+ * acknowledged every chunk, so a caller can safely move the input file afterwards.
+ * <p>
+ * Sinks are acknowledged independently: a failing sink stops receiving chunks while the others
+ * carry on to the end of the stream, and the {@link SinkFailureException} tells the caller which
+ * sinks completed, so a retry can skip them.
+ */
+public class FanOutPipeline implements AutoCloseable {
+
+    private static final List<Object> END_OF_STREAM = new ArrayList<>(0);
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final String name;
+    private final int queueCapacity;
+    private final int writerThreads;
+    private final ExecutorMode executorMode;
+    private final ExecutorService executor;
+    private final AcknowledgementListener acknowledgementListener;
+
+    /**
+     * Destination of the chunks of a run. Writes are called concurrently from the sink's
+     * writer threads.
+     *
+     * @param <T> record type
+     */
+    public interface Sink<T> {
+
+        /**
+         * Gets the sink name, used as key of the run result.
+         *
+         * @return sink name
+         */
+        String name();
+
+        /**
+         * Writes or queues one chunk. May block to apply backpressure.
+         *
+         * @param chunk records to write; shared with other sinks, read only
+         * @return completes once the chunk is durable in the sink, exceptionally if it is not
+         * @throws Exception if writing fails; the sink gets no further chunks of the run
+         */
+        CompletionStage<?> write(List<T> chunk) throws Exception;
+
+        /**
+         * Sends anything buffered, so that pending acknowledgements complete. Called once per
+         * run after the last write.
+         *
+         * @throws Exception if flushing fails
+         */
+        default void flush() throws Exception {
+        }
+
+        /**
+         * Checks whether writes may run concurrently; if not, the sink gets a single writer.
+         *
+         * @return true if several writer threads may call {@link #write} at once
+         */
+        default boolean concurrentWrites() {
+            return true;
+        }
+    }
+
+    /**
+     * Notified when a sink acknowledges a chunk, e.g. to update metrics.
+     */
+    @FunctionalInterface
+    public interface AcknowledgementListener {
+
+        /**
+         * Called once per acknowledged chunk, on the thread completing the acknowledgement.
+         *
+         * @param sink sink name
+         * @param records records in the chunk
+         */
+        void acknowledged(String sink, int records);
+    }
+
+    /**
+     * Thrown by {@link #run} when one or more sinks failed. The other sinks acknowledged every
+     * chunk of the run. The cause is the first sink failure.
+     */
+    public static class SinkFailureException extends Exception {
+
+        private final Map<String, Long> acknowledged;
+        private final Map<String, Exception> failures;
+
+        SinkFailureException(Map<String, Long> acknowledged, Map<String, Exception> failures) {
+            super("Sink " + failures.keySet().iterator().next() + " failed: " +
+                    failures.values().iterator().next().getMessage(), failures.values().iterator().next());
+            this.acknowledged = Collections.unmodifiableMap(acknowledged);
+            this.failures = Collections.unmodifiableMap(failures);
+            failures.values().stream().skip(1).forEach(this::addSuppressed);
+        }
+
+        /**
+         * Gets the records acknowledged per sink name, including the failed sinks.
+         *
+         * @return acknowledged records per sink, in sink order
+         */
+        public Map<String, Long> getAcknowledged() {
+            return acknowledged;
+        }
+
+        /**
+         * Gets the failure of each failed sink.
+         *
+         * @return failures per sink name, in sink order
+         */
+        public Map<String, Exception> getFailures() {
+            return failures;
+        }
+
+        /**
+         * Gets the sinks that acknowledged every chunk of the run.
+         *
+         * @return names of the sinks that did not fail, in sink order
+         */
+        public Set<String> getCompletedSinks() {
+            Set<String> completed = new LinkedHashSet<>(acknowledged.keySet());
+            completed.removeAll(failures.keySet());
+            return completed;
+        }
+    }
+
+    /**
+     * Builder class for creating FanOutPipeline instances.
+     */
+    public static class Builder {
+        private String name = "FanOutPipeline";
+        private int queueCapacity = 4;
+        private int writerThreads = 2;
+        private ExecutorMode executorMode = ExecutorMode.PLATFORM;
+        private AcknowledgementListener acknowledgementListener = (sink, records) -> { };
+
+        /**
+         * Sets the name used for writer threads.
+         *
+         * @param name pipeline name
+         * @return this builder
+         */
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of chunks waiting for each sink.
+         *
+         * @param queueCapacity queue capacity in chunks, per sink
+         * @return this builder
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the number of writer threads draining each sink's queue per run.
+         *
+         * @param writerThreads number of concurrent writers, per sink
+         * @return this builder
+         */
+        public Builder writerThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+            return this;
+        }
+
+        /**
+         * Sets the thread model for writers.
+         *
+         * @param executorMode PLATFORM or VIRTUAL threads
+         * @return this builder
+         */
+        public Builder executorMode(ExecutorMode executorMode) {
+            this.executorMode = executorMode;
+            return this;
+        }
+
+        /**
+         * Sets the listener notified of every acknowledged chunk.
+         *
+         * @param acknowledgementListener listener
+         * @return this builder
+         */
+        public Builder onAcknowledged(AcknowledgementListener acknowledgementListener) {
+            this.acknowledgementListener = acknowledgementListener;
+            return this;
+        }
+
+        /**
+         * Builds the FanOutPipeline instance.
+         *
+         * @return configured FanOutPipeline
+         * @throws IllegalArgumentException if capacity or writer count is not positive
+         */
+        public FanOutPipeline build() {
+            if (queueCapacity <= 0) {
+                throw new IllegalArgumentException("Queue capacity must be positive");
+            }
+            if (writerThreads <= 0) {
+                throw new IllegalArgumentException("Writer threads must be positive");
+            }
+            return new FanOutPipeline(this);
+        }
+    }
+
+    /**
+     * Creates a new Builder instance.
+     *
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private FanOutPipeline(Builder builder) {
+        this.name = builder.name;
+        this.queueCapacity = builder.queueCapacity;
+        this.writerThreads = builder.writerThreads;
+        this.executorMode = builder.executorMode;
+        this.executor = executorMode.newExecutor(name + "-Writer");
+        this.acknowledgementListener = builder.acknowledgementListener;
+    }
+
+    /**
+     * Runs the producer on the calling thread while each sink's writers drain their copy of the
+     * chunk stream. Returns once every sink has acknowledged every chunk. A failing sink gets no
+     * further chunks while the other sinks carry on; once every sink has failed, the producer is
+     * stopped. If the producer fails, the remaining chunks are discarded for all sinks. In every
+     * case the acknowledgements already requested are awaited before the failure is thrown.
+     *
+     * @param producer source of chunks
+     * @param sinks destinations of every chunk, with distinct names
+     * @param <T> record type
+     * @return records acknowledged per sink name, in sink order
+     * @throws IllegalArgumentException if there is no sink or two sinks share a name
+     * @throws SinkFailureException if one or more sinks failed
+     * @throws Exception the failure raised by the producer
+     */
+    public <T> Map<String, Long> run(ChunkPipeline.Producer<T> producer, List<? extends Sink<T>> sinks) throws Exception {
+        if (sinks.isEmpty()) {
+            throw new IllegalArgumentException("At least one sink is required");
+        }
+        Set<String> names = new HashSet<>();
+        for (Sink<T> sink : sinks) {
+            if (!names.add(sink.name())) {
+                throw new IllegalArgumentException("Duplicate sink name: " + sink.name());
+            }
+        }
+        AtomicReference<Exception> aborted = new AtomicReference<>();
+        List<Lane<T>> lanes = new ArrayList<>(sinks.size());
+        for (Sink<T> sink : sinks) {
+            Lane<T> lane = new Lane<>(sink, queueCapacity);
+            int writers = sink.concurrentWrites() ? writerThreads : 1;
+            for (int i = 0; i < writers; i++) {
+                lane.writers.add(executor.submit(() -> drain(lane, aborted)));
+            }
+            lanes.add(lane);
+        }
+
+        try {
+            producer.produce(chunk -> {
+                for (Lane<T> lane : lanes) {
+                    while (lane.failure.get() == null
+                            && !lane.queue.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        // A failed sink's writers still drain, but it is skipped from now on
+                    }
+                }
+                if (lanes.stream().allMatch(lane -> lane.failure.get() != null)) {
+                    throw new CancellationException("Pipeline " + name + " aborted: every sink failed");
+                }
+            });
+        } catch (CancellationException e) {
+            // Every sink failed; their exceptions are thrown below
+            if (lanes.stream().anyMatch(lane -> lane.failure.get() == null)) {
+                throw e;
+            }
+        } catch (Exception e) {
+            aborted.compareAndSet(null, e);
+        } finally {
+            for (Lane<T> lane : lanes) {
+                finish(lane);
+            }
+            for (Lane<T> lane : lanes) {
+                awaitAcknowledged(lane);
+            }
+        }
+
+        Exception error = aborted.get();
+        if (error != null) {
+            throw error;
+        }
+        Map<String, Long> acknowledged = new LinkedHashMap<>();
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        for (Lane<T> lane : lanes) {
+            acknowledged.put(lane.sink.name(), lane.acknowledged.get());
+            if (lane.failure.get() != null) {
+                failures.put(lane.sink.name(), lane.failure.get());
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new SinkFailureException(acknowledged, failures);
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Writer loop of one sink: takes chunks until the end-of-stream marker. After a failure of
+     * the sink or the producer it keeps draining without writing so the producer never blocks
+     * forever.
+     */
+    private <T> void drain(Lane<T> lane, AtomicReference<Exception> aborted) {
+        while (true) {
+            List<T> chunk;
+            try {
+                chunk = lane.queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.failure.compareAndSet(null, e);
+                return;
+            }
+            if (chunk == END_OF_STREAM) {
+                return;
+            }
+            if (lane.failure.get() != null || aborted.get() != null) {
+                continue;
+            }
+            try {
+                int size = chunk.size();
+                CompletableFuture<?> ack = lane.sink.write(chunk).toCompletableFuture()
+                        .whenComplete((result, error) -> {
+                            if (error == null) {
+                                lane.acknowledged.addAndGet(size);
+                                acknowledgementListener.acknowledged(lane.sink.name(), size);
+                            } else {
+                                lane.failure.compareAndSet(null, unwrap(error));
+                            }
+                        });
+                lane.acks.add(ack);
+            } catch (Exception e) {
+                lane.failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /**
+     * Signals end of stream to every writer of a sink and waits for them to finish.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void finish(Lane<T> lane) throws InterruptedException {
+        for (int i = 0; i < lane.writers.size(); i++) {
+            while (!lane.queue.offer((List<T>) (List<?>) END_OF_STREAM, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (lane.writers.stream().allMatch(Future::isDone)) {
+                    break;
+                }
+            }
+        }
+        for (Future<?> future : lane.writers) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // drain() records its own failures; nothing else can be thrown here
+            }
+        }
+    }
+
+    /**
+     * Flushes a sink and waits for every acknowledgement it was asked for, also after a
+     * failure, so nothing of the run is still in flight when it returns.
+     */
+    private <T> void awaitAcknowledged(Lane<T> lane) throws InterruptedException {
+        try {
+            lane.sink.flush();
+        } catch (Exception e) {
+            lane.failure.compareAndSet(null, e);
+        }
+        // The writers have finished, so every acknowledgement of the run is in the queue
+        for (CompletableFuture<?> ack : lane.acks) {
+            try {
+                ack.get();
+            } catch (ExecutionException e) {
+                // recorded by the completion handler in drain()
+            }
+        }
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception exception ? exception : new ExecutionException(cause);
+    }
+
+    /**
+     * Gets the pipeline name.
+     *
+     * @return pipeline name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the queue capacity in chunks, per sink.
+     *
+     * @return queue capacity
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the number of writer threads per sink and run, for sinks allowing concurrent writes.
+     *
+     * @return writer threads
+     */
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * Gets the thread model of the writers.
+     *
+     * @return executor mode
+     */
+    public ExecutorMode getExecutorMode() {
+        return executorMode;
+    }
+
+    /**
+     * Shuts down the writer threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue, writers and acknowledgements of one sink during a run.
+     */
+    private static final class Lane<T> {
+        final Sink<T> sink;
+        final BlockingQueue<List<T>> queue;
+        final List<Future<?>> writers = new ArrayList<>();
+        // Lock-free, so writers on virtual threads never pin their carrier while adding
+        final Queue<CompletableFuture<?>> acks = new ConcurrentLinkedQueue<>();
+        final AtomicLong acknowledged = new AtomicLong();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Lane(Sink<T> sink, int queueCapacity) {
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
+}
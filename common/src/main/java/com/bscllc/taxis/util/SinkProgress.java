@@ -0,0 +1,142 @@
+package com.bscllc.taxis.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers which sinks already acknowledged every record of an input file that failed in
+ * another sink, so that processing the file again skips them. Without it, a file dropped again
+ * after a partial failure would be written twice to sinks without idempotent writes, such as
+ * the database.
+ * <p>
+ * Files are identified by name and size. The progress is kept in a properties file that is
+ * replaced atomically on every change, so it survives restarts.
+ */
+public class SinkProgress {
+
+    private final Path stateFile;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Creates a progress store backed by the given properties file, created on first write.
+     *
+     * @param stateFile properties file holding the completed sinks per file
+     */
+    public SinkProgress(Path stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Gets the sinks that already acknowledged every record of a file.
+     *
+     * @param file input file
+     * @return names of the completed sinks, empty if the file was never partially processed
+     * @throws IOException if the file or the state file cannot be read
+     */
+    public Set<String> completedSinks(Path file) throws IOException {
+        String key = key(file);
+        lock.lock();
+        try {
+            return parse(loadState().getProperty(key, ""));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the sinks that acknowledged every record of a file, adding to those recorded
+     * before.
+     *
+     * @param file input file, before it is moved
+     * @param sinks names of the sinks that completed the file
+     * @throws IOException if the file cannot be read or the state file cannot be written
+     */
+    public void recordCompleted(Path file, Set<String> sinks) throws IOException {
+        String key = key(file);
+        lock.lock();
+        try {
+            Properties state = loadState();
+            Set<String> completed = parse(state.getProperty(key, ""));
+            completed.addAll(sinks);
+            if (completed.isEmpty()) {
+                return;
+            }
+            state.setProperty(key, String.join(",", completed));
+            storeState(state);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets a file once every sink has completed it.
+     *
+     * @param file input file, before it is moved
+     * @throws IOException if the file cannot be read or the state file cannot be written
+     */
+    public void clear(Path file) throws IOException {
+        String key = key(file);
+        lock.lock();
+        try {
+            Properties state = loadState();
+            if (state.remove(key) != null) {
+                storeState(state);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the properties file holding the progress.
+     *
+     * @return state file
+     */
+    public Path getStateFile() {
+        return stateFile;
+    }
+
+    private static String key(Path file) throws IOException {
+        return file.getFileName() + ":" + Files.size(file);
+    }
+
+    private static Set<String> parse(String sinks) {
+        Set<String> parsed = new LinkedHashSet<>();
+        Arrays.stream(sinks.split(",")).filter(sink -> !sink.isEmpty()).forEach(parsed::add);
+        return parsed;
+    }
+
+    private Properties loadState() throws IOException {
+        Properties state = new Properties();
+        if (Files.exists(stateFile)) {
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                state.load(in);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Writes the state file atomically so a crash never leaves it truncated.
+     */
+    private void storeState(Properties state) throws IOException {
+        Path parent = stateFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            state.store(out, "Sinks that completed partially failed input files");
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,244 @@
+package com.bscllc.taxis.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory lookup of TLC taxi zones by location ID: centroid (WGS84 longitude/latitude),
+ * borough and zone name. Loaded once from a CSV with a header row containing at least
+ * {@code LocationID}, {@code longitude} and {@code latitude}; {@code Borough} and {@code Zone}
+ * are optional. Other columns (e.g. {@code service_zone}) are ignored.
+ * <p>
+ * Location IDs are small dense integers, so the lookup is a set of primitive arrays indexed
+ * by ID rather than a map of boxed objects, and is safe to share between threads once loaded.
+ */
+public final class TaxiZoneCentroids {
+
+    private final double[] longitudes;
+    private final double[] latitudes;
+    private final String[] boroughs;
+    private final String[] zones;
+    private final boolean[] present;
+    private final int size;
+
+    private TaxiZoneCentroids(double[] longitudes, double[] latitudes, String[] boroughs,
+                              String[] zones, boolean[] present, int size) {
+        this.longitudes = longitudes;
+        this.latitudes = latitudes;
+        this.boroughs = boroughs;
+        this.zones = zones;
+        this.present = present;
+        this.size = size;
+    }
+
+    /**
+     * Loads zone centroids from a CSV file.
+     *
+     * @param file CSV file
+     * @return zone lookup
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static TaxiZoneCentroids load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Loads zone centroids from CSV content.
+     *
+     * @param reader CSV content; not closed
+     * @return zone lookup
+     * @throws IOException if the content cannot be read or is malformed
+     */
+    public static TaxiZoneCentroids load(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader br ? br : new BufferedReader(reader);
+
+        String headerLine = lines.readLine();
+        if (headerLine == null) {
+            throw new IOException("Taxi zone file is empty");
+        }
+        List<String> header = splitCsv(headerLine.replace("\uFEFF", ""));
+        int idColumn = column(header, "LocationID", true);
+        int lonColumn = column(header, "longitude", true);
+        int latColumn = column(header, "latitude", true);
+        int boroughColumn = column(header, "Borough", false);
+        int zoneColumn = column(header, "Zone", false);
+
+        List<Row> rows = new ArrayList<>();
+        int maxId = 0;
+        int lineNumber = 1;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = splitCsv(line);
+            String lon = field(fields, lonColumn);
+            String lat = field(fields, latColumn);
+            if (lon.isEmpty() || lat.isEmpty()) {
+                // Zones without a shape (e.g. "Unknown") have no centroid
+                continue;
+            }
+            try {
+                int id = Integer.parseInt(field(fields, idColumn));
+                if (id < 0) {
+                    throw new IOException("Negative LocationID on line " + lineNumber);
+                }
+                maxId = Math.max(maxId, id);
+                rows.add(new Row(id, Double.parseDouble(lon), Double.parseDouble(lat),
+                        boroughColumn >= 0 ? field(fields, boroughColumn) : null,
+                        zoneColumn >= 0 ? field(fields, zoneColumn) : null));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid taxi zone on line " + lineNumber + ": " + line);
+            }
+        }
+
+        double[] longitudes = new double[maxId + 1];
+        double[] latitudes = new double[maxId + 1];
+        String[] boroughs = new String[maxId + 1];
+        String[] zones = new String[maxId + 1];
+        boolean[] present = new boolean[maxId + 1];
+        Arrays.fill(longitudes, Double.NaN);
+        Arrays.fill(latitudes, Double.NaN);
+
+        int size = 0;
+        for (Row row : rows) {
+            longitudes[row.id()] = row.longitude();
+            latitudes[row.id()] = row.latitude();
+            boroughs[row.id()] = row.borough();
+            zones[row.id()] = row.zone();
+            if (!present[row.id()]) {
+                present[row.id()] = true;
+                size++;
+            }
+        }
+        return new TaxiZoneCentroids(longitudes, latitudes, boroughs, zones, present, size);
+    }
+
+    /**
+     * Checks if a location ID has a centroid.
+     *
+     * @param locationId TLC location ID, may be null
+     * @return true if the centroid is known
+     */
+    public boolean contains(Integer locationId) {
+        return locationId != null && locationId >= 0 && locationId < present.length && present[locationId];
+    }
+
+    /**
+     * Gets the centroid longitude of a zone.
+     *
+     * @param locationId TLC location ID
+     * @return longitude in degrees, or NaN if unknown
+     */
+    public double longitude(int locationId) {
+        return contains(locationId) ? longitudes[locationId] : Double.NaN;
+    }
+
+    /**
+     * Gets the centroid latitude of a zone.
+     *
+     * @param locationId TLC location ID
+     * @return latitude in degrees, or NaN if unknown
+     */
+    public double latitude(int locationId) {
+        return contains(locationId) ? latitudes[locationId] : Double.NaN;
+    }
+
+    /**
+     * Gets the borough of a zone.
+     *
+     * @param locationId TLC location ID
+     * @return borough name, or null if unknown
+     */
+    public String borough(int locationId) {
+        return contains(locationId) ? boroughs[locationId] : null;
+    }
+
+    /**
+     * Gets the name of a zone.
+     *
+     * @param locationId TLC location ID
+     * @return zone name, or null if unknown
+     */
+    public String zone(int locationId) {
+        return contains(locationId) ? zones[locationId] : null;
+    }
+
+    /**
+     * Gets the highest location ID in the lookup.
+     *
+     * @return maximum location ID
+     */
+    public int maxLocationId() {
+        return present.length - 1;
+    }
+
+    /**
+     * Gets the number of zones with a centroid.
+     *
+     * @return zone count
+     */
+    public int size() {
+        return size;
+    }
+
+    private record Row(int id, double longitude, double latitude, String borough, String zone) {
+    }
+
+    private static int column(List<String> header, String name, boolean required) throws IOException {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        if (required) {
+            throw new IOException("Taxi zone file is missing column " + name + ", header: " + header);
+        }
+        return -1;
+    }
+
+    private static String field(List<String> row, int column) {
+        return column < row.size() ? row.get(column).trim() : "";
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields with {@code ""} escapes.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
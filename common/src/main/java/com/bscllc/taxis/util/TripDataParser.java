@@ -24,6 +24,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * Parser for NYC taxi trip data parquet files.
@@ -181,6 +182,60 @@ public class TripDataParser {
         }
     }
 
+    /**
+     * Streams a green tripdata parquet file to the consumer in chunks instead of
+     * materializing the whole file, so memory use is bounded by the chunk size.
+     *
+     * @param file the parquet file
+     * @param chunkSize maximum number of records per chunk
+     * @param consumer receives each chunk in file order
+     * @return total number of records emitted
+     * @throws TripDataParserException if the file cannot be parsed or doesn't match the green schema
+     * @throws InterruptedException if the consumer is interrupted while accepting a chunk
+     */
+    public static long streamGreenTripdata(File file, int chunkSize, ChunkConsumer<GreenTripdata> consumer)
+            throws TripDataParserException, InterruptedException {
+        validateFile(file);
+        
+        if (!isGreenTripdataFile(file)) {
+            throw new TripDataParserException(
+                "File does not match green tripdata schema: " + file.getAbsolutePath());
+        }
+        
+        try {
+            return readTripdata(file, TripDataParser::convertToGreenTripdata, chunkSize, consumer);
+        } catch (IOException e) {
+            throw new TripDataParserException("Error reading green tripdata file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Streams a yellow tripdata parquet file to the consumer in chunks instead of
+     * materializing the whole file, so memory use is bounded by the chunk size.
+     *
+     * @param file the parquet file
+     * @param chunkSize maximum number of records per chunk
+     * @param consumer receives each chunk in file order
+     * @return total number of records emitted
+     * @throws TripDataParserException if the file cannot be parsed or doesn't match the yellow schema
+     * @throws InterruptedException if the consumer is interrupted while accepting a chunk
+     */
+    public static long streamYellowTripdata(File file, int chunkSize, ChunkConsumer<YellowTripdata> consumer)
+            throws TripDataParserException, InterruptedException {
+        validateFile(file);
+        
+        if (!isYellowTripdataFile(file)) {
+            throw new TripDataParserException(
+                "File does not match yellow tripdata schema: " + file.getAbsolutePath());
+        }
+        
+        try {
+            return readTripdata(file, TripDataParser::convertToYellowTripdata, chunkSize, consumer);
+        } catch (IOException e) {
+            throw new TripDataParserException("Error reading yellow tripdata file: " + file.getAbsolutePath(), e);
+        }
+    }
+
     /**
      * Validates that the file exists and is a valid parquet file.
      */
@@ -281,6 +336,51 @@ public class TripDataParser {
         return tripDataList;
     }
 
+    /**
+     * Reads a parquet file row group by row group, converting each record and
+     * handing full chunks to the consumer as soon as they are filled.
+     */
+    private static <T> long readTripdata(File file, Function<SimpleGroup, T> converter, int chunkSize,
+                                         ChunkConsumer<T> consumer) throws IOException, InterruptedException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        
+        long total = 0;
+        List<T> chunk = new ArrayList<>(chunkSize);
+        Configuration conf = new Configuration();
+        Path path = new Path(file.toURI());
+        HadoopInputFile inputFile = HadoopInputFile.fromPath(path, conf);
+        
+        try (ParquetFileReader reader = ParquetFileReader.open(inputFile)) {
+            MessageType schema = reader.getFileMetaData().getSchema();
+            MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(schema);
+            
+            PageReadStore pages;
+            while ((pages = reader.readNextRowGroup()) != null) {
+                final long rows = pages.getRowCount();
+                RecordMaterializer<Group> recordMaterializer = createGroupRecordMaterializer(schema);
+                RecordReader<Group> recordReader = columnIO.getRecordReader(pages, recordMaterializer);
+                
+                for (int i = 0; i < rows; i++) {
+                    SimpleGroup group = (SimpleGroup) recordReader.read();
+                    chunk.add(converter.apply(group));
+                    if (chunk.size() == chunkSize) {
+                        consumer.accept(chunk);
+                        total += chunk.size();
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+            }
+        }
+        
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+            total += chunk.size();
+        }
+        return total;
+    }
+
     /**
      * Converts a Parquet Group to a GreenTripdata object.
      */
@@ -0,0 +1,268 @@
+package com.bscllc.taxis.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+/**
+ * Processes tripdata files dropped into an input directory: detects the schema of each file,
+ * hands it to a handler and moves it to the output directory on success or to the error
+ * directory on failure. Shared by the applications watching an input directory, which differ
+ * only in what the handler writes the trips to.
+ */
+public class TripFileProcessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TripFileProcessor.class);
+
+    private final Path inputDirectory;
+    private final Path outputDirectory;
+    private final Path errorDirectory;
+    private final Handler handler;
+    private final Consumer<Path> onProcessed;
+    private final FailureListener onFailed;
+
+    /**
+     * Writes the trips of one file somewhere.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Processes a file of a known schema. Returns once the trips are stored, so the file
+         * can be moved to the output directory.
+         *
+         * @param file input file
+         * @param kind schema of the file
+         * @throws Exception if the file cannot be processed; it is moved to the error directory
+         */
+        void process(Path file, TripKind<?> kind) throws Exception;
+    }
+
+    /**
+     * Notified when a file could not be processed, e.g. to update metrics.
+     */
+    @FunctionalInterface
+    public interface FailureListener {
+
+        /**
+         * Called after the file was moved to the error directory, or failed to move.
+         *
+         * @param file input file
+         * @param errorFile path of the file in the error directory, or null if it could not be moved
+         * @param error why the file failed
+         */
+        void failed(Path file, Path errorFile, Exception error);
+    }
+
+    /**
+     * Builder class for creating TripFileProcessor instances.
+     */
+    public static class Builder {
+        private Path inputDirectory;
+        private Path outputDirectory;
+        private Path errorDirectory;
+        private Handler handler;
+        private Consumer<Path> onProcessed = file -> { };
+        private FailureListener onFailed = (file, errorFile, error) -> { };
+
+        /**
+         * Sets the directory watched for new files.
+         *
+         * @param directory input directory
+         * @return this builder
+         */
+        public Builder inputDirectory(String directory) {
+            this.inputDirectory = Paths.get(directory);
+            return this;
+        }
+
+        /**
+         * Sets the directory receiving processed files.
+         *
+         * @param directory output directory
+         * @return this builder
+         */
+        public Builder outputDirectory(String directory) {
+            this.outputDirectory = Paths.get(directory);
+            return this;
+        }
+
+        /**
+         * Sets the directory receiving files that could not be processed.
+         *
+         * @param directory error directory
+         * @return this builder
+         */
+        public Builder errorDirectory(String directory) {
+            this.errorDirectory = Paths.get(directory);
+            return this;
+        }
+
+        /**
+         * Sets the handler writing the trips of each file.
+         *
+         * @param handler file handler
+         * @return this builder
+         */
+        public Builder handler(Handler handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        /**
+         * Sets the callback for when a file was processed and moved to the output directory.
+         *
+         * @param callback consumer receiving the input file
+         * @return this builder
+         */
+        public Builder onProcessed(Consumer<Path> callback) {
+            this.onProcessed = callback;
+            return this;
+        }
+
+        /**
+         * Sets the callback for when a file failed.
+         *
+         * @param callback failure listener
+         * @return this builder
+         */
+        public Builder onFailed(FailureListener callback) {
+            this.onFailed = callback;
+            return this;
+        }
+
+        /**
+         * Builds the TripFileProcessor instance.
+         *
+         * @return configured TripFileProcessor instance
+         * @throws IllegalArgumentException if a directory or the handler is not set
+         */
+        public TripFileProcessor build() {
+            if (inputDirectory == null || outputDirectory == null || errorDirectory == null) {
+                throw new IllegalArgumentException("Input, output and error directories must be specified");
+            }
+            if (handler == null) {
+                throw new IllegalArgumentException("Handler must be specified");
+            }
+            return new TripFileProcessor(this);
+        }
+    }
+
+    /**
+     * Creates a new Builder instance.
+     *
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private TripFileProcessor(Builder builder) {
+        this.inputDirectory = builder.inputDirectory;
+        this.outputDirectory = builder.outputDirectory;
+        this.errorDirectory = builder.errorDirectory;
+        this.handler = builder.handler;
+        this.onProcessed = builder.onProcessed;
+        this.onFailed = builder.onFailed;
+    }
+
+    /**
+     * Creates the input, output and error directories if they don't exist.
+     *
+     * @throws IOException if a directory cannot be created
+     */
+    public void createDirectories() throws IOException {
+        Files.createDirectories(inputDirectory);
+        Files.createDirectories(outputDirectory);
+        Files.createDirectories(errorDirectory);
+
+        LOG.info("Created directories - Input: " + inputDirectory + ", Output: " + outputDirectory +
+                ", Error: " + errorDirectory);
+    }
+
+    /**
+     * Processes a parquet file: detects its schema, hands it to the handler and moves it to the
+     * output or the error directory. Never throws, so it can be used as monitor callback.
+     *
+     * @param file input file
+     */
+    public void process(Path file) {
+        LOG.info("Processing file: " + file);
+
+        Exception error;
+        try {
+            // Determine schema type
+            TripKind<?> kind = TripKind.of(file.toFile());
+
+            if (kind == null) {
+                LOG.warn("File does not match green or yellow tripdata schema: " + file);
+                error = new TripDataParserException("Unknown schema type");
+            } else {
+                handler.process(file, kind);
+
+                // Move file to output directory on success
+                moveToOutputDirectory(file);
+                onProcessed.accept(file);
+                LOG.info("Successfully processed file: " + file);
+                return;
+            }
+        } catch (Exception e) {
+            LOG.error("Error processing file: " + file, e);
+            error = e;
+        }
+
+        Path errorFile = null;
+        try {
+            errorFile = moveToErrorDirectory(file, error.getMessage());
+        } catch (IOException ioException) {
+            LOG.error("Failed to move file to error directory: " + file, ioException);
+        }
+        onFailed.failed(file, errorFile, error);
+    }
+
+    /**
+     * Moves a file to the output directory.
+     *
+     * @param file input file
+     * @return path of the file in the output directory
+     * @throws IOException if the file cannot be moved
+     */
+    public Path moveToOutputDirectory(Path file) throws IOException {
+        Path destination = outputDirectory.resolve(file.getFileName());
+        Files.move(file, destination, StandardCopyOption.REPLACE_EXISTING);
+        return destination;
+    }
+
+    /**
+     * Moves a file to the error directory with a timestamp suffix.
+     *
+     * @param file input file
+     * @param errorMessage why the file failed, logged
+     * @return path of the file in the error directory
+     * @throws IOException if the file cannot be moved
+     */
+    public Path moveToErrorDirectory(Path file, String errorMessage) throws IOException {
+        String fileName = file.getFileName().toString();
+        // Add timestamp and error suffix to filename
+        String errorFileName = fileName.replace(".parquet", "_" + System.currentTimeMillis() + ".parquet");
+        Path destination = errorDirectory.resolve(errorFileName);
+        Files.move(file, destination, StandardCopyOption.REPLACE_EXISTING);
+        LOG.warn("Moved file to error directory: " + destination + " (Error: " + errorMessage + ")");
+        return destination;
+    }
+
+    /**
+     * Gets the directory watched for new files.
+     *
+     * @return input directory
+     */
+    public Path getInputDirectory() {
+        return inputDirectory;
+    }
+}
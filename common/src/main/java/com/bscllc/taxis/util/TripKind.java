@@ -0,0 +1,121 @@
+package com.bscllc.taxis.util;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Green or yellow trips, bundling what differs between the two: how a file is detected and
+ * streamed and which {@link TripSink} method stores a batch. File processing is written once
+ * against a kind instead of once per schema.
+ *
+ * @param <T> trip type
+ */
+public final class TripKind<T> {
+
+    /**
+     * Green taxi trips.
+     */
+    public static final TripKind<GreenTripdata> GREEN =
+            new TripKind<>("green", TripDataParser::streamGreenTripdata, TripSink::writeGreen);
+
+    /**
+     * Yellow taxi trips.
+     */
+    public static final TripKind<YellowTripdata> YELLOW =
+            new TripKind<>("yellow", TripDataParser::streamYellowTripdata, TripSink::writeYellow);
+
+    @FunctionalInterface
+    private interface Streamer<T> {
+        long stream(File file, int chunkSize, ChunkConsumer<T> consumer) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface SinkWriter<T> {
+        CompletionStage<Void> write(TripSink sink, List<T> trips) throws Exception;
+    }
+
+    private final String name;
+    private final Streamer<T> streamer;
+    private final SinkWriter<T> sinkWriter;
+
+    private TripKind(String name, Streamer<T> streamer, SinkWriter<T> sinkWriter) {
+        this.name = name;
+        this.streamer = streamer;
+        this.sinkWriter = sinkWriter;
+    }
+
+    /**
+     * Detects the kind of a parquet file from its schema.
+     *
+     * @param file parquet file
+     * @return kind, or null if the file matches neither schema
+     */
+    public static TripKind<?> of(File file) {
+        if (TripDataParser.isGreenTripdataFile(file)) {
+            return GREEN;
+        }
+        if (TripDataParser.isYellowTripdataFile(file)) {
+            return YELLOW;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the kind name, {@code green} or {@code yellow}.
+     *
+     * @return kind name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Streams a parquet file of this kind in chunks.
+     *
+     * @param file parquet file
+     * @param chunkSize maximum number of records per chunk
+     * @return pipeline producer
+     */
+    public ChunkPipeline.Producer<T> producer(File file, int chunkSize) {
+        return consumer -> streamer.stream(file, chunkSize, consumer);
+    }
+
+    /**
+     * Adapts a trip sink to a fan-out pipeline for trips of this kind.
+     *
+     * @param sink trip sink
+     * @return pipeline sink
+     */
+    public FanOutPipeline.Sink<T> sink(TripSink sink) {
+        return new FanOutPipeline.Sink<>() {
+            @Override
+            public String name() {
+                return sink.name();
+            }
+
+            @Override
+            public CompletionStage<?> write(List<T> chunk) throws Exception {
+                return sinkWriter.write(sink, chunk);
+            }
+
+            @Override
+            public void flush() throws Exception {
+                sink.flush();
+            }
+
+            @Override
+            public boolean concurrentWrites() {
+                return sink.has(TripSink.Capability.CONCURRENT_WRITES);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
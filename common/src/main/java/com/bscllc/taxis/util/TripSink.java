@@ -0,0 +1,118 @@
+package com.bscllc.taxis.util;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Destination of parsed trips, such as PostgreSQL or OpenSearch. Batches are handed over with
+ * {@link #writeGreen}/{@link #writeYellow}, which may return before the batch is stored; the
+ * returned stage completes once it is, and {@link #flush()} pushes out anything still buffered.
+ * <p>
+ * The same contract serves production sinks, benchmarks and test doubles, and
+ * {@link TripKind#sink(TripSink)} plugs any sink into a {@link FanOutPipeline}. What a sink
+ * can do beyond the contract is declared by its {@link Capability capabilities}.
+ * <p>
+ * Lifecycle: {@link #open()} once, any number of writes and flushes, {@link #close()} once.
+ */
+public interface TripSink extends AutoCloseable {
+
+    /**
+     * Optional properties of a sink.
+     */
+    enum Capability {
+        /**
+         * Writes may be called from several threads at once; without it the pipeline uses a
+         * single writer for the sink.
+         */
+        CONCURRENT_WRITES,
+
+        /**
+         * Acknowledgements may complete after the write returns, e.g. once a bulk request
+         * completes; {@link #flush()} must be called for the last ones.
+         */
+        ASYNC_ACKNOWLEDGEMENT,
+
+        /**
+         * Writing a trip again replaces it instead of adding a duplicate, so a file can be
+         * reprocessed after a partial failure.
+         */
+        IDEMPOTENT_WRITES,
+
+        /**
+         * Batches are accepted while the backend is unreachable and kept locally until it
+         * is back; the acknowledgement then means durably spooled.
+         */
+        LOCAL_SPOOL
+    }
+
+    /**
+     * Gets the sink name, used in logs and pipeline results.
+     *
+     * @return sink name
+     */
+    String name();
+
+    /**
+     * Gets the optional properties of the sink.
+     *
+     * @return capabilities
+     */
+    Set<Capability> capabilities();
+
+    /**
+     * Checks a capability.
+     *
+     * @param capability capability
+     * @return true if the sink declares it
+     */
+    default boolean has(Capability capability) {
+        return capabilities().contains(capability);
+    }
+
+    /**
+     * Prepares the sink before the first write.
+     *
+     * @throws Exception if the sink cannot be prepared
+     */
+    default void open() throws Exception {
+    }
+
+    /**
+     * Writes or queues a batch of green trips. May block to apply backpressure.
+     *
+     * @param trips green trips; not modified
+     * @return completes once the batch is stored, exceptionally if it cannot be
+     * @throws Exception if the batch cannot be written or queued
+     */
+    CompletionStage<Void> writeGreen(List<GreenTripdata> trips) throws Exception;
+
+    /**
+     * Writes or queues a batch of yellow trips. May block to apply backpressure.
+     *
+     * @param trips yellow trips; not modified
+     * @return completes once the batch is stored, exceptionally if it cannot be
+     * @throws Exception if the batch cannot be written or queued
+     */
+    CompletionStage<Void> writeYellow(List<YellowTripdata> trips) throws Exception;
+
+    /**
+     * Sends buffered batches, so that pending acknowledgements complete.
+     *
+     * @throws Exception if flushing fails
+     */
+    default void flush() throws Exception {
+    }
+
+    /**
+     * Releases the sink's resources.
+     *
+     * @throws Exception if closing fails
+     */
+    @Override
+    default void close() throws Exception {
+    }
+}
@@ -0,0 +1,151 @@
+package com.bscllc.taxis.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkPipelineTest {
+
+    private ChunkPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = ChunkPipeline.builder()
+                .name("Test")
+                .queueCapacity(2)
+                .writerThreads(3)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.close();
+    }
+
+    @Test
+    void testBuilderRejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> ChunkPipeline.builder().queueCapacity(0).build());
+        assertThrows(IllegalArgumentException.class, () -> ChunkPipeline.builder().writerThreads(0).build());
+    }
+
+    @Test
+    void testAllChunksAreWritten() throws Exception {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+        long count = pipeline.<Integer>run(consumer -> {
+            for (int i = 0; i < 100; i += 10) {
+                List<Integer> chunk = new ArrayList<>();
+                for (int j = i; j < i + 10; j++) {
+                    chunk.add(j);
+                }
+                consumer.accept(chunk);
+            }
+        }, written::addAll);
+
+        assertEquals(100, count);
+        assertEquals(100, written.size());
+        Collections.sort(written);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, written.get(i));
+        }
+    }
+
+    @Test
+    void testQueueBoundsChunksInFlight() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+
+        pipeline.<Integer>run(consumer -> {
+            for (int i = 0; i < 50; i++) {
+                consumer.accept(List.of(i));
+                int ahead = produced.incrementAndGet() - consumed.get();
+                maxAhead.accumulateAndGet(ahead, Math::max);
+            }
+        }, chunk -> {
+            Thread.sleep(2);
+            consumed.incrementAndGet();
+        });
+
+        assertEquals(50, consumed.get());
+        // queue capacity + one chunk held by each writer
+        assertTrue(maxAhead.get() <= 2 + 3, "Producer ran ahead by " + maxAhead.get() + " chunks");
+    }
+
+    @Test
+    void testWriterFailureAbortsProducer() {
+        AtomicInteger produced = new AtomicInteger();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () ->
+            pipeline.<Integer>run(consumer -> {
+                for (int i = 0; i < 10_000; i++) {
+                    consumer.accept(List.of(i));
+                    produced.incrementAndGet();
+                }
+            }, chunk -> {
+                throw new IllegalStateException("sink down");
+            }));
+
+        assertEquals("sink down", e.getMessage());
+        assertTrue(produced.get() < 10_000, "Producer should stop after a writer failure");
+    }
+
+    @Test
+    void testProducerFailureIsRethrown() {
+        Exception e = assertThrows(TripDataParserException.class, () ->
+            pipeline.<Integer>run(consumer -> {
+                consumer.accept(List.of(1));
+                throw new TripDataParserException("bad file");
+            }, chunk -> { }));
+
+        assertEquals("bad file", e.getMessage());
+    }
+
+    @Test
+    void testPipelineIsReusableAcrossRuns() throws Exception {
+        for (int run = 0; run < 3; run++) {
+            long count = pipeline.<Integer>run(consumer -> consumer.accept(List.of(1, 2, 3)), chunk -> { });
+            assertEquals(3, count);
+        }
+    }
+
+    @Test
+    void testVirtualThreadWriters() throws Exception {
+        List<Boolean> virtual = Collections.synchronizedList(new ArrayList<>());
+
+        try (ChunkPipeline virtualPipeline = ChunkPipeline.builder()
+                .name("Virtual")
+                .writerThreads(50)
+                .executorMode(ExecutorMode.VIRTUAL)
+                .build()) {
+            long count = virtualPipeline.<Integer>run(consumer -> {
+                for (int i = 0; i < 200; i++) {
+                    consumer.accept(List.of(i));
+                }
+            }, chunk -> {
+                virtual.add(Thread.currentThread().isVirtual());
+                Thread.sleep(1);
+            });
+
+            assertEquals(200, count);
+            assertEquals(ExecutorMode.VIRTUAL, virtualPipeline.getExecutorMode());
+        }
+        assertEquals(200, virtual.size());
+        assertTrue(virtual.stream().allMatch(Boolean::booleanValue));
+    }
+
+    @Test
+    void testExecutorModeFromString() {
+        assertEquals(ExecutorMode.VIRTUAL, ExecutorMode.fromString("virtual"));
+        assertEquals(ExecutorMode.PLATFORM, ExecutorMode.fromString("PLATFORM"));
+        assertEquals(ExecutorMode.PLATFORM, ExecutorMode.fromString(null));
+        assertEquals(ExecutorMode.PLATFORM, pipeline.getExecutorMode());
+    }
+}
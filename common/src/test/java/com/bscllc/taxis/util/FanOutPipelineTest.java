@@ -0,0 +1,270 @@
+package com.bscllc.taxis.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FanOutPipelineTest {
+
+    private FanOutPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = FanOutPipeline.builder()
+                .name("Test")
+                .queueCapacity(2)
+                .writerThreads(3)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.close();
+    }
+
+    /**
+     * Sink collecting records; acknowledges at once, or only on flush if deferred.
+     */
+    private static class RecordingSink implements FanOutPipeline.Sink<Integer> {
+        final String name;
+        final boolean deferred;
+        final List<Integer> records = Collections.synchronizedList(new ArrayList<>());
+        final List<CompletableFuture<Void>> pending = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger flushes = new AtomicInteger();
+
+        RecordingSink(String name, boolean deferred) {
+            this.name = name;
+            this.deferred = deferred;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public CompletionStage<?> write(List<Integer> chunk) {
+            records.addAll(chunk);
+            if (!deferred) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> ack = new CompletableFuture<>();
+            pending.add(ack);
+            return ack;
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+            synchronized (pending) {
+                pending.forEach(ack -> ack.complete(null));
+            }
+        }
+    }
+
+    private static void produce(ChunkConsumer<Integer> consumer, int records, int chunkSize) throws InterruptedException {
+        for (int i = 0; i < records; i += chunkSize) {
+            List<Integer> chunk = new ArrayList<>();
+            for (int j = i; j < Math.min(records, i + chunkSize); j++) {
+                chunk.add(j);
+            }
+            consumer.accept(chunk);
+        }
+    }
+
+    @Test
+    void testBuilderRejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> FanOutPipeline.builder().queueCapacity(0).build());
+        assertThrows(IllegalArgumentException.class, () -> FanOutPipeline.builder().writerThreads(0).build());
+        assertThrows(IllegalArgumentException.class, () -> pipeline.<Integer>run(consumer -> { }, List.of()));
+    }
+
+    @Test
+    void testEverySinkReceivesEveryChunk() throws Exception {
+        RecordingSink database = new RecordingSink("database", false);
+        RecordingSink index = new RecordingSink("index", true);
+
+        Map<String, Long> acknowledged = pipeline.run(consumer -> produce(consumer, 100, 10), List.of(database, index));
+
+        assertEquals(Map.of("database", 100L, "index", 100L), acknowledged);
+        for (RecordingSink sink : List.of(database, index)) {
+            assertEquals(100, sink.records.size());
+            List<Integer> sorted = new ArrayList<>(sink.records);
+            Collections.sort(sorted);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, sorted.get(i));
+            }
+            assertEquals(1, sink.flushes.get());
+        }
+    }
+
+    @Test
+    void testRunWaitsForDeferredAcknowledgements() throws Exception {
+        RecordingSink index = new RecordingSink("index", true);
+
+        pipeline.run(consumer -> produce(consumer, 50, 5), List.of(index));
+
+        assertEquals(10, index.pending.size());
+        assertTrue(index.pending.stream().allMatch(CompletableFuture::isDone));
+    }
+
+    @Test
+    void testEachSinkQueueBoundsChunksInFlight() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+        FanOutPipeline.Sink<Integer> slow = new FanOutPipeline.Sink<>() {
+            @Override
+            public String name() {
+                return "slow";
+            }
+
+            @Override
+            public CompletionStage<?> write(List<Integer> chunk) throws Exception {
+                Thread.sleep(2);
+                consumed.incrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+
+        pipeline.run(consumer -> {
+            for (int i = 0; i < 50; i++) {
+                consumer.accept(List.of(i));
+                int ahead = produced.incrementAndGet() - consumed.get();
+                maxAhead.accumulateAndGet(ahead, Math::max);
+            }
+        }, List.of(new RecordingSink("fast", false), slow));
+
+        assertEquals(50, consumed.get());
+        // queue capacity + one chunk held by each writer of the slow sink
+        assertTrue(maxAhead.get() <= 2 + 3, "Producer ran ahead by " + maxAhead.get() + " chunks");
+    }
+
+    /**
+     * Sink whose acknowledgements always fail.
+     */
+    private static FanOutPipeline.Sink<Integer> failingSink(String name) {
+        return new FanOutPipeline.Sink<>() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public CompletionStage<?> write(List<Integer> chunk) {
+                return CompletableFuture.failedFuture(new IllegalStateException("sink down"));
+            }
+        };
+    }
+
+    @Test
+    void testFailedSinkDoesNotStopOtherSinks() {
+        RecordingSink healthy = new RecordingSink("healthy", true);
+
+        FanOutPipeline.SinkFailureException e = assertThrows(FanOutPipeline.SinkFailureException.class, () ->
+            pipeline.run(consumer -> produce(consumer, 1_000, 10), List.of(healthy, failingSink("failing"))));
+
+        assertEquals(1_000, healthy.records.size());
+        assertEquals(1_000L, e.getAcknowledged().get("healthy"));
+        assertEquals(0L, e.getAcknowledged().get("failing"));
+        assertEquals(Set.of("healthy"), e.getCompletedSinks());
+        assertEquals(Set.of("failing"), e.getFailures().keySet());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals("sink down", e.getCause().getMessage());
+    }
+
+    @Test
+    void testEverySinkFailingAbortsRun() {
+        AtomicInteger produced = new AtomicInteger();
+
+        FanOutPipeline.SinkFailureException e = assertThrows(FanOutPipeline.SinkFailureException.class, () ->
+            pipeline.run(consumer -> {
+                for (int i = 0; i < 10_000; i++) {
+                    consumer.accept(List.of(i));
+                    produced.incrementAndGet();
+                }
+            }, List.of(failingSink("a"), failingSink("b"))));
+
+        assertTrue(e.getCompletedSinks().isEmpty());
+        assertEquals(1, e.getSuppressed().length);
+        assertTrue(produced.get() < 10_000, "Producer should stop once every sink failed");
+    }
+
+    @Test
+    void testProducerFailureIsRethrownAfterFlush() {
+        RecordingSink index = new RecordingSink("index", true);
+
+        Exception e = assertThrows(TripDataParserException.class, () ->
+            pipeline.run(consumer -> {
+                consumer.accept(List.of(1));
+                throw new TripDataParserException("bad file");
+            }, List.of(index)));
+
+        assertEquals("bad file", e.getMessage());
+        assertEquals(1, index.flushes.get());
+        assertTrue(index.pending.stream().allMatch(CompletableFuture::isDone));
+    }
+
+    @Test
+    void testSinkWithoutConcurrentWritesGetsOneWriter() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        FanOutPipeline.Sink<Integer> serial = new FanOutPipeline.Sink<>() {
+            @Override
+            public String name() {
+                return "serial";
+            }
+
+            @Override
+            public CompletionStage<?> write(List<Integer> chunk) throws Exception {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(1);
+                active.decrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public boolean concurrentWrites() {
+                return false;
+            }
+        };
+
+        Map<String, Long> acknowledged = pipeline.run(consumer -> produce(consumer, 40, 1), List.of(serial));
+
+        assertEquals(40L, acknowledged.get("serial"));
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    void testAcknowledgementListenerSeesEveryChunk() throws Exception {
+        AtomicInteger records = new AtomicInteger();
+        try (FanOutPipeline listened = FanOutPipeline.builder()
+                .onAcknowledged((sink, count) -> records.addAndGet(count))
+                .build()) {
+            listened.run(consumer -> produce(consumer, 30, 7),
+                    List.of(new RecordingSink("a", false), new RecordingSink("b", true)));
+        }
+        assertEquals(60, records.get());
+    }
+
+    @Test
+    void testPipelineIsReusableAcrossRuns() throws Exception {
+        for (int run = 0; run < 3; run++) {
+            Map<String, Long> acknowledged = pipeline.run(consumer -> consumer.accept(List.of(1, 2, 3)),
+                    List.of(new RecordingSink("a", false), new RecordingSink("b", true)));
+            assertEquals(3L, acknowledged.get("a"));
+            assertEquals(3L, acknowledged.get("b"));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.bscllc.taxis.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SinkProgressTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testUnknownFileHasNoCompletedSinks() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("green.parquet"), "data");
+        SinkProgress progress = new SinkProgress(tempDir.resolve("state/progress.properties"));
+
+        assertTrue(progress.completedSinks(file).isEmpty());
+        assertFalse(Files.exists(progress.getStateFile()));
+    }
+
+    @Test
+    void testCompletedSinksSurviveRestart() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("green.parquet"), "data");
+        Path stateFile = tempDir.resolve("state/progress.properties");
+
+        new SinkProgress(stateFile).recordCompleted(file, Set.of("database"));
+        new SinkProgress(stateFile).recordCompleted(file, Set.of("opensearch"));
+
+        assertEquals(Set.of("database", "opensearch"), new SinkProgress(stateFile).completedSinks(file));
+    }
+
+    @Test
+    void testFileIsIdentifiedByNameAndSize() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("green.parquet"), "data");
+        SinkProgress progress = new SinkProgress(tempDir.resolve("progress.properties"));
+        progress.recordCompleted(file, Set.of("database"));
+
+        Path other = Files.writeString(tempDir.resolve("yellow.parquet"), "data");
+        assertTrue(progress.completedSinks(other).isEmpty());
+
+        Files.writeString(file, "other data");
+        assertTrue(progress.completedSinks(file).isEmpty(), "A changed file must be written to every sink");
+    }
+
+    @Test
+    void testClearForgetsFile() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("green.parquet"), "data");
+        SinkProgress progress = new SinkProgress(tempDir.resolve("progress.properties"));
+        progress.recordCompleted(file, Set.of("database"));
+
+        progress.clear(file);
+
+        assertTrue(progress.completedSinks(file).isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+package com.bscllc.taxis.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaxiZoneCentroidsTest {
+
+    private static final String ZONES_CSV =
+            "\"LocationID\",\"Borough\",\"Zone\",\"service_zone\",\"longitude\",\"latitude\"\n" +
+            "1,\"EWR\",\"Newark Airport\",\"EWR\",-74.1745,40.6895\n" +
+            "4,\"Manhattan\",\"Alphabet City\",\"Yellow Zone\",-73.9772,40.7245\n" +
+            "132,\"Queens\",\"JFK Airport\",\"Airports\",-73.7863,40.6466\n" +
+            "\n" +
+            "264,\"Unknown\",\"NV\",\"N/A\",,\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLoadCentroids() throws IOException {
+        TaxiZoneCentroids centroids = TaxiZoneCentroids.load(new StringReader(ZONES_CSV));
+
+        assertEquals(3, centroids.size());
+        assertEquals(132, centroids.maxLocationId());
+        assertTrue(centroids.contains(4));
+        assertEquals(-73.9772, centroids.longitude(4), 1e-9);
+        assertEquals(40.7245, centroids.latitude(4), 1e-9);
+        assertEquals("Manhattan", centroids.borough(4));
+        assertEquals("Alphabet City", centroids.zone(4));
+        assertEquals("Queens", centroids.borough(132));
+    }
+
+    @Test
+    void testUnknownZones() throws IOException {
+        TaxiZoneCentroids centroids = TaxiZoneCentroids.load(new StringReader(ZONES_CSV));
+
+        assertFalse(centroids.contains(null));
+        assertFalse(centroids.contains(2));
+        assertFalse(centroids.contains(-1));
+        assertFalse(centroids.contains(264), "Zone without coordinates should be skipped");
+        assertFalse(centroids.contains(1000));
+        assertTrue(Double.isNaN(centroids.longitude(2)));
+        assertTrue(Double.isNaN(centroids.latitude(1000)));
+        assertNull(centroids.borough(264));
+    }
+
+    @Test
+    void testLoadFromFile() throws IOException {
+        Path file = tempDir.resolve("zones.csv");
+        Files.writeString(file, "LocationID,longitude,latitude\n7,-73.9196,40.7615\n");
+
+        TaxiZoneCentroids centroids = TaxiZoneCentroids.load(file);
+
+        assertEquals(1, centroids.size());
+        assertEquals(-73.9196, centroids.longitude(7), 1e-9);
+        assertNull(centroids.borough(7), "Borough column is optional");
+    }
+
+    @Test
+    void testMalformedInput() {
+        assertThrows(IOException.class, () -> TaxiZoneCentroids.load(new StringReader("")));
+        assertThrows(IOException.class,
+                () -> TaxiZoneCentroids.load(new StringReader("LocationID,Borough\n1,EWR\n")));
+        assertThrows(IOException.class,
+                () -> TaxiZoneCentroids.load(new StringReader("LocationID,longitude,latitude\nx,-73.9,40.7\n")));
+    }
+}
@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -280,6 +281,38 @@ public class TripDataParserTest {
         }
     }
 
+    @Test
+    @DisplayName("Should stream green tripdata file in bounded chunks")
+    public void testStreamGreenTripdata() throws Exception {
+        File greenFile = getTestResourceFile("green_test.parquet");
+        List<GreenTripdata> expected = TripDataParser.parseGreenTripdata(greenFile);
+        
+        int chunkSize = Math.max(1, expected.size() / 3);
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<GreenTripdata> streamed = new ArrayList<>();
+        long total = TripDataParser.streamGreenTripdata(greenFile, chunkSize, chunk -> {
+            chunkSizes.add(chunk.size());
+            streamed.addAll(chunk);
+        });
+        
+        assertEquals(expected.size(), total, "Streamed record count should match parsed count");
+        assertEquals(expected.size(), streamed.size());
+        assertTrue(chunkSizes.stream().allMatch(size -> size > 0 && size <= chunkSize),
+            "Every chunk should hold between 1 and chunkSize records");
+        assertEquals(expected.get(0).toString(), streamed.get(0).toString());
+        assertEquals(expected.get(expected.size() - 1).toString(), streamed.get(streamed.size() - 1).toString());
+    }
+
+    @Test
+    @DisplayName("Should reject streaming a file with the wrong schema")
+    public void testStreamWrongFileType() {
+        File greenFile = getTestResourceFile("green_test.parquet");
+        
+        assertThrows(TripDataParserException.class, () -> {
+            TripDataParser.streamYellowTripdata(greenFile, 100, chunk -> { });
+        }, "Should throw TripDataParserException when streaming green file as yellow");
+    }
+
     @Test
     @DisplayName("Should throw exception for non-existent file")
     public void testParseNonExistentFile() {
@@ -0,0 +1,80 @@
+package com.bscllc.taxis.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripFileProcessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicBoolean handled = new AtomicBoolean();
+    private final List<Path> processed = new ArrayList<>();
+    private final List<Path> errorFiles = new ArrayList<>();
+    private TripFileProcessor processor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        processor = TripFileProcessor.builder()
+                .inputDirectory(tempDir.resolve("input").toString())
+                .outputDirectory(tempDir.resolve("output").toString())
+                .errorDirectory(tempDir.resolve("error").toString())
+                .handler((file, kind) -> handled.set(true))
+                .onProcessed(processed::add)
+                .onFailed((file, errorFile, error) -> errorFiles.add(errorFile))
+                .build();
+        processor.createDirectories();
+    }
+
+    @Test
+    void testBuilderRejectsMissingSettings() {
+        assertThrows(IllegalArgumentException.class, () -> TripFileProcessor.builder()
+                .inputDirectory("in").outputDirectory("out").errorDirectory("error").build());
+        assertThrows(IllegalArgumentException.class, () -> TripFileProcessor.builder()
+                .inputDirectory("in").handler((file, kind) -> { }).build());
+    }
+
+    @Test
+    void testCreateDirectories() {
+        assertTrue(Files.isDirectory(tempDir.resolve("input")));
+        assertTrue(Files.isDirectory(tempDir.resolve("output")));
+        assertTrue(Files.isDirectory(tempDir.resolve("error")));
+    }
+
+    @Test
+    void testUnknownFileMovesToErrorDirectory() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("input/trips.parquet"), "not parquet");
+
+        processor.process(file);
+
+        assertFalse(handled.get());
+        assertTrue(processed.isEmpty());
+        assertFalse(Files.exists(file));
+        assertEquals(1, errorFiles.size());
+        Path errorFile = errorFiles.get(0);
+        assertEquals(tempDir.resolve("error"), errorFile.getParent());
+        assertTrue(errorFile.getFileName().toString().matches("trips_\\d+\\.parquet"));
+        assertEquals("not parquet", Files.readString(errorFile));
+    }
+
+    @Test
+    void testMoveToOutputDirectory() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("input/trips.parquet"), "data");
+
+        Path destination = processor.moveToOutputDirectory(file);
+
+        assertEquals(tempDir.resolve("output/trips.parquet"), destination);
+        assertFalse(Files.exists(file));
+        assertEquals("data", Files.readString(destination));
+    }
+}
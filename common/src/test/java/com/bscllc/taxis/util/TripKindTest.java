@@ -0,0 +1,127 @@
+package com.bscllc.taxis.util;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripKindTest {
+
+    /**
+     * Test double recording what reaches each write method.
+     */
+    private static class RecordingTripSink implements TripSink {
+        final List<GreenTripdata> green = Collections.synchronizedList(new ArrayList<>());
+        final List<YellowTripdata> yellow = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger flushes = new AtomicInteger();
+        final String name;
+        final Set<Capability> capabilities;
+
+        RecordingTripSink(String name, Set<Capability> capabilities) {
+            this.name = name;
+            this.capabilities = capabilities;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public Set<Capability> capabilities() {
+            return capabilities;
+        }
+
+        @Override
+        public CompletionStage<Void> writeGreen(List<GreenTripdata> trips) {
+            green.addAll(trips);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletionStage<Void> writeYellow(List<YellowTripdata> trips) {
+            yellow.addAll(trips);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+    }
+
+    @Test
+    void testKindNames() {
+        assertEquals("green", TripKind.GREEN.getName());
+        assertEquals("yellow", TripKind.YELLOW.toString());
+    }
+
+    @Test
+    void testSinkRoutesBatchesToMatchingWriteMethod() throws Exception {
+        RecordingTripSink sink = new RecordingTripSink("recording", EnumSet.of(TripSink.Capability.CONCURRENT_WRITES));
+
+        TripKind.GREEN.sink(sink).write(List.of(new GreenTripdata(), new GreenTripdata()));
+        TripKind.YELLOW.sink(sink).write(List.of(new YellowTripdata()));
+        TripKind.GREEN.sink(sink).flush();
+
+        assertEquals(2, sink.green.size());
+        assertEquals(1, sink.yellow.size());
+        assertEquals(1, sink.flushes.get());
+        assertEquals("recording", TripKind.YELLOW.sink(sink).name());
+    }
+
+    @Test
+    void testCapabilitiesDriveConcurrentWrites() {
+        RecordingTripSink concurrent = new RecordingTripSink("concurrent",
+                EnumSet.of(TripSink.Capability.CONCURRENT_WRITES, TripSink.Capability.IDEMPOTENT_WRITES));
+        RecordingTripSink serial = new RecordingTripSink("serial", EnumSet.noneOf(TripSink.Capability.class));
+
+        assertTrue(TripKind.GREEN.sink(concurrent).concurrentWrites());
+        assertFalse(TripKind.GREEN.sink(serial).concurrentWrites());
+        assertTrue(concurrent.has(TripSink.Capability.IDEMPOTENT_WRITES));
+        assertFalse(serial.has(TripSink.Capability.ASYNC_ACKNOWLEDGEMENT));
+    }
+
+    @Test
+    void testTripSinkRunsThroughFanOutPipeline() throws Exception {
+        RecordingTripSink first = new RecordingTripSink("first", EnumSet.of(TripSink.Capability.CONCURRENT_WRITES));
+        RecordingTripSink second = new RecordingTripSink("second", EnumSet.noneOf(TripSink.Capability.class));
+
+        try (FanOutPipeline pipeline = FanOutPipeline.builder().build()) {
+            Map<String, Long> acknowledged = pipeline.run(consumer -> {
+                for (int i = 0; i < 5; i++) {
+                    consumer.accept(List.of(new YellowTripdata(), new YellowTripdata()));
+                }
+            }, List.of(TripKind.YELLOW.sink(first), TripKind.YELLOW.sink(second)));
+
+            assertEquals(Map.of("first", 10L, "second", 10L), acknowledged);
+        }
+        assertEquals(10, first.yellow.size());
+        assertEquals(10, second.yellow.size());
+        assertEquals(1, first.flushes.get());
+    }
+
+    @Test
+    void testFanOutPipelineRejectsDuplicateSinkNames() {
+        RecordingTripSink first = new RecordingTripSink("database", EnumSet.noneOf(TripSink.Capability.class));
+        RecordingTripSink second = new RecordingTripSink("database", EnumSet.noneOf(TripSink.Capability.class));
+
+        try (FanOutPipeline pipeline = FanOutPipeline.builder().build()) {
+            assertThrows(IllegalArgumentException.class, () -> pipeline.run(
+                    consumer -> consumer.accept(List.of(new YellowTripdata())),
+                    List.of(TripKind.YELLOW.sink(first), TripKind.YELLOW.sink(second))));
+        }
+        assertTrue(first.yellow.isEmpty());
+    }
+}
@@ -1,7 +1,12 @@
 package com.bscllc.taxis.app;
 
 import com.bscllc.taxis.config.DatabaseConfig;
+import com.bscllc.taxis.config.ProcessingConfig;
 import com.bscllc.taxis.service.DatabaseService;
+import com.bscllc.taxis.service.RetryPolicy;
+import com.bscllc.taxis.service.ShardedDatabaseService;
+import com.bscllc.taxis.util.ExecutorMode;
+import com.bscllc.taxis.util.TaxiZoneCentroids;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,10 +14,15 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Producer for DatabaseService bean.
+ * Producer for the ShardedDatabaseService bean.
+ * Without shard endpoints configured, the service has a single shard on the configured host.
  */
 @ApplicationScoped
 public class DatabaseServiceProducer {
@@ -22,27 +32,99 @@ public class DatabaseServiceProducer {
     @Inject
     DatabaseConfig databaseConfig;
     
+    @Inject
+    ProcessingConfig processingConfig;
+    
     @Inject
     MetricsService metricsService;
     
     @Produces
     @Singleton
-    public DatabaseService produceDatabaseService() {
+    public ShardedDatabaseService produceShardedDatabaseService() {
+        List<String> endpoints = databaseConfig.shardEndpoints()
+                .orElse(List.of(databaseConfig.host() + ":" + databaseConfig.port()));
+        
+        TaxiZoneCentroids zoneCentroids = loadZoneCentroids();
+        
+        List<DatabaseService> shards = new ArrayList<>(endpoints.size());
         try {
-            LOG.info("Creating DatabaseService - Host: " + databaseConfig.host() + 
-                    ", Port: " + databaseConfig.port() + 
+            for (int shard = 0; shard < endpoints.size(); shard++) {
+                DatabaseService service = produceDatabaseService(endpoints.get(shard).trim(), zoneCentroids);
+                shards.add(service);
+                metricsService.registerRejectCounter(service, shard);
+            }
+        } catch (RuntimeException e) {
+            for (DatabaseService service : shards) {
+                try {
+                    service.close();
+                } catch (SQLException closeException) {
+                    LOG.warn("Error closing shard connection", closeException);
+                }
+            }
+            throw e;
+        }
+        
+        ShardedDatabaseService sharded = new ShardedDatabaseService(shards, databaseConfig.shardKeyEnum(),
+                ExecutorMode.fromString(processingConfig.executorMode()));
+        if (sharded.getShardCount() > 1) {
+            LOG.info("Sharding writes by " + sharded.getShardKey() + " across " + sharded.getShardCount() +
+                    " shards: " + sharded.describeShardMap());
+        }
+        return sharded;
+    }
+    
+    /**
+     * Loads the taxi zone centroids once for all shards, if configured.
+     */
+    private TaxiZoneCentroids loadZoneCentroids() {
+        if (databaseConfig.zoneCentroidsPath().isEmpty() || databaseConfig.zoneCentroidsPath().get().isEmpty()) {
+            return null;
+        }
+        String path = databaseConfig.zoneCentroidsPath().get();
+        try {
+            TaxiZoneCentroids centroids = TaxiZoneCentroids.load(Paths.get(path));
+            LOG.info("Loaded " + centroids.size() + " taxi zone centroids from " + path);
+            return centroids;
+        } catch (IOException e) {
+            LOG.error("Failed to load taxi zone centroids from " + path, e);
+            throw new RuntimeException("Failed to load taxi zone centroids", e);
+        }
+    }
+    
+    /**
+     * Creates the DatabaseService for one {@code host:port} endpoint.
+     */
+    private DatabaseService produceDatabaseService(String endpoint, TaxiZoneCentroids zoneCentroids) {
+        int separator = endpoint.lastIndexOf(':');
+        String host = separator > 0 ? endpoint.substring(0, separator) : endpoint;
+        int port = separator > 0 ? Integer.parseInt(endpoint.substring(separator + 1)) : databaseConfig.port();
+        
+        try {
+            LOG.info("Creating DatabaseService - Host: " + host + 
+                    ", Port: " + port + 
                     ", Database: " + databaseConfig.database() + 
                     ", Schema Types: GREEN and YELLOW (both supported)" +
-                    ", TLS: " + databaseConfig.useTls());
+                    ", TLS: " + databaseConfig.useTls() +
+                    ", Compact schema: " + databaseConfig.compactSchema());
             
             DatabaseService.Builder builder = DatabaseService.builder()
-                    .host(databaseConfig.host())
-                    .port(databaseConfig.port())
+                    .host(host)
+                    .port(port)
                     .database(databaseConfig.database())
                     .credentials(databaseConfig.username(), databaseConfig.password())
                     .useTls(databaseConfig.useTls())
                     .schemaType(databaseConfig.schemaTypeEnum())
-                    .createTableIfNotExists(databaseConfig.createTableIfNotExists());
+                    .createTableIfNotExists(databaseConfig.createTableIfNotExists())
+                    .compactSchema(databaseConfig.compactSchema())
+                    .poolSize(databaseConfig.poolSize())
+                    .rollupsEnabled(databaseConfig.rollupsEnabled())
+                    .retryPolicy(RetryPolicy.builder()
+                            .maxAttempts(databaseConfig.retryMaxAttempts())
+                            .initialBackoffMillis(databaseConfig.retryInitialBackoffMs())
+                            .maxBackoffMillis(databaseConfig.retryMaxBackoffMs())
+                            .build())
+                    .rejectsEnabled(databaseConfig.rejectsEnabled())
+                    .zoneCentroids(zoneCentroids);
             
             if (databaseConfig.useTls() && databaseConfig.certPath().isPresent() && 
                 !databaseConfig.certPath().get().isEmpty()) {
@@ -50,6 +132,14 @@ public class DatabaseServiceProducer {
             }
             
             DatabaseService service = builder.build();
+            
+            for (DatabaseService.SchemaType type : DatabaseService.SchemaType.values()) {
+                if (service.isCompact(type) != databaseConfig.compactSchema()) {
+                    LOG.warn("Table " + type.getTableName() + " keeps its " +
+                            (service.isCompact(type) ? "compact" : "original") +
+                            " layout; compact-schema only applies to new tables");
+                }
+            }
             LOG.info("DatabaseService created successfully. Tables: " + 
                     service.getGreenTableName() + ", " + service.getYellowTableName());
             
@@ -63,9 +153,8 @@ public class DatabaseServiceProducer {
             
             return service;
         } catch (SQLException e) {
-            LOG.error("Failed to create DatabaseService", e);
+            LOG.error("Failed to create DatabaseService for " + endpoint, e);
             throw new RuntimeException("Failed to create DatabaseService", e);
         }
     }
 }
-
@@ -1,12 +1,14 @@
 package com.bscllc.taxis.app;
 
 import com.bscllc.taxis.config.ProcessingConfig;
-import com.bscllc.taxis.model.GreenTripdata;
-import com.bscllc.taxis.model.YellowTripdata;
-import com.bscllc.taxis.service.DatabaseService;
+import com.bscllc.taxis.service.DatabaseTripSink;
+import com.bscllc.taxis.service.ShardedDatabaseService;
+import com.bscllc.taxis.util.ExecutorMode;
+import com.bscllc.taxis.util.FanOutPipeline;
 import com.bscllc.taxis.util.Monitor;
-import com.bscllc.taxis.util.TripDataParser;
-import com.bscllc.taxis.util.TripDataParserException;
+import com.bscllc.taxis.util.TripFileProcessor;
+import com.bscllc.taxis.util.TripKind;
+import com.bscllc.taxis.util.TripSink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,16 +16,16 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service for processing parquet files from the input directory and storing them in the database.
+ * Parsing and inserting are pipelined so a file takes roughly as long as the slower of the two.
+ * Each chunk is split by shard and the shards are written in parallel. While a shard is
+ * unreachable, its rows are spooled to disk and written once it is back.
  */
 @ApplicationScoped
 public class FileProcessingService {
@@ -34,31 +36,77 @@ public class FileProcessingService {
     ProcessingConfig processingConfig;
     
     @Inject
-    DatabaseService databaseService;
+    ShardedDatabaseService databaseService;
     
     @Inject
     MetricsService metricsService;
     
     private Monitor monitor;
+    private TripFileProcessor fileProcessor;
+    private FanOutPipeline pipeline;
+    private DatabaseTripSink databaseSink;
+    private List<TripSink> sinks;
     
     @PostConstruct
     void init() {
         try {
+            // Moves each file to the output or error directory once processed
+            fileProcessor = TripFileProcessor.builder()
+                    .inputDirectory(processingConfig.inputDirectory())
+                    .outputDirectory(processingConfig.outputDirectory())
+                    .errorDirectory(processingConfig.errorDirectory())
+                    .handler(this::processTrips)
+                    .onProcessed(file -> metricsService.incrementFilesProcessed())
+                    .onFailed((file, errorFile, error) -> metricsService.incrementFilesErrored())
+                    .build();
+            
             // Create directories if they don't exist
-            createDirectories();
+            fileProcessor.createDirectories();
+            
+            // Parse-to-write pipeline shared by all files
+            pipeline = FanOutPipeline.builder()
+                    .name("DatabaseIngest")
+                    .queueCapacity(processingConfig.queueCapacity())
+                    .writerThreads(processingConfig.writerThreads())
+                    .executorMode(ExecutorMode.fromString(processingConfig.executorMode()))
+                    .build();
+            LOG.info("Ingest pipeline initialized - Chunk size: " + processingConfig.chunkSize() +
+                    ", Queue capacity: " + processingConfig.queueCapacity() +
+                    ", Writer threads: " + processingConfig.writerThreads() +
+                    ", Executor mode: " + pipeline.getExecutorMode());
+            
+            // One writer per shard, spooling locally while its node is down
+            databaseSink = DatabaseTripSink.builder()
+                    .databaseService(databaseService)
+                    .spool(processingConfig.spoolEnabled(), processingConfig.spoolDirectory())
+                    .spoolBackoff(processingConfig.spoolInitialBackoffMs(), processingConfig.spoolMaxBackoffMs())
+                    .onSpoolCreated(metricsService::registerSpoolGauge)
+                    .onInserted(metricsService::incrementRecordsInserted)
+                    .onSpooled(metricsService::incrementChunksSpooled)
+                    .build();
+            sinks = List.of(databaseSink);
+            for (TripSink sink : sinks) {
+                sink.open();
+                LOG.info("Sink " + sink.name() + " opened - Capabilities: " + sink.capabilities());
+            }
+            
+            if (!processingConfig.monitorEnabled()) {
+                LOG.info("Directory monitoring disabled; only spooled chunks are written");
+                return;
+            }
             
             // Create and configure the monitor
             monitor = Monitor.builder()
                     .directory(processingConfig.inputDirectory())
                     .filePattern(".*\\.parquet$")
                     .scanPeriod(processingConfig.monitorPeriodMs())
-                    .onFileAdded(this::processFile)
+                    .onFileAdded(fileProcessor::process)
                     .build();
             
             // Start monitoring
             monitor.start();
             LOG.info("File processing service started. Monitoring directory: " + processingConfig.inputDirectory());
-        } catch (IOException e) {
+        } catch (Exception e) {
             LOG.error("Failed to initialize file processing service", e);
             throw new RuntimeException("Failed to initialize file processing service", e);
         }
@@ -70,6 +118,18 @@ public class FileProcessingService {
             monitor.stop();
             LOG.info("File processing service stopped");
         }
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        if (sinks != null) {
+            for (TripSink sink : sinks) {
+                try {
+                    sink.close();
+                } catch (Exception e) {
+                    LOG.error("Error closing sink " + sink.name(), e);
+                }
+            }
+        }
         if (databaseService != null) {
             try {
                 databaseService.close();
@@ -80,117 +140,19 @@ public class FileProcessingService {
     }
     
     /**
-     * Creates the required directories if they don't exist.
-     */
-    private void createDirectories() throws IOException {
-        Path inputDir = Paths.get(processingConfig.inputDirectory());
-        Path outputDir = Paths.get(processingConfig.outputDirectory());
-        Path errorDir = Paths.get(processingConfig.errorDirectory());
-        
-        Files.createDirectories(inputDir);
-        Files.createDirectories(outputDir);
-        Files.createDirectories(errorDir);
-        
-        LOG.info("Created directories - Input: " + inputDir + ", Output: " + outputDir + ", Error: " + errorDir);
-    }
-    
-    /**
-     * Processes a parquet file: parses it and stores the data in the database.
-     */
-    private void processFile(Path filePath) {
-        LOG.info("Processing file: " + filePath);
-        
-        try {
-            // Determine schema type and parse the file
-            boolean isGreen = TripDataParser.isGreenTripdataFile(filePath.toFile());
-            boolean isYellow = TripDataParser.isYellowTripdataFile(filePath.toFile());
-            
-            if (!isGreen && !isYellow) {
-                LOG.warn("File does not match green or yellow tripdata schema: " + filePath);
-                metricsService.incrementFilesErrored();
-                moveToErrorDirectory(filePath, "Unknown schema type");
-                return;
-            }
-            
-            // Parse and store the data (both green and yellow schemas are supported)
-            if (isGreen) {
-                processGreenTripdata(filePath);
-            } else {
-                processYellowTripdata(filePath);
-            }
-            
-            // Move file to output directory on success
-            moveToOutputDirectory(filePath);
-            metricsService.incrementFilesProcessed();
-            LOG.info("Successfully processed file: " + filePath);
-            
-        } catch (Exception e) {
-            LOG.error("Error processing file: " + filePath, e);
-            metricsService.incrementFilesErrored();
-            try {
-                moveToErrorDirectory(filePath, e.getMessage());
-            } catch (IOException ioException) {
-                LOG.error("Failed to move file to error directory: " + filePath, ioException);
-            }
-        }
-    }
-    
-    /**
-     * Processes green tripdata file.
-     */
-    private void processGreenTripdata(Path filePath) throws TripDataParserException, SQLException {
-        List<GreenTripdata> trips = TripDataParser.parseGreenTripdata(filePath.toString());
-        LOG.info("Parsed " + trips.size() + " green trip records from " + filePath);
-        
-        // Batch insert for better performance
-        if (!trips.isEmpty()) {
-            databaseService.batchInsertGreen(trips);
-            metricsService.incrementRecordsInserted(trips.size());
-            LOG.info("Inserted " + trips.size() + " green trip records into database");
-        }
-    }
-    
-    /**
-     * Processes yellow tripdata file.
-     */
-    private void processYellowTripdata(Path filePath) throws TripDataParserException, SQLException {
-        List<YellowTripdata> trips = TripDataParser.parseYellowTripdata(filePath.toString());
-        LOG.info("Parsed " + trips.size() + " yellow trip records from " + filePath);
-        
-        // Batch insert for better performance
-        if (!trips.isEmpty()) {
-            databaseService.batchInsertYellow(trips);
-            metricsService.incrementRecordsInserted(trips.size());
-            LOG.info("Inserted " + trips.size() + " yellow trip records into database");
-        }
-    }
-    
-    /**
-     * Moves a file to the output directory.
-     */
-    private void moveToOutputDirectory(Path filePath) throws IOException {
-        Path outputDir = Paths.get(processingConfig.outputDirectory());
-        Path destination = outputDir.resolve(filePath.getFileName());
-        Files.move(filePath, destination, StandardCopyOption.REPLACE_EXISTING);
-    }
-    
-    /**
-     * Moves a file to the error directory with an error message suffix.
+     * Processes a tripdata file, inserting chunks while the rest of the file is parsed.
      */
-    private void moveToErrorDirectory(Path filePath, String errorMessage) throws IOException {
-        Path errorDir = Paths.get(processingConfig.errorDirectory());
-        String fileName = filePath.getFileName().toString();
-        // Add timestamp and error suffix to filename
-        String errorFileName = fileName.replace(".parquet", "_" + System.currentTimeMillis() + ".parquet");
-        Path destination = errorDir.resolve(errorFileName);
-        Files.move(filePath, destination, StandardCopyOption.REPLACE_EXISTING);
-        LOG.warn("Moved file to error directory: " + destination + " (Error: " + errorMessage + ")");
+    private <T> void processTrips(Path filePath, TripKind<T> kind) throws Exception {
+        Map<String, Long> stored = pipeline.run(
+                kind.producer(filePath.toFile(), processingConfig.chunkSize()),
+                sinks.stream().map(kind::sink).toList());
+        LOG.info("Stored " + stored.get(databaseSink.name()) + " " + kind + " trip records from " + filePath);
     }
     
     /**
      * Gets the monitor instance.
      *
-     * @return monitor instance
+     * @return monitor instance, or null if directory monitoring is disabled
      */
     public Monitor getMonitor() {
         return monitor;
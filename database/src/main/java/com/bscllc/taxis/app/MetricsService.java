@@ -1,6 +1,10 @@
 package com.bscllc.taxis.app;
 
+import com.bscllc.taxis.service.ChunkSpool;
+import com.bscllc.taxis.service.DatabaseService;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -15,9 +19,13 @@ public class MetricsService {
     private final Counter filesErrored;
     private final Counter recordsInserted;
     private final Counter tablesCreated;
+    private final Counter chunksSpooled;
+    private final MeterRegistry meterRegistry;
     
     @Inject
     public MetricsService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        
         this.filesProcessed = Counter.builder("taxis.files.processed")
                 .description("Total number of files processed successfully")
                 .register(meterRegistry);
@@ -34,6 +42,10 @@ public class MetricsService {
         this.tablesCreated = Counter.builder("taxis.tables.created")
                 .description("Total number of database tables created")
                 .register(meterRegistry);
+        
+        this.chunksSpooled = Counter.builder("taxis.chunks.spooled")
+                .description("Total number of chunks spooled to disk while the database was unreachable")
+                .register(meterRegistry);
     }
     
     public void incrementFilesProcessed() {
@@ -51,5 +63,34 @@ public class MetricsService {
     public void incrementTablesCreated() {
         tablesCreated.increment();
     }
+    
+    public void incrementChunksSpooled() {
+        chunksSpooled.increment();
+    }
+    
+    /**
+     * Registers a gauge reporting the number of spooled chunks waiting to be written to one shard.
+     *
+     * @param spool spool to observe
+     * @param shard shard number the spool belongs to
+     */
+    public void registerSpoolGauge(ChunkSpool spool, int shard) {
+        Gauge.builder("taxis.spool.pending", spool, ChunkSpool::pendingSegments)
+                .description("Number of spooled chunks waiting to be written to the database")
+                .tag("shard", String.valueOf(shard))
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Registers a counter reporting rows moved to the reject table of one shard.
+     *
+     * @param databaseService service whose rejects are counted
+     * @param shard shard number of the service
+     */
+    public void registerRejectCounter(DatabaseService databaseService, int shard) {
+        FunctionCounter.builder("taxis.records.rejected", databaseService, DatabaseService::getRejectedRecords)
+                .description("Total number of records refused by the database and moved to the reject table")
+                .tag("shard", String.valueOf(shard))
+                .register(meterRegistry);
+    }
 }
-
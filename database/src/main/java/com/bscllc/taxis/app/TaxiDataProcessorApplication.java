@@ -1,5 +1,6 @@
 package com.bscllc.taxis.app;
 
+import com.bscllc.taxis.util.Monitor;
 import io.quarkus.runtime.Quarkus;
 import io.quarkus.runtime.QuarkusApplication;
 import io.quarkus.runtime.annotations.QuarkusMain;
@@ -22,8 +23,11 @@ public class TaxiDataProcessorApplication implements QuarkusApplication {
     @Override
     public int run(String... args) {
         LOG.info("Taxi Data Processor Application started");
-        LOG.info("Monitoring directory: " + fileProcessingService.getMonitor().getDirectory());
-        LOG.info("Scan period: " + fileProcessingService.getMonitor().getScanPeriodMillis() + " ms");
+        Monitor monitor = fileProcessingService.getMonitor();
+        if (monitor != null) {
+            LOG.info("Monitoring directory: " + monitor.getDirectory());
+            LOG.info("Scan period: " + monitor.getScanPeriodMillis() + " ms");
+        }
         
         // Keep the application running
         Quarkus.waitForExit();
@@ -1,9 +1,11 @@
 package com.bscllc.taxis.config;
 
 import com.bscllc.taxis.service.DatabaseService;
+import com.bscllc.taxis.service.ShardedDatabaseService;
 import io.smallrye.config.ConfigMapping;
 import io.smallrye.config.WithName;
 import io.smallrye.config.WithDefault;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -42,6 +44,87 @@ public interface DatabaseConfig {
     @WithDefault("true")
     boolean createTableIfNotExists();
     
+    /**
+     * Whether newly created trip tables use the compact storage layout
+     * (SMALLINT codes, money in integer cents, boolean store-and-forward flag).
+     */
+    @WithName("compact-schema")
+    @WithDefault("false")
+    boolean compactSchema();
+    
+    /**
+     * Number of pooled connections used for concurrent batch inserts.
+     */
+    @WithName("pool-size")
+    @WithDefault("2")
+    int poolSize();
+    
+    /**
+     * Whether to maintain the hourly pickup zone rollup table during ingest.
+     */
+    @WithName("rollups-enabled")
+    @WithDefault("true")
+    boolean rollupsEnabled();
+    
+    /**
+     * Maximum attempts per chunk when inserts fail transiently (failover, deadlock, lock timeout).
+     */
+    @WithName("retry-max-attempts")
+    @WithDefault("5")
+    int retryMaxAttempts();
+    
+    /**
+     * Backoff ceiling in milliseconds for the first retry; doubles on each further retry.
+     */
+    @WithName("retry-initial-backoff-ms")
+    @WithDefault("200")
+    long retryInitialBackoffMs();
+    
+    /**
+     * Upper bound in milliseconds for a single retry backoff.
+     */
+    @WithName("retry-max-backoff-ms")
+    @WithDefault("10000")
+    long retryMaxBackoffMs();
+    
+    /**
+     * Whether rows refused by the database are moved to the reject table instead of failing the chunk.
+     */
+    @WithName("rejects-enabled")
+    @WithDefault("true")
+    boolean rejectsEnabled();
+    
+    /**
+     * CSV of TLC taxi zone centroids (LocationID, Borough, Zone, longitude, latitude).
+     * When set, pickup/dropoff centroid geometries are written to PostGIS columns during ingest.
+     */
+    @WithName("zone-centroids-path")
+    Optional<String> zoneCentroidsPath();
+    
+    /**
+     * PostgreSQL nodes to shard writes across, as {@code host:port} entries. The position of an
+     * entry is its shard number, so this list is the shard map and its order must stay stable.
+     * When unset, all rows go to {@link #host()}:{@link #port()}.
+     */
+    @WithName("shard-endpoints")
+    Optional<List<String>> shardEndpoints();
+    
+    /**
+     * Row routing key across shards: PICKUP_ZONE or PICKUP_MONTH.
+     */
+    @WithName("shard-key")
+    @WithDefault("PICKUP_ZONE")
+    String shardKey();
+    
+    /**
+     * Converts shard key string to enum.
+     */
+    default ShardedDatabaseService.ShardKey shardKeyEnum() {
+        return "PICKUP_MONTH".equalsIgnoreCase(shardKey())
+            ? ShardedDatabaseService.ShardKey.PICKUP_MONTH
+            : ShardedDatabaseService.ShardKey.PICKUP_ZONE;
+    }
+    
     /**
      * Converts schema type string to enum.
      */
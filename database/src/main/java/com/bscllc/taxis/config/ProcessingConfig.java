@@ -1,6 +1,7 @@
 package com.bscllc.taxis.config;
 
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
 import io.smallrye.config.WithName;
 
 /**
@@ -32,5 +33,70 @@ public interface ProcessingConfig {
      */
     @WithName("monitor-period-ms")
     long monitorPeriodMs();
+    
+    /**
+     * Whether to watch the input directory. Disabled when the ingest application feeds
+     * the database from its own directory monitor.
+     */
+    @WithName("monitor-enabled")
+    @WithDefault("true")
+    boolean monitorEnabled();
+    
+    /**
+     * Number of parsed records handed from the parser to the writers at a time.
+     */
+    @WithName("chunk-size")
+    @WithDefault("5000")
+    int chunkSize();
+    
+    /**
+     * Maximum number of parsed chunks waiting for a writer before parsing blocks.
+     */
+    @WithName("queue-capacity")
+    @WithDefault("4")
+    int queueCapacity();
+    
+    /**
+     * Number of writer threads inserting chunks into the database concurrently.
+     */
+    @WithName("writer-threads")
+    @WithDefault("2")
+    int writerThreads();
+    
+    /**
+     * Thread model for writers: PLATFORM threads, or VIRTUAL threads so many blocking
+     * writes can be in flight without one OS thread each.
+     */
+    @WithName("executor-mode")
+    @WithDefault("PLATFORM")
+    String executorMode();
+    
+    /**
+     * Whether chunks are spooled to local disk while the database is unreachable.
+     */
+    @WithName("spool-enabled")
+    @WithDefault("true")
+    boolean spoolEnabled();
+    
+    /**
+     * Directory holding spooled chunks until they are written to the database.
+     */
+    @WithName("spool-directory")
+    @WithDefault("./data/spool")
+    String spoolDirectory();
+    
+    /**
+     * Initial delay in milliseconds between spool replay attempts while the database is down.
+     */
+    @WithName("spool-initial-backoff-ms")
+    @WithDefault("1000")
+    long spoolInitialBackoffMs();
+    
+    /**
+     * Maximum delay in milliseconds between spool replay attempts.
+     */
+    @WithName("spool-max-backoff-ms")
+    @WithDefault("60000")
+    long spoolMaxBackoffMs();
 }
 
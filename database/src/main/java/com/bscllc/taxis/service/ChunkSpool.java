@@ -0,0 +1,196 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Durable local spool of already-parsed trip chunks, used while PostgreSQL is unavailable.
+ * Each chunk is one segment file encoded with {@link TripChunkCodec}. Segments are written to a
+ * temporary file, fsynced and atomically renamed, and the directory is fsynced after the rename,
+ * so a crash never leaves a partial segment behind nor loses one that was reported durable.
+ * Segment names carry a zero-padded sequence number, so listing them by name yields append order.
+ */
+public class ChunkSpool {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private final Path directory;
+    private final AtomicLong nextSequence;
+    private final AtomicInteger pending;
+
+    /**
+     * Opens (or creates) a spool directory. Leftover temporary files from a crash are removed.
+     *
+     * @param directory spool directory
+     * @throws IOException if the directory cannot be created or read
+     */
+    public ChunkSpool(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(TEMP_SUFFIX)).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        List<Path> existing = segments();
+        long maxSequence = 0;
+        for (Path segment : existing) {
+            maxSequence = Math.max(maxSequence, sequenceOf(segment));
+        }
+        this.nextSequence = new AtomicLong(maxSequence + 1);
+        this.pending = new AtomicInteger(existing.size());
+    }
+
+    /**
+     * Durably appends a chunk of green trips.
+     *
+     * @param trips trips to spool
+     * @return path of the new segment
+     * @throws IOException if the segment cannot be written
+     */
+    public Path appendGreen(List<GreenTripdata> trips) throws IOException {
+        return append(TripChunkCodec.encodeGreen(trips));
+    }
+
+    /**
+     * Durably appends a chunk of yellow trips.
+     *
+     * @param trips trips to spool
+     * @return path of the new segment
+     * @throws IOException if the segment cannot be written
+     */
+    public Path appendYellow(List<YellowTripdata> trips) throws IOException {
+        return append(TripChunkCodec.encodeYellow(trips));
+    }
+
+    private Path append(byte[] data) throws IOException {
+        String name = SEGMENT_PREFIX + String.format("%020d", nextSequence.getAndIncrement()) + SEGMENT_SUFFIX;
+        Path segment = directory.resolve(name);
+        Path temp = directory.resolve(name + TEMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        pending.incrementAndGet();
+        return segment;
+    }
+
+    /**
+     * Flushes the directory to disk, making the rename of a segment durable. Without it the
+     * segment's data is on disk but a crash can still lose its directory entry.
+     */
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Lists pending segments, oldest first.
+     *
+     * @return segment paths in append order
+     * @throws IOException if the directory cannot be read
+     */
+    public List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(ChunkSpool::isSegment).forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Reads and decodes a segment.
+     *
+     * @param segment segment path from {@link #segments()}
+     * @return decoded chunk
+     * @throws IOException if the segment cannot be read or is corrupt
+     */
+    public TripChunkCodec.DecodedChunk read(Path segment) throws IOException {
+        return TripChunkCodec.decode(Files.readAllBytes(segment));
+    }
+
+    /**
+     * Removes a segment once its chunk has been committed to the database.
+     *
+     * @param segment segment path
+     * @throws IOException if the segment cannot be deleted
+     */
+    public void remove(Path segment) throws IOException {
+        if (Files.deleteIfExists(segment)) {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Moves an unreadable or unloadable segment aside so draining can continue.
+     *
+     * @param segment segment path
+     * @return path of the quarantined file
+     * @throws IOException if the segment cannot be renamed
+     */
+    public Path quarantine(Path segment) throws IOException {
+        Path target = segment.resolveSibling(segment.getFileName() + CORRUPT_SUFFIX);
+        Files.move(segment, target, StandardCopyOption.REPLACE_EXISTING);
+        pending.decrementAndGet();
+        return target;
+    }
+
+    /**
+     * Gets the number of segments waiting to be drained.
+     *
+     * @return pending segment count
+     */
+    public int pendingSegments() {
+        return pending.get();
+    }
+
+    /**
+     * Gets the spool directory.
+     *
+     * @return directory path
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.bscllc.taxis.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fixed-size pool of PostgreSQL connections used for concurrent writes.
+ * A JDBC connection executes one statement at a time, so parallel writers
+ * each need their own connection. Broken connections are discarded with
+ * {@link #invalidate(Connection)} and reopened on the next borrow, so the
+ * pool recovers by itself once the database is reachable again.
+ */
+public class ConnectionPool {
+
+    /**
+     * Opens a new connection for the pool.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final ConcurrentLinkedQueue<Connection> idle;
+    private final Semaphore available;
+    private final int size;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a pool and opens all of its connections.
+     *
+     * @param size number of connections
+     * @param factory opens each connection
+     * @throws SQLException if a connection cannot be opened
+     */
+    public ConnectionPool(int size, ConnectionFactory factory) throws SQLException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.size = size;
+        this.factory = factory;
+        this.idle = new ConcurrentLinkedQueue<>();
+        this.available = new Semaphore(size, true);
+
+        try {
+            for (int i = 0; i < size; i++) {
+                idle.add(factory.create());
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Borrows a connection, blocking until one is available.
+     * Opens a replacement if a previous connection was invalidated.
+     *
+     * @return connection that must be handed back with {@link #release(Connection)}
+     *         or {@link #invalidate(Connection)}
+     * @throws SQLException if interrupted while waiting or a replacement cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            available.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        Connection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        try {
+            return factory.create();
+        } catch (SQLException e) {
+            available.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a healthy borrowed connection to the pool.
+     *
+     * @param connection connection obtained from {@link #borrow()}
+     */
+    public void release(Connection connection) {
+        if (closed) {
+            closeQuietly(connection);
+        } else {
+            idle.offer(connection);
+            // close() may have drained the queue between the check and the offer
+            if (closed) {
+                closeIdle();
+            }
+        }
+        available.release();
+    }
+
+    /**
+     * Discards a borrowed connection that is no longer usable.
+     * A new connection is opened on a later borrow.
+     *
+     * @param connection connection obtained from {@link #borrow()}
+     */
+    public void invalidate(Connection connection) {
+        closeQuietly(connection);
+        available.release();
+    }
+
+    /**
+     * Gets the number of connections in the pool.
+     *
+     * @return pool size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Closes every idle connection; borrowed connections are closed when released.
+     */
+    public void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            if (!connection.isClosed()) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            // Best effort; the connection is being discarded
+        }
+    }
+}
@@ -2,12 +2,16 @@ package com.bscllc.taxis.service;
 
 import com.bscllc.taxis.model.GreenTripdata;
 import com.bscllc.taxis.model.YellowTripdata;
+import com.bscllc.taxis.util.TaxiZoneCentroids;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service class for connecting to PostgreSQL and storing trip data.
@@ -33,13 +37,34 @@ public class DatabaseService {
     }
     
     private final Connection connection;
+    private final ConnectionPool writePool;
     private final String host;
     private final int port;
     private final String database;
     private final boolean useTls;
     private final SchemaType schemaType; // Kept for backward compatibility, but not used for validation
+    private final boolean compactSchema;
+    private final Set<SchemaType> compactTables = EnumSet.noneOf(SchemaType.class);
+    private final boolean rollupsEnabled;
+    private final RetryPolicy retryPolicy;
+    private final boolean rejectsEnabled;
+    private final ZoneGeometries zoneGeometries;
+    private final AtomicLong rejectedRecords = new AtomicLong();
     private final boolean tablesCreated;
     
+    /**
+     * Table holding rows the database refused, with the reason, for later inspection.
+     */
+    public static final String REJECTS_TABLE_NAME = "trip_rejects";
+    
+    /**
+     * Inserts one chunk of trips in a single transaction.
+     */
+    @FunctionalInterface
+    private interface ChunkInsert<T> {
+        int[] insert(List<T> chunk) throws SQLException;
+    }
+    
     /**
      * Builder class for creating DatabaseService instances.
      */
@@ -53,6 +78,12 @@ public class DatabaseService {
         private String certPath;
         private SchemaType schemaType = SchemaType.GREEN;
         private boolean createTableIfNotExists = true;
+        private boolean compactSchema = false;
+        private int poolSize = 2;
+        private boolean rollupsEnabled = true;
+        private RetryPolicy retryPolicy = RetryPolicy.builder().build();
+        private boolean rejectsEnabled = true;
+        private TaxiZoneCentroids zoneCentroids;
         
         /**
          * Sets the PostgreSQL host.
@@ -144,6 +175,83 @@ public class DatabaseService {
             return this;
         }
         
+        /**
+         * Enables the compact storage layout for the trip tables.
+         * Codes are stored as SMALLINT, money as integer cents, the store-and-forward
+         * flag as BOOLEAN, and columns are ordered widest first to avoid alignment padding.
+         * Only affects tables created by this service; existing tables keep their layout,
+         * and inserts follow the layout each table actually has.
+         *
+         * @param compactSchema true to use the compact layout
+         * @return this builder
+         */
+        public Builder compactSchema(boolean compactSchema) {
+            this.compactSchema = compactSchema;
+            return this;
+        }
+        
+        /**
+         * Sets the number of pooled connections used by batch inserts.
+         * Batch inserts from different threads run in parallel up to this limit.
+         *
+         * @param poolSize number of write connections
+         * @return this builder
+         */
+        public Builder poolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+        
+        /**
+         * Enables incremental maintenance of the hourly pickup zone rollup table.
+         * Each batch insert also upserts its pre-aggregated totals in the same transaction.
+         *
+         * @param rollupsEnabled true to maintain {@value ZoneHourlyRollup#TABLE_NAME}
+         * @return this builder
+         */
+        public Builder rollupsEnabled(boolean rollupsEnabled) {
+            this.rollupsEnabled = rollupsEnabled;
+            return this;
+        }
+        
+        /**
+         * Sets the retry policy for batch inserts that fail transiently.
+         *
+         * @param retryPolicy retry policy
+         * @return this builder
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+        
+        /**
+         * Enables isolating rows the database refuses into the reject table.
+         * A chunk with bad rows is split until the offending rows are found; the
+         * remaining rows are still inserted. When disabled, such a chunk fails as a whole.
+         *
+         * @param rejectsEnabled true to write refused rows to {@value DatabaseService#REJECTS_TABLE_NAME}
+         * @return this builder
+         */
+        public Builder rejectsEnabled(boolean rejectsEnabled) {
+            this.rejectsEnabled = rejectsEnabled;
+            return this;
+        }
+        
+        /**
+         * Enables PostGIS enrichment: pickup and dropoff zone centroids are written to
+         * {@code pickup_geom}/{@code dropoff_geom} {@code geometry(Point,4326)} columns with
+         * GiST indexes. The columns are added to existing tables when table creation is enabled.
+         * Requires the PostGIS extension in the target database.
+         *
+         * @param zoneCentroids centroid lookup, or null to disable enrichment
+         * @return this builder
+         */
+        public Builder zoneCentroids(TaxiZoneCentroids zoneCentroids) {
+            this.zoneCentroids = zoneCentroids;
+            return this;
+        }
+        
         /**
          * Builds the DatabaseService instance.
          *
@@ -170,6 +278,11 @@ public class DatabaseService {
         this.database = builder.database;
         this.useTls = builder.useTls;
         this.schemaType = builder.schemaType;
+        this.compactSchema = builder.compactSchema;
+        this.rollupsEnabled = builder.rollupsEnabled;
+        this.retryPolicy = builder.retryPolicy;
+        this.rejectsEnabled = builder.rejectsEnabled;
+        this.zoneGeometries = builder.zoneCentroids != null ? new ZoneGeometries(builder.zoneCentroids) : null;
         this.connection = createConnection(builder);
         
         if (builder.createTableIfNotExists) {
@@ -177,6 +290,14 @@ public class DatabaseService {
         } else {
             this.tablesCreated = false;
         }
+        detectTableLayouts();
+        
+        try {
+            this.writePool = new ConnectionPool(builder.poolSize, () -> createWriteConnection(builder));
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
     }
     
     /**
@@ -213,6 +334,16 @@ public class DatabaseService {
         return DriverManager.getConnection(url, props);
     }
     
+    /**
+     * Creates a pooled write connection. Write connections run each batch in a single
+     * transaction, so the trips and their rollup totals are committed together.
+     */
+    private Connection createWriteConnection(Builder builder) throws SQLException {
+        Connection writeConnection = createConnection(builder);
+        writeConnection.setAutoCommit(false);
+        return writeConnection;
+    }
+    
     /**
      * Builds the PostgreSQL connection URL.
      */
@@ -225,15 +356,74 @@ public class DatabaseService {
     
     /**
      * Creates both green and yellow tables if they don't exist.
+     * Also creates the rollup and reject tables and the geometry columns when they are enabled.
      * 
-     * @return true if at least one table was created, false if both already existed
+     * @return true if at least one trip table was created, false if both already existed
      */
     private boolean createTablesIfNotExists() throws SQLException {
         boolean greenCreated = createTableIfNotExists(SchemaType.GREEN);
         boolean yellowCreated = createTableIfNotExists(SchemaType.YELLOW);
+        
+        if (rollupsEnabled) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(ZoneHourlyRollup.getCreateTableSql());
+            }
+        }
+        
+        if (rejectsEnabled) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(getRejectsCreateTableSql());
+            }
+        }
+        
+        if (zoneGeometries != null) {
+            addGeometryColumns(SchemaType.GREEN);
+            addGeometryColumns(SchemaType.YELLOW);
+        }
+        
         return greenCreated || yellowCreated;
     }
     
+    /**
+     * Records which trip tables use the compact layout, from the money columns they have.
+     * Tables that don't exist yet are assumed to get the configured layout.
+     */
+    private void detectTableLayouts() throws SQLException {
+        String sql = "SELECT column_name FROM information_schema.columns " +
+                "WHERE table_schema = 'public' AND table_name = ? " +
+                "AND column_name IN ('fare_amount', 'fare_amount_cents')";
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            for (SchemaType type : SchemaType.values()) {
+                pstmt.setString(1, type.getTableName());
+                boolean compact = compactSchema;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        compact = rs.getString(1).equals("fare_amount_cents");
+                    }
+                }
+                if (compact) {
+                    compactTables.add(type);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Adds the pickup/dropoff centroid geometry columns and their GiST indexes if missing.
+     * Works for tables in either storage layout, including ones created before enrichment.
+     */
+    private void addGeometryColumns(SchemaType schemaType) throws SQLException {
+        String tableName = schemaType.getTableName();
+        try (Statement stmt = connection.createStatement()) {
+            for (String column : new String[] {"pickup_geom", "dropoff_geom"}) {
+                stmt.execute("ALTER TABLE " + tableName + " ADD COLUMN IF NOT EXISTS " + column +
+                        " geometry(Point," + ZoneGeometries.SRID + ")");
+                stmt.execute("CREATE INDEX IF NOT EXISTS " + tableName + "_" + column + "_idx ON " +
+                        tableName + " USING GIST (" + column + ")");
+            }
+        }
+    }
+    
     /**
      * Creates a table if it doesn't exist based on the schema type.
      * 
@@ -270,6 +460,10 @@ public class DatabaseService {
      * Gets the CREATE TABLE SQL statement based on schema type.
      */
     private String getCreateTableSql(SchemaType schemaType) {
+        if (compactSchema) {
+            return getCompactCreateTableSql(schemaType);
+        }
+        
         String tableName = schemaType.getTableName();
         
         if (schemaType == SchemaType.GREEN) {
@@ -321,6 +515,128 @@ public class DatabaseService {
         }
     }
     
+    /**
+     * Gets the compact CREATE TABLE SQL statement based on schema type.
+     * Columns are ordered 8-byte, 4-byte, 2-byte, then 1-byte so PostgreSQL
+     * does not insert alignment padding between them. Money is stored in cents.
+     */
+    private String getCompactCreateTableSql(SchemaType schemaType) {
+        String tableName = schemaType.getTableName();
+        
+        if (schemaType == SchemaType.GREEN) {
+            return "CREATE TABLE IF NOT EXISTS " + tableName + " (" +
+                    "lpep_pickup_datetime TIMESTAMP, " +
+                    "lpep_dropoff_datetime TIMESTAMP, " +
+                    "id SERIAL PRIMARY KEY, " +
+                    "trip_distance REAL, " +
+                    "fare_amount_cents INTEGER, " +
+                    "extra_cents INTEGER, " +
+                    "mta_tax_cents INTEGER, " +
+                    "tip_amount_cents INTEGER, " +
+                    "tolls_amount_cents INTEGER, " +
+                    "ehail_fee_cents INTEGER, " +
+                    "improvement_surcharge_cents INTEGER, " +
+                    "total_amount_cents INTEGER, " +
+                    "congestion_surcharge_cents INTEGER, " +
+                    "vendor_id SMALLINT, " +
+                    "ratecode_id SMALLINT, " +
+                    "pu_location_id SMALLINT, " +
+                    "do_location_id SMALLINT, " +
+                    "passenger_count SMALLINT, " +
+                    "payment_type SMALLINT, " +
+                    "trip_type SMALLINT, " +
+                    "store_and_fwd_flag BOOLEAN" +
+                    ")";
+        } else {
+            return "CREATE TABLE IF NOT EXISTS " + tableName + " (" +
+                    "tpep_pickup_datetime TIMESTAMP, " +
+                    "tpep_dropoff_datetime TIMESTAMP, " +
+                    "id SERIAL PRIMARY KEY, " +
+                    "trip_distance REAL, " +
+                    "fare_amount_cents INTEGER, " +
+                    "extra_cents INTEGER, " +
+                    "mta_tax_cents INTEGER, " +
+                    "tip_amount_cents INTEGER, " +
+                    "tolls_amount_cents INTEGER, " +
+                    "improvement_surcharge_cents INTEGER, " +
+                    "total_amount_cents INTEGER, " +
+                    "congestion_surcharge_cents INTEGER, " +
+                    "vendor_id SMALLINT, " +
+                    "passenger_count SMALLINT, " +
+                    "ratecode_id SMALLINT, " +
+                    "pu_location_id SMALLINT, " +
+                    "do_location_id SMALLINT, " +
+                    "payment_type SMALLINT, " +
+                    "store_and_fwd_flag BOOLEAN" +
+                    ")";
+        }
+    }
+    
+    /**
+     * Gets the CREATE TABLE SQL statement for the reject table.
+     */
+    private String getRejectsCreateTableSql() {
+        return "CREATE TABLE IF NOT EXISTS " + REJECTS_TABLE_NAME + " (" +
+                "id BIGSERIAL PRIMARY KEY, " +
+                "rejected_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "taxi_type VARCHAR(6) NOT NULL, " +
+                "sql_state VARCHAR(5), " +
+                "error_message TEXT, " +
+                "record TEXT NOT NULL" +
+                ")";
+    }
+    
+    /**
+     * Gets the INSERT SQL statement for green trip data.
+     * Column names follow the storage layout of the green table.
+     */
+    private String getGreenInsertSql() {
+        boolean compact = isCompact(SchemaType.GREEN);
+        return "INSERT INTO " + SchemaType.GREEN.getTableName() + " " +
+                "(vendor_id, lpep_pickup_datetime, lpep_dropoff_datetime, store_and_fwd_flag, " +
+                "ratecode_id, pu_location_id, do_location_id, passenger_count, trip_distance, " +
+                moneyColumn("fare_amount", compact) + ", " + moneyColumn("extra", compact) + ", " +
+                moneyColumn("mta_tax", compact) + ", " + moneyColumn("tip_amount", compact) + ", " +
+                moneyColumn("tolls_amount", compact) + ", " + moneyColumn("ehail_fee", compact) + ", " +
+                moneyColumn("improvement_surcharge", compact) + ", " + moneyColumn("total_amount", compact) + ", " +
+                "payment_type, trip_type, " + moneyColumn("congestion_surcharge", compact) + geometryColumns() + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?" + geometryPlaceholders() + ")";
+    }
+    
+    /**
+     * Gets the INSERT SQL statement for yellow trip data.
+     * Column names follow the storage layout of the yellow table.
+     */
+    private String getYellowInsertSql() {
+        boolean compact = isCompact(SchemaType.YELLOW);
+        return "INSERT INTO " + SchemaType.YELLOW.getTableName() + " " +
+                "(vendor_id, tpep_pickup_datetime, tpep_dropoff_datetime, passenger_count, " +
+                "trip_distance, ratecode_id, store_and_fwd_flag, pu_location_id, do_location_id, " +
+                "payment_type, " + moneyColumn("fare_amount", compact) + ", " + moneyColumn("extra", compact) + ", " +
+                moneyColumn("mta_tax", compact) + ", " + moneyColumn("tip_amount", compact) + ", " +
+                moneyColumn("tolls_amount", compact) + ", " + moneyColumn("improvement_surcharge", compact) + ", " +
+                moneyColumn("total_amount", compact) + ", " + moneyColumn("congestion_surcharge", compact) + geometryColumns() + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?" + geometryPlaceholders() + ")";
+    }
+    
+    /**
+     * Gets the extra insert columns for centroid geometries, if enrichment is enabled.
+     */
+    private String geometryColumns() {
+        return zoneGeometries != null ? ", pickup_geom, dropoff_geom" : "";
+    }
+    
+    private String geometryPlaceholders() {
+        return zoneGeometries != null ? ", ?, ?" : "";
+    }
+    
+    /**
+     * Gets the column name for a money field in the given storage layout.
+     */
+    private static String moneyColumn(String baseName, boolean compact) {
+        return compact ? baseName + "_cents" : baseName;
+    }
+    
     /**
      * Inserts a GreenTripdata record into the database.
      *
@@ -329,12 +645,7 @@ public class DatabaseService {
      * @throws SQLException if insert fails
      */
     public Long insert(GreenTripdata tripData) throws SQLException {
-        String sql = "INSERT INTO " + SchemaType.GREEN.getTableName() + " " +
-                "(vendor_id, lpep_pickup_datetime, lpep_dropoff_datetime, store_and_fwd_flag, " +
-                "ratecode_id, pu_location_id, do_location_id, passenger_count, trip_distance, " +
-                "fare_amount, extra, mta_tax, tip_amount, tolls_amount, ehail_fee, " +
-                "improvement_surcharge, total_amount, payment_type, trip_type, congestion_surcharge) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = getGreenInsertSql();
         
         try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             setGreenTripdataParameters(pstmt, tripData);
@@ -358,12 +669,7 @@ public class DatabaseService {
      * @throws SQLException if insert fails
      */
     public Long insert(YellowTripdata tripData) throws SQLException {
-        String sql = "INSERT INTO " + SchemaType.YELLOW.getTableName() + " " +
-                "(vendor_id, tpep_pickup_datetime, tpep_dropoff_datetime, passenger_count, " +
-                "trip_distance, ratecode_id, store_and_fwd_flag, pu_location_id, do_location_id, " +
-                "payment_type, fare_amount, extra, mta_tax, tip_amount, tolls_amount, " +
-                "improvement_surcharge, total_amount, congestion_surcharge) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = getYellowInsertSql();
         
         try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             setYellowTripdataParameters(pstmt, tripData);
@@ -381,49 +687,196 @@ public class DatabaseService {
     
     /**
      * Batch inserts GreenTripdata records.
+     * Uses a pooled connection, so calls from different threads run in parallel.
+     * The batch and its rollup totals are committed as one transaction.
+     * Transient failures are retried; rows the database refuses are moved to the reject table.
      *
      * @param tripDataList list of trip data to insert
-     * @return array of update counts
+     * @return array of update counts, {@link Statement#EXECUTE_FAILED} for rejected rows
      * @throws SQLException if batch insert fails
      */
     public int[] batchInsertGreen(List<GreenTripdata> tripDataList) throws SQLException {
-        String sql = "INSERT INTO " + SchemaType.GREEN.getTableName() + " " +
-                "(vendor_id, lpep_pickup_datetime, lpep_dropoff_datetime, store_and_fwd_flag, " +
-                "ratecode_id, pu_location_id, do_location_id, passenger_count, trip_distance, " +
-                "fare_amount, extra, mta_tax, tip_amount, tolls_amount, ehail_fee, " +
-                "improvement_surcharge, total_amount, payment_type, trip_type, congestion_surcharge) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return insertWithRecovery(SchemaType.GREEN, tripDataList, this::insertGreenChunk);
+    }
+    
+    /**
+     * Inserts a chunk of green trips and its rollup totals in one transaction.
+     */
+    private int[] insertGreenChunk(List<GreenTripdata> tripDataList) throws SQLException {
+        String sql = getGreenInsertSql();
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            for (GreenTripdata tripData : tripDataList) {
-                setGreenTripdataParameters(pstmt, tripData);
-                pstmt.addBatch();
+        Connection conn = writePool.borrow();
+        boolean healthy = true;
+        try {
+            int[] updateCounts;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (GreenTripdata tripData : tripDataList) {
+                    setGreenTripdataParameters(pstmt, tripData);
+                    pstmt.addBatch();
+                }
+                updateCounts = pstmt.executeBatch();
+            }
+            if (rollupsEnabled) {
+                ZoneHourlyRollup.ofGreen(tripDataList).upsert(conn, SchemaType.GREEN);
+            }
+            conn.commit();
+            return updateCounts;
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            healthy = !isConnectionFailure(e) && isUsable(conn);
+            throw e;
+        } finally {
+            if (healthy) {
+                writePool.release(conn);
+            } else {
+                writePool.invalidate(conn);
             }
-            return pstmt.executeBatch();
         }
     }
     
     /**
      * Batch inserts YellowTripdata records.
+     * Uses a pooled connection, so calls from different threads run in parallel.
+     * The batch and its rollup totals are committed as one transaction.
+     * Transient failures are retried; rows the database refuses are moved to the reject table.
      *
      * @param tripDataList list of trip data to insert
-     * @return array of update counts
+     * @return array of update counts, {@link Statement#EXECUTE_FAILED} for rejected rows
      * @throws SQLException if batch insert fails
      */
     public int[] batchInsertYellow(List<YellowTripdata> tripDataList) throws SQLException {
-        String sql = "INSERT INTO " + SchemaType.YELLOW.getTableName() + " " +
-                "(vendor_id, tpep_pickup_datetime, tpep_dropoff_datetime, passenger_count, " +
-                "trip_distance, ratecode_id, store_and_fwd_flag, pu_location_id, do_location_id, " +
-                "payment_type, fare_amount, extra, mta_tax, tip_amount, tolls_amount, " +
-                "improvement_surcharge, total_amount, congestion_surcharge) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        return insertWithRecovery(SchemaType.YELLOW, tripDataList, this::insertYellowChunk);
+    }
+    
+    /**
+     * Inserts a chunk of yellow trips and its rollup totals in one transaction.
+     */
+    private int[] insertYellowChunk(List<YellowTripdata> tripDataList) throws SQLException {
+        String sql = getYellowInsertSql();
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            for (YellowTripdata tripData : tripDataList) {
-                setYellowTripdataParameters(pstmt, tripData);
-                pstmt.addBatch();
+        Connection conn = writePool.borrow();
+        boolean healthy = true;
+        try {
+            int[] updateCounts;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (YellowTripdata tripData : tripDataList) {
+                    setYellowTripdataParameters(pstmt, tripData);
+                    pstmt.addBatch();
+                }
+                updateCounts = pstmt.executeBatch();
+            }
+            if (rollupsEnabled) {
+                ZoneHourlyRollup.ofYellow(tripDataList).upsert(conn, SchemaType.YELLOW);
+            }
+            conn.commit();
+            return updateCounts;
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            healthy = !isConnectionFailure(e) && isUsable(conn);
+            throw e;
+        } finally {
+            if (healthy) {
+                writePool.release(conn);
+            } else {
+                writePool.invalidate(conn);
+            }
+        }
+    }
+    
+    /**
+     * Inserts a chunk, retrying transient failures. If rows are refused, the chunk is split in
+     * halves until each refused row is isolated; every piece is its own transaction, so rollup
+     * totals only ever include rows that were committed.
+     */
+    private <T> int[] insertWithRecovery(SchemaType type, List<T> trips, ChunkInsert<T> insert)
+            throws SQLException {
+        try {
+            return insertWithRetry(trips, insert);
+        } catch (SQLException e) {
+            if (!rejectsEnabled || !RetryPolicy.isDataError(e)) {
+                throw e;
+            }
+            return bisect(type, trips, insert, e);
+        }
+    }
+    
+    /**
+     * Inserts a chunk, retrying it with backoff while failures are transient.
+     */
+    private <T> int[] insertWithRetry(List<T> trips, ChunkInsert<T> insert) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return insert.insert(trips);
+            } catch (SQLException e) {
+                if (!retryPolicy.shouldRetry(e, attempt)) {
+                    throw e;
+                }
+                retryPolicy.awaitRetry(attempt, e);
+            }
+        }
+    }
+    
+    /**
+     * Splits a refused chunk and inserts the halves separately, down to single rows.
+     */
+    private <T> int[] bisect(SchemaType type, List<T> trips, ChunkInsert<T> insert, SQLException failure)
+            throws SQLException {
+        if (trips.size() == 1) {
+            reject(type, trips.get(0), failure);
+            return new int[] {Statement.EXECUTE_FAILED};
+        }
+        
+        int middle = trips.size() / 2;
+        int[] first = insertHalf(type, trips.subList(0, middle), insert);
+        int[] second = insertHalf(type, trips.subList(middle, trips.size()), insert);
+        int[] updateCounts = new int[trips.size()];
+        System.arraycopy(first, 0, updateCounts, 0, first.length);
+        System.arraycopy(second, 0, updateCounts, first.length, second.length);
+        return updateCounts;
+    }
+    
+    private <T> int[] insertHalf(SchemaType type, List<T> half, ChunkInsert<T> insert) throws SQLException {
+        try {
+            return insertWithRetry(half, insert);
+        } catch (SQLException e) {
+            if (!RetryPolicy.isDataError(e)) {
+                throw e;
+            }
+            return bisect(type, half, insert, e);
+        }
+    }
+    
+    /**
+     * Records a refused row in the reject table.
+     */
+    private void reject(SchemaType type, Object trip, SQLException failure) throws SQLException {
+        String sql = "INSERT INTO " + REJECTS_TABLE_NAME +
+                " (taxi_type, sql_state, error_message, record) VALUES (?, ?, ?, ?)";
+        String reason = failure.getNextException() != null
+                ? failure.getNextException().getMessage() : failure.getMessage();
+        
+        Connection conn = writePool.borrow();
+        boolean healthy = true;
+        try {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, type.name());
+                pstmt.setString(2, RetryPolicy.sqlStateOf(failure));
+                pstmt.setString(3, reason);
+                pstmt.setString(4, String.valueOf(trip));
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+            rejectedRecords.incrementAndGet();
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            healthy = !isConnectionFailure(e) && isUsable(conn);
+            throw e;
+        } finally {
+            if (healthy) {
+                writePool.release(conn);
+            } else {
+                writePool.invalidate(conn);
             }
-            return pstmt.executeBatch();
         }
     }
     
@@ -432,28 +885,33 @@ public class DatabaseService {
      */
     private void setGreenTripdataParameters(PreparedStatement pstmt, GreenTripdata tripData) throws SQLException {
         int index = 1;
+        boolean compact = isCompact(SchemaType.GREEN);
         pstmt.setObject(index++, tripData.getVendorId());
         pstmt.setObject(index++, tripData.getLpepPickupDatetime() != null ? 
             Timestamp.valueOf(tripData.getLpepPickupDatetime()) : null);
         pstmt.setObject(index++, tripData.getLpepDropoffDatetime() != null ? 
             Timestamp.valueOf(tripData.getLpepDropoffDatetime()) : null);
-        pstmt.setString(index++, tripData.getStoreAndFwdFlag());
+        setFlag(pstmt, index++, tripData.getStoreAndFwdFlag(), compact);
         pstmt.setObject(index++, tripData.getRatecodeId());
         pstmt.setObject(index++, tripData.getPuLocationId());
         pstmt.setObject(index++, tripData.getDoLocationId());
         pstmt.setObject(index++, tripData.getPassengerCount());
         pstmt.setObject(index++, tripData.getTripDistance());
-        pstmt.setObject(index++, tripData.getFareAmount());
-        pstmt.setObject(index++, tripData.getExtra());
-        pstmt.setObject(index++, tripData.getMtaTax());
-        pstmt.setObject(index++, tripData.getTipAmount());
-        pstmt.setObject(index++, tripData.getTollsAmount());
-        pstmt.setObject(index++, tripData.getEhailFee());
-        pstmt.setObject(index++, tripData.getImprovementSurcharge());
-        pstmt.setObject(index++, tripData.getTotalAmount());
+        setAmount(pstmt, index++, tripData.getFareAmount(), compact);
+        setAmount(pstmt, index++, tripData.getExtra(), compact);
+        setAmount(pstmt, index++, tripData.getMtaTax(), compact);
+        setAmount(pstmt, index++, tripData.getTipAmount(), compact);
+        setAmount(pstmt, index++, tripData.getTollsAmount(), compact);
+        setAmount(pstmt, index++, tripData.getEhailFee(), compact);
+        setAmount(pstmt, index++, tripData.getImprovementSurcharge(), compact);
+        setAmount(pstmt, index++, tripData.getTotalAmount(), compact);
         pstmt.setObject(index++, tripData.getPaymentType());
         pstmt.setObject(index++, tripData.getTripType());
-        pstmt.setObject(index++, tripData.getCongestionSurcharge());
+        setAmount(pstmt, index++, tripData.getCongestionSurcharge(), compact);
+        if (zoneGeometries != null) {
+            setGeometry(pstmt, index++, tripData.getPuLocationId());
+            setGeometry(pstmt, index++, tripData.getDoLocationId());
+        }
     }
     
     /**
@@ -461,6 +919,7 @@ public class DatabaseService {
      */
     private void setYellowTripdataParameters(PreparedStatement pstmt, YellowTripdata tripData) throws SQLException {
         int index = 1;
+        boolean compact = isCompact(SchemaType.YELLOW);
         pstmt.setObject(index++, tripData.getVendorId());
         pstmt.setObject(index++, tripData.getTpepPickupDatetime() != null ? 
             Timestamp.valueOf(tripData.getTpepPickupDatetime()) : null);
@@ -469,18 +928,104 @@ public class DatabaseService {
         pstmt.setObject(index++, tripData.getPassengerCount());
         pstmt.setObject(index++, tripData.getTripDistance());
         pstmt.setObject(index++, tripData.getRatecodeId());
-        pstmt.setString(index++, tripData.getStoreAndFwdFlag());
+        setFlag(pstmt, index++, tripData.getStoreAndFwdFlag(), compact);
         pstmt.setObject(index++, tripData.getPuLocationId());
         pstmt.setObject(index++, tripData.getDoLocationId());
         pstmt.setObject(index++, tripData.getPaymentType());
-        pstmt.setObject(index++, tripData.getFareAmount());
-        pstmt.setObject(index++, tripData.getExtra());
-        pstmt.setObject(index++, tripData.getMtaTax());
-        pstmt.setObject(index++, tripData.getTipAmount());
-        pstmt.setObject(index++, tripData.getTollsAmount());
-        pstmt.setObject(index++, tripData.getImprovementSurcharge());
-        pstmt.setObject(index++, tripData.getTotalAmount());
-        pstmt.setObject(index++, tripData.getCongestionSurcharge());
+        setAmount(pstmt, index++, tripData.getFareAmount(), compact);
+        setAmount(pstmt, index++, tripData.getExtra(), compact);
+        setAmount(pstmt, index++, tripData.getMtaTax(), compact);
+        setAmount(pstmt, index++, tripData.getTipAmount(), compact);
+        setAmount(pstmt, index++, tripData.getTollsAmount(), compact);
+        setAmount(pstmt, index++, tripData.getImprovementSurcharge(), compact);
+        setAmount(pstmt, index++, tripData.getTotalAmount(), compact);
+        setAmount(pstmt, index++, tripData.getCongestionSurcharge(), compact);
+        if (zoneGeometries != null) {
+            setGeometry(pstmt, index++, tripData.getPuLocationId());
+            setGeometry(pstmt, index++, tripData.getDoLocationId());
+        }
+    }
+    
+    /**
+     * Checks if a failure means the database is unreachable rather than the statement being bad.
+     * Covers connection exceptions (SQLState class 08) and server shutdown/startup states.
+     *
+     * @param e failure raised by the driver
+     * @return true if the database connection was lost or could not be established
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                String state = sqlException.getSQLState();
+                if (state.startsWith("08") || state.equals("57P01") || state.equals("57P02")
+                        || state.equals("57P03")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks if a write connection can be reused after a failed statement.
+     */
+    private boolean isUsable(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(5);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Rolls back the current transaction, ignoring secondary failures so the original error is kept.
+     */
+    private void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            // The original failure is more useful to the caller
+        }
+    }
+    
+    /**
+     * Binds a money value, converting it to integer cents for the compact layout.
+     */
+    private void setAmount(PreparedStatement pstmt, int index, Double amount, boolean compact) throws SQLException {
+        if (compact && amount != null) {
+            pstmt.setLong(index, Math.round(amount * 100));
+        } else {
+            pstmt.setObject(index, amount);
+        }
+    }
+    
+    /**
+     * Binds the store-and-forward flag, converting "Y"/"N" to a boolean for the compact layout.
+     */
+    private void setFlag(PreparedStatement pstmt, int index, String flag, boolean compact) throws SQLException {
+        if (!compact) {
+            pstmt.setString(index, flag);
+        } else if (flag == null || flag.isEmpty()) {
+            pstmt.setNull(index, Types.BOOLEAN);
+        } else {
+            pstmt.setBoolean(index, "Y".equalsIgnoreCase(flag));
+        }
+    }
+    
+    /**
+     * Binds a zone centroid as pre-encoded hex EWKB, left untyped so PostgreSQL parses it
+     * as the geometry column's type. Unknown zones are stored as NULL.
+     */
+    private void setGeometry(PreparedStatement pstmt, int index, Integer locationId) throws SQLException {
+        String point = zoneGeometries.pointOf(locationId);
+        if (point == null) {
+            pstmt.setNull(index, Types.OTHER);
+        } else {
+            pstmt.setObject(index, point, Types.OTHER);
+        }
     }
     
     /**
@@ -501,6 +1046,53 @@ public class DatabaseService {
         return schemaType;
     }
     
+    /**
+     * Gets the PostgreSQL host.
+     *
+     * @return host
+     */
+    public String getHost() {
+        return host;
+    }
+    
+    /**
+     * Gets the PostgreSQL port.
+     *
+     * @return port
+     */
+    public int getPort() {
+        return port;
+    }
+    
+    /**
+     * Gets the database name.
+     *
+     * @return database name
+     */
+    public String getDatabase() {
+        return database;
+    }
+    
+    /**
+     * Checks if the compact storage layout is configured for newly created tables.
+     *
+     * @return true if new tables store money in cents and codes as SMALLINT
+     */
+    public boolean isCompactSchema() {
+        return compactSchema;
+    }
+
+    /**
+     * Checks if a trip table uses the compact storage layout. Existing tables keep the layout
+     * they were created with, whatever {@link #isCompactSchema()} says.
+     *
+     * @param type trip table
+     * @return true if the table stores money in cents and codes as SMALLINT
+     */
+    public boolean isCompact(SchemaType type) {
+        return compactTables.contains(type);
+    }
+    
     /**
      * Gets the table name for the configured schema type (for backward compatibility).
      *
@@ -510,6 +1102,33 @@ public class DatabaseService {
         return schemaType.getTableName();
     }
     
+    /**
+     * Checks if the hourly zone rollup table is maintained on insert.
+     *
+     * @return true if rollups are enabled
+     */
+    public boolean isRollupsEnabled() {
+        return rollupsEnabled;
+    }
+    
+    /**
+     * Checks if pickup/dropoff centroid geometries are written.
+     *
+     * @return true if PostGIS enrichment is enabled
+     */
+    public boolean isGeometryEnabled() {
+        return zoneGeometries != null;
+    }
+    
+    /**
+     * Gets the number of rows moved to the reject table since startup.
+     *
+     * @return rejected row count
+     */
+    public long getRejectedRecords() {
+        return rejectedRecords.get();
+    }
+    
     /**
      * Gets the table name for green trip data.
      *
@@ -542,11 +1161,34 @@ public class DatabaseService {
     }
     
     /**
-     * Closes the database connection.
+     * Checks that a write connection can reach the database, reopening one if needed.
+     *
+     * @return true if the database is reachable
+     */
+    public boolean ping() {
+        Connection conn;
+        try {
+            conn = writePool.borrow();
+        } catch (SQLException e) {
+            return false;
+        }
+        if (isUsable(conn)) {
+            writePool.release(conn);
+            return true;
+        }
+        writePool.invalidate(conn);
+        return false;
+    }
+    
+    /**
+     * Closes the database connection and the write connection pool.
      *
      * @throws SQLException if closing fails
      */
     public void close() throws SQLException {
+        if (writePool != null) {
+            writePool.close();
+        }
         if (connection != null && !connection.isClosed()) {
             connection.close();
         }
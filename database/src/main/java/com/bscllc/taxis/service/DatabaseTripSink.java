@@ -0,0 +1,254 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import com.bscllc.taxis.util.TripSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.LongConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The sharded database as a {@link TripSink}. Each batch is split by shard and the shards are
+ * written in parallel through their {@link SpoolingDatabaseWriter}s; the write returns once
+ * every shard has committed or spooled its rows, so the acknowledgement is immediate.
+ */
+public class DatabaseTripSink implements TripSink {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseTripSink.class);
+
+    /**
+     * Notified for every shard part of a batch, e.g. to update metrics.
+     */
+    @FunctionalInterface
+    public interface ShardListener {
+
+        /**
+         * Called after a shard's rows were committed or spooled.
+         *
+         * @param shard shard number
+         * @param rows number of rows
+         * @param spooled true if the rows were spooled because the shard is down
+         */
+        void written(int shard, int rows, boolean spooled);
+    }
+
+    /**
+     * Builder creating the spooling writer of every shard along with the sink.
+     */
+    public static class Builder {
+        private ShardedDatabaseService databaseService;
+        private Path spoolDirectory;
+        private long spoolInitialBackoffMillis = 1000;
+        private long spoolMaxBackoffMillis = 60000;
+        private ObjIntConsumer<ChunkSpool> onSpoolCreated = (spool, shard) -> { };
+        private LongConsumer onInserted = rows -> { };
+        private Runnable onSpooled = () -> { };
+
+        /**
+         * Sets the sharded database to write to.
+         *
+         * @param databaseService sharded database
+         * @return this builder
+         */
+        public Builder databaseService(ShardedDatabaseService databaseService) {
+            this.databaseService = databaseService;
+            return this;
+        }
+
+        /**
+         * Enables spooling chunks to disk while a shard is unreachable. A single shard spools
+         * directly into the directory; with several shards each gets its own subdirectory.
+         *
+         * @param enabled whether to spool
+         * @param directory spool directory
+         * @return this builder
+         */
+        public Builder spool(boolean enabled, String directory) {
+            this.spoolDirectory = enabled ? Paths.get(directory) : null;
+            return this;
+        }
+
+        /**
+         * Sets the delays between attempts to replay spooled chunks.
+         *
+         * @param initialMillis first delay after a shard went down
+         * @param maxMillis upper bound for the delay
+         * @return this builder
+         */
+        public Builder spoolBackoff(long initialMillis, long maxMillis) {
+            this.spoolInitialBackoffMillis = initialMillis;
+            this.spoolMaxBackoffMillis = maxMillis;
+            return this;
+        }
+
+        /**
+         * Sets the callback for each shard spool created, e.g. to register a gauge.
+         *
+         * @param callback receives the spool and its shard number
+         * @return this builder
+         */
+        public Builder onSpoolCreated(ObjIntConsumer<ChunkSpool> callback) {
+            this.onSpoolCreated = callback;
+            return this;
+        }
+
+        /**
+         * Sets the callback for rows committed to a shard, written directly or replayed from
+         * the spool.
+         *
+         * @param callback receives the number of rows
+         * @return this builder
+         */
+        public Builder onInserted(LongConsumer callback) {
+            this.onInserted = callback;
+            return this;
+        }
+
+        /**
+         * Sets the callback for every chunk spooled because its shard is down.
+         *
+         * @param callback spooled chunk callback
+         * @return this builder
+         */
+        public Builder onSpooled(Runnable callback) {
+            this.onSpooled = callback;
+            return this;
+        }
+
+        /**
+         * Builds the sink, starting one writer per shard.
+         *
+         * @return configured DatabaseTripSink instance
+         * @throws IllegalArgumentException if the database service is not set
+         * @throws IOException if a spool directory cannot be opened
+         */
+        public DatabaseTripSink build() throws IOException {
+            if (databaseService == null) {
+                throw new IllegalArgumentException("Database service must be specified");
+            }
+            List<SpoolingDatabaseWriter> writers = new ArrayList<>(databaseService.getShardCount());
+            try {
+                for (int shard = 0; shard < databaseService.getShardCount(); shard++) {
+                    writers.add(createShardWriter(shard));
+                }
+            } catch (IOException | RuntimeException e) {
+                writers.forEach(SpoolingDatabaseWriter::close);
+                throw e;
+            }
+            DatabaseTripSink sink = new DatabaseTripSink(databaseService, writers);
+            sink.setShardListener((shard, rows, spooled) -> {
+                if (spooled) {
+                    onSpooled.run();
+                    LOG.debug("Spooled " + rows + " trip records for shard " + shard);
+                } else {
+                    onInserted.accept(rows);
+                    LOG.debug("Inserted " + rows + " trip records into shard " + shard);
+                }
+            });
+            return sink;
+        }
+
+        private SpoolingDatabaseWriter createShardWriter(int shard) throws IOException {
+            ChunkSpool spool = null;
+            if (spoolDirectory != null) {
+                Path directory = spoolDirectory;
+                if (databaseService.getShardCount() > 1) {
+                    directory = directory.resolve("shard-" + shard);
+                }
+                spool = new ChunkSpool(directory);
+                onSpoolCreated.accept(spool, shard);
+                LOG.info("Spooling enabled - Shard: " + shard + ", Directory: " + spool.getDirectory() +
+                        ", Pending chunks: " + spool.pendingSegments());
+            }
+            SpoolingDatabaseWriter writer = new SpoolingDatabaseWriter(databaseService.getShard(shard), spool,
+                    spoolInitialBackoffMillis, spoolMaxBackoffMillis);
+            writer.setDrainListener(onInserted);
+            writer.start();
+            return writer;
+        }
+    }
+
+    /**
+     * Creates a new Builder instance.
+     *
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final ShardedDatabaseService databaseService;
+    private final List<SpoolingDatabaseWriter> writers;
+    private volatile ShardListener shardListener = (shard, rows, spooled) -> { };
+
+    /**
+     * Creates the sink.
+     *
+     * @param databaseService sharded database
+     * @param writers one started writer per shard, in shard order; closed with the sink
+     */
+    public DatabaseTripSink(ShardedDatabaseService databaseService, List<SpoolingDatabaseWriter> writers) {
+        if (writers.size() != databaseService.getShardCount()) {
+            throw new IllegalArgumentException("Expected " + databaseService.getShardCount() +
+                    " shard writers, got " + writers.size());
+        }
+        this.databaseService = databaseService;
+        this.writers = List.copyOf(writers);
+    }
+
+    /**
+     * Sets the callback invoked for every shard part written.
+     *
+     * @param shardListener listener
+     */
+    public void setShardListener(ShardListener shardListener) {
+        this.shardListener = shardListener;
+    }
+
+    @Override
+    public String name() {
+        return "database";
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        Set<Capability> capabilities = EnumSet.of(Capability.CONCURRENT_WRITES);
+        if (writers.stream().anyMatch(writer -> writer.getSpool() != null)) {
+            capabilities.add(Capability.LOCAL_SPOOL);
+        }
+        return capabilities;
+    }
+
+    @Override
+    public CompletionStage<Void> writeGreen(List<GreenTripdata> trips) throws Exception {
+        databaseService.writeParallel(databaseService.partitionGreen(trips), (shard, rows) ->
+                shardListener.written(shard, rows.size(), !writers.get(shard).writeGreen(rows)));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletionStage<Void> writeYellow(List<YellowTripdata> trips) throws Exception {
+        databaseService.writeParallel(databaseService.partitionYellow(trips), (shard, rows) ->
+                shardListener.written(shard, rows.size(), !writers.get(shard).writeYellow(rows)));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Stops the shard writers; spooled chunks stay on disk for the next start.
+     */
+    @Override
+    public void close() {
+        writers.forEach(SpoolingDatabaseWriter::close);
+    }
+}
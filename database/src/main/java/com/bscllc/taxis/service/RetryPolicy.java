@@ -0,0 +1,224 @@
+package com.bscllc.taxis.service;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for chunk writes. Classifies failures by SQLState and computes
+ * exponential backoff delays with full jitter, so writers that failed together
+ * (e.g. during a primary failover) do not all retry at the same moment.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Builder class for creating RetryPolicy instances.
+     */
+    public static class Builder {
+        private int maxAttempts = 5;
+        private long initialBackoffMillis = 200;
+        private long maxBackoffMillis = 10000;
+
+        /**
+         * Sets the maximum number of attempts per chunk, including the first one.
+         *
+         * @param maxAttempts attempts; 1 disables retries
+         * @return this builder
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the backoff ceiling for the first retry.
+         *
+         * @param initialBackoffMillis initial backoff in milliseconds
+         * @return this builder
+         */
+        public Builder initialBackoffMillis(long initialBackoffMillis) {
+            this.initialBackoffMillis = initialBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Sets the upper bound for any single backoff.
+         *
+         * @param maxBackoffMillis maximum backoff in milliseconds
+         * @return this builder
+         */
+        public Builder maxBackoffMillis(long maxBackoffMillis) {
+            this.maxBackoffMillis = maxBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Builds the RetryPolicy instance.
+         *
+         * @return configured RetryPolicy
+         */
+        public RetryPolicy build() {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException("Max attempts must be positive");
+            }
+            return new RetryPolicy(this);
+        }
+    }
+
+    /**
+     * Creates a new Builder instance.
+     *
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffMillis = Math.max(0, builder.initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, builder.maxBackoffMillis);
+    }
+
+    /**
+     * Checks if a failed attempt should be retried.
+     *
+     * @param e failure of the attempt
+     * @param attempt number of the failed attempt, starting at 1
+     * @return true if the failure is transient and attempts remain
+     */
+    public boolean shouldRetry(SQLException e, int attempt) {
+        return attempt < maxAttempts && isTransient(e);
+    }
+
+    /**
+     * Computes the delay before the next attempt: a random value between zero and
+     * the exponentially growing ceiling (full jitter).
+     *
+     * @param attempt number of the failed attempt, starting at 1
+     * @return delay in milliseconds
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = initialBackoffMillis << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Sleeps for the backoff of a failed attempt.
+     *
+     * @param attempt number of the failed attempt, starting at 1
+     * @param cause failure being retried, rethrown if the wait is interrupted
+     * @throws SQLException the cause, if interrupted
+     */
+    public void awaitRetry(int attempt, SQLException cause) throws SQLException {
+        try {
+            Thread.sleep(backoffMillis(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * Checks if a failure is expected to go away on its own: lost connections, serialization
+     * failures and deadlocks (40001, 40P01), lock timeouts (55P03), resource exhaustion (53xxx)
+     * and server shutdown/startup (57P01-57P03).
+     *
+     * @param e failure raised by the driver
+     * @return true if retrying the same statement may succeed
+     */
+    public static boolean isTransient(SQLException e) {
+        if (DatabaseService.isConnectionFailure(e)) {
+            return true;
+        }
+        for (SQLException s : chain(e)) {
+            if (s instanceof SQLTransientException) {
+                return true;
+            }
+            String state = s.getSQLState();
+            if (state != null && (state.equals("40001") || state.equals("40P01")
+                    || state.equals("55P03") || state.startsWith("53"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a failure was caused by the data itself: data exceptions (class 22) such as
+     * out-of-range values, or integrity constraint violations (class 23). Retrying the same rows
+     * cannot succeed, but the rest of the chunk can still be written.
+     *
+     * @param e failure raised by the driver
+     * @return true if one or more rows were rejected
+     */
+    public static boolean isDataError(SQLException e) {
+        for (SQLException s : chain(e)) {
+            String state = s.getSQLState();
+            if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the SQLState of the first exception in the chain that has one.
+     *
+     * @param e failure raised by the driver
+     * @return SQLState, or null if none is set
+     */
+    public static String sqlStateOf(SQLException e) {
+        for (SQLException s : chain(e)) {
+            if (s.getSQLState() != null) {
+                return s.getSQLState();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Flattens the cause and next-exception chains. The driver reports the real reason for a
+     * {@link BatchUpdateException} as its next exception.
+     */
+    private static List<SQLException> chain(SQLException e) {
+        List<SQLException> all = new ArrayList<>();
+        Deque<Throwable> pending = new ArrayDeque<>();
+        pending.add(e);
+        int visited = 0;
+        while (!pending.isEmpty() && visited++ < 32) {
+            Throwable t = pending.poll();
+            if (t instanceof SQLException s && !all.contains(s)) {
+                all.add(s);
+                if (s.getNextException() != null) {
+                    pending.add(s.getNextException());
+                }
+            }
+            if (t.getCause() != null) {
+                pending.add(t.getCause());
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Gets the maximum number of attempts per chunk.
+     *
+     * @return max attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
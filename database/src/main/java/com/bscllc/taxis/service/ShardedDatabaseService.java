@@ -0,0 +1,303 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import com.bscllc.taxis.util.ExecutorMode;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Routes trip rows across several PostgreSQL nodes, each with its own {@link DatabaseService}
+ * and write pool. The shard of a row is a plain modulo of its shard key, so query tooling can
+ * compute it without this class:
+ * <ul>
+ *   <li>{@link ShardKey#PICKUP_ZONE}: {@code pu_location_id % shardCount}</li>
+ *   <li>{@link ShardKey#PICKUP_MONTH}: {@code (year * 12 + month - 1) % shardCount} of the pickup time</li>
+ * </ul>
+ * Rows without a key go to shard 0. Shard numbers are positions in the configured endpoint list,
+ * so the list order is the shard map and must not change once data has been written.
+ * With a single shard every row goes to that node, which is the unsharded layout.
+ */
+public class ShardedDatabaseService implements AutoCloseable {
+
+    public enum ShardKey {
+        PICKUP_ZONE,
+        PICKUP_MONTH
+    }
+
+    /**
+     * Writes the rows routed to one shard.
+     *
+     * @param <T> row type
+     */
+    @FunctionalInterface
+    public interface ShardWriter<T> {
+        void write(int shard, List<T> rows) throws Exception;
+    }
+
+    private final List<DatabaseService> shards;
+    private final ShardKey shardKey;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a sharded service over already connected shards, writing shards on platform threads.
+     *
+     * @param shards one service per node, in shard map order
+     * @param shardKey routing key
+     */
+    public ShardedDatabaseService(List<DatabaseService> shards, ShardKey shardKey) {
+        this(shards, shardKey, ExecutorMode.PLATFORM);
+    }
+
+    /**
+     * Creates a sharded service over already connected shards.
+     *
+     * @param shards one service per node, in shard map order
+     * @param shardKey routing key
+     * @param executorMode thread model for parallel shard writes
+     */
+    public ShardedDatabaseService(List<DatabaseService> shards, ShardKey shardKey, ExecutorMode executorMode) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        this.shardKey = shardKey;
+        this.executor = executorMode.newExecutor("ShardWriter");
+    }
+
+    /**
+     * Computes the shard of a green trip.
+     *
+     * @param trip green trip
+     * @return shard number
+     */
+    public int shardOf(GreenTripdata trip) {
+        return shardOf(trip.getPuLocationId(), trip.getLpepPickupDatetime());
+    }
+
+    /**
+     * Computes the shard of a yellow trip.
+     *
+     * @param trip yellow trip
+     * @return shard number
+     */
+    public int shardOf(YellowTripdata trip) {
+        return shardOf(trip.getPuLocationId(), trip.getTpepPickupDatetime());
+    }
+
+    private int shardOf(Integer zone, LocalDateTime pickup) {
+        int n = shards.size();
+        if (n == 1) {
+            return 0;
+        }
+        if (shardKey == ShardKey.PICKUP_MONTH) {
+            return pickup == null ? 0 : Math.floorMod(pickup.getYear() * 12 + pickup.getMonthValue() - 1, n);
+        }
+        return zone == null ? 0 : Math.floorMod(zone, n);
+    }
+
+    /**
+     * Splits a chunk of green trips by shard.
+     *
+     * @param trips green trips
+     * @return one list per shard, possibly empty
+     */
+    public List<List<GreenTripdata>> partitionGreen(List<GreenTripdata> trips) {
+        if (shards.size() == 1) {
+            return Collections.singletonList(trips);
+        }
+        List<List<GreenTripdata>> parts = emptyParts();
+        for (GreenTripdata trip : trips) {
+            parts.get(shardOf(trip)).add(trip);
+        }
+        return parts;
+    }
+
+    /**
+     * Splits a chunk of yellow trips by shard.
+     *
+     * @param trips yellow trips
+     * @return one list per shard, possibly empty
+     */
+    public List<List<YellowTripdata>> partitionYellow(List<YellowTripdata> trips) {
+        if (shards.size() == 1) {
+            return Collections.singletonList(trips);
+        }
+        List<List<YellowTripdata>> parts = emptyParts();
+        for (YellowTripdata trip : trips) {
+            parts.get(shardOf(trip)).add(trip);
+        }
+        return parts;
+    }
+
+    private <T> List<List<T>> emptyParts() {
+        List<List<T>> parts = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            parts.add(new ArrayList<>());
+        }
+        return parts;
+    }
+
+    /**
+     * Writes partitioned rows to their shards in parallel and waits for all of them.
+     * Every shard is attempted even if another fails; the first failure is then rethrown.
+     *
+     * @param parts rows per shard, as returned by a partition method
+     * @param writer writes one shard's rows
+     * @param <T> row type
+     * @throws Exception the first shard failure
+     */
+    public <T> void writeParallel(List<List<T>> parts, ShardWriter<T> writer) throws Exception {
+        List<Future<?>> futures = new ArrayList<>(parts.size());
+        Exception failure = null;
+        for (int i = 0; i < parts.size(); i++) {
+            List<T> rows = parts.get(i);
+            if (rows.isEmpty()) {
+                continue;
+            }
+            int shard = i;
+            if (futures.isEmpty() && onlyNonEmpty(parts, i)) {
+                // Nothing to overlap with, write on the calling thread
+                writer.write(shard, rows);
+                return;
+            }
+            futures.add(executor.submit(() -> {
+                writer.write(shard, rows);
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception cause ? cause : e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<?> pending : futures) {
+                    pending.cancel(true);
+                }
+                throw e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static boolean onlyNonEmpty(List<? extends List<?>> parts, int index) {
+        for (int i = index + 1; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Batch inserts green trips, each shard receiving its rows in parallel.
+     *
+     * @param trips green trips
+     * @throws Exception the first shard failure
+     */
+    public void batchInsertGreen(List<GreenTripdata> trips) throws Exception {
+        writeParallel(partitionGreen(trips), (shard, rows) -> shards.get(shard).batchInsertGreen(rows));
+    }
+
+    /**
+     * Batch inserts yellow trips, each shard receiving its rows in parallel.
+     *
+     * @param trips yellow trips
+     * @throws Exception the first shard failure
+     */
+    public void batchInsertYellow(List<YellowTripdata> trips) throws Exception {
+        writeParallel(partitionYellow(trips), (shard, rows) -> shards.get(shard).batchInsertYellow(rows));
+    }
+
+    /**
+     * Gets the service of one shard.
+     *
+     * @param shard shard number
+     * @return database service of the shard
+     */
+    public DatabaseService getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Gets the services of all shards, in shard map order.
+     *
+     * @return shard services
+     */
+    public List<DatabaseService> getShards() {
+        return shards;
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return shard count
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Gets the routing key.
+     *
+     * @return shard key
+     */
+    public ShardKey getShardKey() {
+        return shardKey;
+    }
+
+    /**
+     * Describes the shard map as {@code shard=host:port/database} entries, for logs and tooling.
+     *
+     * @return shard map description
+     */
+    public String describeShardMap() {
+        StringBuilder map = new StringBuilder();
+        for (int i = 0; i < shards.size(); i++) {
+            DatabaseService shard = shards.get(i);
+            if (i > 0) {
+                map.append(", ");
+            }
+            map.append(i).append('=').append(shard.getHost()).append(':').append(shard.getPort())
+                    .append('/').append(shard.getDatabase());
+        }
+        return map.toString();
+    }
+
+    /**
+     * Closes every shard. All shards are closed even if one fails; the first failure is rethrown.
+     *
+     * @throws SQLException if a shard fails to close
+     */
+    @Override
+    public void close() throws SQLException {
+        executor.shutdownNow();
+        SQLException failure = null;
+        for (DatabaseService shard : shards) {
+            try {
+                shard.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
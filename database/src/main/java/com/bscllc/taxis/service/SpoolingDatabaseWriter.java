@@ -0,0 +1,236 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Writes trip chunks to PostgreSQL, falling back to a local {@link ChunkSpool} while the
+ * database is unreachable. A background drainer replays spooled chunks, oldest first, once
+ * the database is back, retrying with exponential backoff in between. Parsed data therefore
+ * survives an outage and input files do not have to be reprocessed.
+ *
+ * Only connection failures are spooled; any other SQL error is rethrown to the caller.
+ */
+public class SpoolingDatabaseWriter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpoolingDatabaseWriter.class);
+
+    private final DatabaseService databaseService;
+    private final ChunkSpool spool;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledExecutorService drainer;
+    private volatile boolean databaseDown = false;
+    private volatile LongConsumer drainListener = rows -> { };
+    private long backoffMillis;
+
+    /**
+     * Creates a spooling writer.
+     *
+     * @param databaseService database to write to
+     * @param spool spool for chunks that cannot be written, or null to disable spooling
+     * @param initialBackoffMillis first delay between drain attempts while the database is down
+     * @param maxBackoffMillis upper bound for the drain retry delay
+     */
+    public SpoolingDatabaseWriter(DatabaseService databaseService, ChunkSpool spool,
+                                  long initialBackoffMillis, long maxBackoffMillis) {
+        this.databaseService = databaseService;
+        this.spool = spool;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, maxBackoffMillis);
+        this.backoffMillis = initialBackoffMillis;
+        this.drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SpoolDrainer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Sets a callback invoked with the number of rows committed for each drained segment.
+     *
+     * @param drainListener receives drained row counts
+     */
+    public void setDrainListener(LongConsumer drainListener) {
+        this.drainListener = drainListener;
+    }
+
+    /**
+     * Starts the background drainer. Segments left over from a previous run are drained first.
+     */
+    public void start() {
+        if (spool != null) {
+            if (spool.pendingSegments() > 0) {
+                LOG.info("Found " + spool.pendingSegments() + " spooled chunks in " + spool.getDirectory());
+            }
+            drainer.schedule(this::drain, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes a chunk of green trips, spooling it if the database is unreachable.
+     *
+     * @param trips chunk to write
+     * @return true if committed to the database, false if spooled
+     * @throws SQLException if the write fails for a reason other than connectivity
+     * @throws IOException if the chunk had to be spooled and spooling failed
+     */
+    public boolean writeGreen(List<GreenTripdata> trips) throws SQLException, IOException {
+        if (!databaseDown) {
+            try {
+                databaseService.batchInsertGreen(trips);
+                return true;
+            } catch (SQLException e) {
+                handleWriteFailure(e);
+            }
+        }
+        spool.appendGreen(trips);
+        return false;
+    }
+
+    /**
+     * Writes a chunk of yellow trips, spooling it if the database is unreachable.
+     *
+     * @param trips chunk to write
+     * @return true if committed to the database, false if spooled
+     * @throws SQLException if the write fails for a reason other than connectivity
+     * @throws IOException if the chunk had to be spooled and spooling failed
+     */
+    public boolean writeYellow(List<YellowTripdata> trips) throws SQLException, IOException {
+        if (!databaseDown) {
+            try {
+                databaseService.batchInsertYellow(trips);
+                return true;
+            } catch (SQLException e) {
+                handleWriteFailure(e);
+            }
+        }
+        spool.appendYellow(trips);
+        return false;
+    }
+
+    /**
+     * Rethrows non-connectivity failures; otherwise switches to spooling.
+     */
+    private void handleWriteFailure(SQLException e) throws SQLException {
+        if (spool == null || !DatabaseService.isConnectionFailure(e)) {
+            throw e;
+        }
+        if (!databaseDown) {
+            databaseDown = true;
+            LOG.warn("Database unreachable, spooling chunks to " + spool.getDirectory() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replays spooled segments oldest first. Reschedules itself: quickly while healthy,
+     * with exponential backoff while the database is still unreachable.
+     */
+    private void drain() {
+        long delay = initialBackoffMillis;
+        try {
+            List<Path> segments = spool.segments();
+            if (segments.isEmpty()) {
+                if (databaseDown && databaseService.ping()) {
+                    databaseDown = false;
+                    LOG.info("Database reachable again");
+                }
+            } else {
+                drainSegments(segments);
+                if (databaseDown) {
+                    databaseDown = false;
+                    LOG.info("Database reachable again, spool drained");
+                }
+            }
+            backoffMillis = initialBackoffMillis;
+        } catch (SQLException e) {
+            databaseDown = true;
+            delay = backoffMillis;
+            backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+            LOG.warn("Spool drain paused, database still unreachable; retrying in " + delay + " ms");
+        } catch (Exception e) {
+            LOG.error("Spool drain failed", e);
+        } finally {
+            if (!drainer.isShutdown()) {
+                drainer.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void drainSegments(List<Path> segments) throws SQLException, IOException {
+        for (Path segment : segments) {
+            TripChunkCodec.DecodedChunk chunk;
+            try {
+                chunk = spool.read(segment);
+            } catch (IOException e) {
+                Path quarantined = spool.quarantine(segment);
+                LOG.error("Unreadable spool segment moved to " + quarantined + ": " + e.getMessage());
+                continue;
+            }
+
+            try {
+                if (chunk.schemaType() == DatabaseService.SchemaType.GREEN) {
+                    databaseService.batchInsertGreen(chunk.greenTrips());
+                } else {
+                    databaseService.batchInsertYellow(chunk.yellowTrips());
+                }
+            } catch (SQLException e) {
+                if (DatabaseService.isConnectionFailure(e)) {
+                    throw e;
+                }
+                Path quarantined = spool.quarantine(segment);
+                LOG.error("Spool segment rejected by database, moved to " + quarantined + ": " + e.getMessage());
+                continue;
+            }
+
+            spool.remove(segment);
+            drainListener.accept(chunk.size());
+            LOG.debug("Drained " + chunk.size() + " spooled " + chunk.schemaType() + " trip records");
+        }
+    }
+
+    /**
+     * Checks if writes are currently going to the spool.
+     *
+     * @return true while the database is considered unreachable
+     */
+    public boolean isDatabaseDown() {
+        return databaseDown;
+    }
+
+    /**
+     * Gets the spool, or null if spooling is disabled.
+     *
+     * @return spool
+     */
+    public ChunkSpool getSpool() {
+        return spool;
+    }
+
+    /**
+     * Stops the drainer. Pending segments stay on disk and are drained on the next start.
+     */
+    @Override
+    public void close() {
+        drainer.shutdown();
+        try {
+            if (!drainer.awaitTermination(5, TimeUnit.SECONDS)) {
+                drainer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            drainer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding of a chunk of parsed trips, used for spool segments.
+ *
+ * Layout: magic, format version, schema type, row count, rows, CRC32 of everything before it.
+ * Each row starts with a null bitmap (one bit per field in schema order) followed by the
+ * non-null fields only. Timestamps are stored as UTC epoch seconds, matching the parser's precision.
+ */
+public final class TripChunkCodec {
+
+    private static final int MAGIC = 0x54535031; // "TSP1"
+    private static final byte VERSION = 1;
+    private static final byte GREEN = 0;
+    private static final byte YELLOW = 1;
+
+    /**
+     * A decoded chunk; exactly one of the trip lists is non-null.
+     */
+    public record DecodedChunk(DatabaseService.SchemaType schemaType,
+                               List<GreenTripdata> greenTrips,
+                               List<YellowTripdata> yellowTrips) {
+
+        /**
+         * Gets the number of trips in the chunk.
+         *
+         * @return trip count
+         */
+        public int size() {
+            return greenTrips != null ? greenTrips.size() : yellowTrips.size();
+        }
+    }
+
+    private TripChunkCodec() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Encodes a chunk of green trips.
+     *
+     * @param trips trips to encode
+     * @return encoded bytes
+     */
+    public static byte[] encodeGreen(List<GreenTripdata> trips) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(trips.size() * 96 + 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeHeader(out, GREEN, trips.size());
+            for (GreenTripdata t : trips) {
+                int nulls = nullMask(t.getVendorId(), t.getLpepPickupDatetime(), t.getLpepDropoffDatetime(),
+                        t.getStoreAndFwdFlag(), t.getRatecodeId(), t.getPuLocationId(), t.getDoLocationId(),
+                        t.getPassengerCount(), t.getTripDistance(), t.getFareAmount(), t.getExtra(),
+                        t.getMtaTax(), t.getTipAmount(), t.getTollsAmount(), t.getEhailFee(),
+                        t.getImprovementSurcharge(), t.getTotalAmount(), t.getPaymentType(), t.getTripType(),
+                        t.getCongestionSurcharge());
+                out.writeInt(nulls);
+                writeInt(out, t.getVendorId());
+                writeDateTime(out, t.getLpepPickupDatetime());
+                writeDateTime(out, t.getLpepDropoffDatetime());
+                writeString(out, t.getStoreAndFwdFlag());
+                writeInt(out, t.getRatecodeId());
+                writeInt(out, t.getPuLocationId());
+                writeInt(out, t.getDoLocationId());
+                writeInt(out, t.getPassengerCount());
+                writeDouble(out, t.getTripDistance());
+                writeDouble(out, t.getFareAmount());
+                writeDouble(out, t.getExtra());
+                writeDouble(out, t.getMtaTax());
+                writeDouble(out, t.getTipAmount());
+                writeDouble(out, t.getTollsAmount());
+                writeDouble(out, t.getEhailFee());
+                writeDouble(out, t.getImprovementSurcharge());
+                writeDouble(out, t.getTotalAmount());
+                writeInt(out, t.getPaymentType());
+                writeInt(out, t.getTripType());
+                writeDouble(out, t.getCongestionSurcharge());
+            }
+            return finish(bytes, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory encoding failed", e);
+        }
+    }
+
+    /**
+     * Encodes a chunk of yellow trips.
+     *
+     * @param trips trips to encode
+     * @return encoded bytes
+     */
+    public static byte[] encodeYellow(List<YellowTripdata> trips) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(trips.size() * 88 + 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeHeader(out, YELLOW, trips.size());
+            for (YellowTripdata t : trips) {
+                int nulls = nullMask(t.getVendorId(), t.getTpepPickupDatetime(), t.getTpepDropoffDatetime(),
+                        t.getPassengerCount(), t.getTripDistance(), t.getRatecodeId(), t.getStoreAndFwdFlag(),
+                        t.getPuLocationId(), t.getDoLocationId(), t.getPaymentType(), t.getFareAmount(),
+                        t.getExtra(), t.getMtaTax(), t.getTipAmount(), t.getTollsAmount(),
+                        t.getImprovementSurcharge(), t.getTotalAmount(), t.getCongestionSurcharge());
+                out.writeInt(nulls);
+                writeInt(out, t.getVendorId());
+                writeDateTime(out, t.getTpepPickupDatetime());
+                writeDateTime(out, t.getTpepDropoffDatetime());
+                writeInt(out, t.getPassengerCount());
+                writeDouble(out, t.getTripDistance());
+                writeInt(out, t.getRatecodeId());
+                writeString(out, t.getStoreAndFwdFlag());
+                writeInt(out, t.getPuLocationId());
+                writeInt(out, t.getDoLocationId());
+                writeInt(out, t.getPaymentType());
+                writeDouble(out, t.getFareAmount());
+                writeDouble(out, t.getExtra());
+                writeDouble(out, t.getMtaTax());
+                writeDouble(out, t.getTipAmount());
+                writeDouble(out, t.getTollsAmount());
+                writeDouble(out, t.getImprovementSurcharge());
+                writeDouble(out, t.getTotalAmount());
+                writeDouble(out, t.getCongestionSurcharge());
+            }
+            return finish(bytes, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory encoding failed", e);
+        }
+    }
+
+    /**
+     * Decodes a chunk, verifying its checksum.
+     *
+     * @param data encoded bytes
+     * @return decoded chunk
+     * @throws IOException if the data is truncated, corrupt or of an unknown format
+     */
+    public static DecodedChunk decode(byte[] data) throws IOException {
+        if (data.length < Long.BYTES) {
+            throw new IOException("Chunk is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - Long.BYTES);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipNBytes(data.length - Long.BYTES);
+        if (in.readLong() != crc.getValue()) {
+            throw new IOException("Chunk checksum mismatch");
+        }
+
+        in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - Long.BYTES));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a trip chunk");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported trip chunk version: " + version);
+        }
+        byte type = in.readByte();
+        int rows = in.readInt();
+
+        if (type == GREEN) {
+            List<GreenTripdata> trips = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                int nulls = in.readInt();
+                int field = 0;
+                GreenTripdata t = new GreenTripdata();
+                t.setVendorId(readInt(in, nulls, field++));
+                t.setLpepPickupDatetime(readDateTime(in, nulls, field++));
+                t.setLpepDropoffDatetime(readDateTime(in, nulls, field++));
+                t.setStoreAndFwdFlag(readString(in, nulls, field++));
+                t.setRatecodeId(readInt(in, nulls, field++));
+                t.setPuLocationId(readInt(in, nulls, field++));
+                t.setDoLocationId(readInt(in, nulls, field++));
+                t.setPassengerCount(readInt(in, nulls, field++));
+                t.setTripDistance(readDouble(in, nulls, field++));
+                t.setFareAmount(readDouble(in, nulls, field++));
+                t.setExtra(readDouble(in, nulls, field++));
+                t.setMtaTax(readDouble(in, nulls, field++));
+                t.setTipAmount(readDouble(in, nulls, field++));
+                t.setTollsAmount(readDouble(in, nulls, field++));
+                t.setEhailFee(readDouble(in, nulls, field++));
+                t.setImprovementSurcharge(readDouble(in, nulls, field++));
+                t.setTotalAmount(readDouble(in, nulls, field++));
+                t.setPaymentType(readInt(in, nulls, field++));
+                t.setTripType(readInt(in, nulls, field++));
+                t.setCongestionSurcharge(readDouble(in, nulls, field));
+                trips.add(t);
+            }
+            return new DecodedChunk(DatabaseService.SchemaType.GREEN, trips, null);
+        } else if (type == YELLOW) {
+            List<YellowTripdata> trips = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                int nulls = in.readInt();
+                int field = 0;
+                YellowTripdata t = new YellowTripdata();
+                t.setVendorId(readInt(in, nulls, field++));
+                t.setTpepPickupDatetime(readDateTime(in, nulls, field++));
+                t.setTpepDropoffDatetime(readDateTime(in, nulls, field++));
+                t.setPassengerCount(readInt(in, nulls, field++));
+                t.setTripDistance(readDouble(in, nulls, field++));
+                t.setRatecodeId(readInt(in, nulls, field++));
+                t.setStoreAndFwdFlag(readString(in, nulls, field++));
+                t.setPuLocationId(readInt(in, nulls, field++));
+                t.setDoLocationId(readInt(in, nulls, field++));
+                t.setPaymentType(readInt(in, nulls, field++));
+                t.setFareAmount(readDouble(in, nulls, field++));
+                t.setExtra(readDouble(in, nulls, field++));
+                t.setMtaTax(readDouble(in, nulls, field++));
+                t.setTipAmount(readDouble(in, nulls, field++));
+                t.setTollsAmount(readDouble(in, nulls, field++));
+                t.setImprovementSurcharge(readDouble(in, nulls, field++));
+                t.setTotalAmount(readDouble(in, nulls, field++));
+                t.setCongestionSurcharge(readDouble(in, nulls, field));
+                trips.add(t);
+            }
+            return new DecodedChunk(DatabaseService.SchemaType.YELLOW, null, trips);
+        }
+        throw new IOException("Unknown schema type in trip chunk: " + type);
+    }
+
+    private static void writeHeader(DataOutputStream out, byte type, int rows) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeInt(rows);
+    }
+
+    private static byte[] finish(ByteArrayOutputStream bytes, DataOutputStream out) throws IOException {
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int nullMask(Object... values) {
+        int mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        if (value != null) out.writeInt(value);
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        if (value != null) out.writeDouble(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        if (value != null) out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private static boolean isNull(int nulls, int field) {
+        return (nulls & (1 << field)) != 0;
+    }
+
+    private static Integer readInt(DataInputStream in, int nulls, int field) throws IOException {
+        return isNull(nulls, field) ? null : in.readInt();
+    }
+
+    private static Double readDouble(DataInputStream in, int nulls, int field) throws IOException {
+        return isNull(nulls, field) ? null : in.readDouble();
+    }
+
+    private static String readString(DataInputStream in, int nulls, int field) throws IOException {
+        return isNull(nulls, field) ? null : in.readUTF();
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in, int nulls, int field) throws IOException {
+        return isNull(nulls, field) ? null : LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+    }
+}
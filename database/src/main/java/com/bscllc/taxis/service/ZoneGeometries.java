@@ -0,0 +1,81 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.util.TaxiZoneCentroids;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HexFormat;
+
+/**
+ * Pre-encoded PostGIS point geometries for every taxi zone centroid.
+ * Each centroid is encoded once as hex EWKB ({@code geometry(Point,4326)}), the same text
+ * form PostGIS accepts as input and COPY emits, so binding a geometry during ingest is an
+ * array lookup instead of a per-row {@code ST_SetSRID(ST_MakePoint(...))} call.
+ */
+public class ZoneGeometries {
+
+    public static final int SRID = 4326;
+
+    // Little-endian EWKB point header: byte order, type (Point | SRID flag), SRID
+    private static final int EWKB_POINT_WITH_SRID = 0x20000001;
+    private static final int EWKB_POINT_LENGTH = 1 + 4 + 4 + 8 + 8;
+
+    private final String[] hexByLocationId;
+    private final int size;
+
+    /**
+     * Encodes the centroid of every known zone.
+     *
+     * @param centroids zone centroid lookup
+     */
+    public ZoneGeometries(TaxiZoneCentroids centroids) {
+        this.hexByLocationId = new String[centroids.maxLocationId() + 1];
+        int encoded = 0;
+        for (int id = 0; id < hexByLocationId.length; id++) {
+            if (centroids.contains(id)) {
+                hexByLocationId[id] = encodePoint(centroids.longitude(id), centroids.latitude(id));
+                encoded++;
+            }
+        }
+        this.size = encoded;
+    }
+
+    /**
+     * Gets the centroid geometry of a zone.
+     *
+     * @param locationId TLC location ID, may be null
+     * @return hex EWKB point, or null if the zone is unknown
+     */
+    public String pointOf(Integer locationId) {
+        if (locationId == null || locationId < 0 || locationId >= hexByLocationId.length) {
+            return null;
+        }
+        return hexByLocationId[locationId];
+    }
+
+    /**
+     * Gets the number of zones with a geometry.
+     *
+     * @return zone count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Encodes a WGS84 point as hex EWKB.
+     *
+     * @param longitude longitude in degrees (x)
+     * @param latitude latitude in degrees (y)
+     * @return hex EWKB with SRID 4326
+     */
+    public static String encodePoint(double longitude, double latitude) {
+        ByteBuffer buffer = ByteBuffer.allocate(EWKB_POINT_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1);
+        buffer.putInt(EWKB_POINT_WITH_SRID);
+        buffer.putInt(SRID);
+        buffer.putDouble(longitude);
+        buffer.putDouble(latitude);
+        return HexFormat.of().withUpperCase().formatHex(buffer.array());
+    }
+}
@@ -0,0 +1,191 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory pre-aggregation of a chunk of trips into pickup zone × hour buckets,
+ * written to the {@code trip_zone_hourly} rollup table with a single upsert.
+ * Dashboards read the rollup table instead of scanning the trip tables.
+ */
+public class ZoneHourlyRollup {
+
+    public static final String TABLE_NAME = "trip_zone_hourly";
+
+    /**
+     * Zone stored for trips without a pickup location.
+     */
+    public static final int UNKNOWN_ZONE = 0;
+
+    private static final String UPSERT_SQL = "INSERT INTO " + TABLE_NAME + " AS r " +
+            "(taxi_type, pickup_hour, pu_location_id, trip_count, passenger_count_sum, " +
+            "trip_distance_sum, fare_amount_sum, tip_amount_sum, total_amount_sum) " +
+            "SELECT ?, * FROM unnest(?::timestamp[], ?::integer[], ?::bigint[], ?::bigint[], " +
+            "?::double precision[], ?::double precision[], ?::double precision[], ?::double precision[]) " +
+            "ON CONFLICT (taxi_type, pickup_hour, pu_location_id) DO UPDATE SET " +
+            "trip_count = r.trip_count + EXCLUDED.trip_count, " +
+            "passenger_count_sum = r.passenger_count_sum + EXCLUDED.passenger_count_sum, " +
+            "trip_distance_sum = r.trip_distance_sum + EXCLUDED.trip_distance_sum, " +
+            "fare_amount_sum = r.fare_amount_sum + EXCLUDED.fare_amount_sum, " +
+            "tip_amount_sum = r.tip_amount_sum + EXCLUDED.tip_amount_sum, " +
+            "total_amount_sum = r.total_amount_sum + EXCLUDED.total_amount_sum";
+
+    // Sorted so concurrent writers lock rollup rows in the same order and cannot deadlock
+    private final Map<Key, Totals> buckets = new TreeMap<>();
+
+    private record Key(LocalDateTime hour, int zone) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byHour = hour.compareTo(other.hour);
+            return byHour != 0 ? byHour : Integer.compare(zone, other.zone);
+        }
+    }
+
+    private static final class Totals {
+        long tripCount;
+        long passengerCount;
+        double tripDistance;
+        double fareAmount;
+        double tipAmount;
+        double totalAmount;
+    }
+
+    /**
+     * Aggregates a chunk of green trips.
+     *
+     * @param trips green trips
+     * @return rollup of the chunk
+     */
+    public static ZoneHourlyRollup ofGreen(List<GreenTripdata> trips) {
+        ZoneHourlyRollup rollup = new ZoneHourlyRollup();
+        for (GreenTripdata trip : trips) {
+            rollup.add(trip.getLpepPickupDatetime(), trip.getPuLocationId(), trip.getPassengerCount(),
+                    trip.getTripDistance(), trip.getFareAmount(), trip.getTipAmount(), trip.getTotalAmount());
+        }
+        return rollup;
+    }
+
+    /**
+     * Aggregates a chunk of yellow trips.
+     *
+     * @param trips yellow trips
+     * @return rollup of the chunk
+     */
+    public static ZoneHourlyRollup ofYellow(List<YellowTripdata> trips) {
+        ZoneHourlyRollup rollup = new ZoneHourlyRollup();
+        for (YellowTripdata trip : trips) {
+            rollup.add(trip.getTpepPickupDatetime(), trip.getPuLocationId(), trip.getPassengerCount(),
+                    trip.getTripDistance(), trip.getFareAmount(), trip.getTipAmount(), trip.getTotalAmount());
+        }
+        return rollup;
+    }
+
+    /**
+     * Adds one trip to its bucket. Trips without a pickup time cannot be bucketed and are skipped.
+     */
+    private void add(LocalDateTime pickup, Integer zone, Integer passengers, Double distance,
+                     Double fare, Double tip, Double total) {
+        if (pickup == null) {
+            return;
+        }
+        Key key = new Key(pickup.truncatedTo(ChronoUnit.HOURS), zone != null ? zone : UNKNOWN_ZONE);
+        Totals totals = buckets.computeIfAbsent(key, k -> new Totals());
+        totals.tripCount++;
+        if (passengers != null) totals.passengerCount += passengers;
+        if (distance != null) totals.tripDistance += distance;
+        if (fare != null) totals.fareAmount += fare;
+        if (tip != null) totals.tipAmount += tip;
+        if (total != null) totals.totalAmount += total;
+    }
+
+    /**
+     * Gets the number of zone × hour buckets in this rollup.
+     *
+     * @return bucket count
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Adds this rollup to the rollup table with one statement, inside the caller's transaction.
+     *
+     * @param connection connection of the transaction that inserts the trips
+     * @param schemaType taxi type of the aggregated trips
+     * @throws SQLException if the upsert fails
+     */
+    public void upsert(Connection connection, DatabaseService.SchemaType schemaType) throws SQLException {
+        if (buckets.isEmpty()) {
+            return;
+        }
+
+        int n = buckets.size();
+        Timestamp[] hours = new Timestamp[n];
+        Integer[] zones = new Integer[n];
+        Long[] tripCounts = new Long[n];
+        Long[] passengerCounts = new Long[n];
+        Double[] distances = new Double[n];
+        Double[] fares = new Double[n];
+        Double[] tips = new Double[n];
+        Double[] totals = new Double[n];
+
+        int i = 0;
+        for (Map.Entry<Key, Totals> entry : buckets.entrySet()) {
+            Totals t = entry.getValue();
+            hours[i] = Timestamp.valueOf(entry.getKey().hour());
+            zones[i] = entry.getKey().zone();
+            tripCounts[i] = t.tripCount;
+            passengerCounts[i] = t.passengerCount;
+            distances[i] = t.tripDistance;
+            fares[i] = t.fareAmount;
+            tips[i] = t.tipAmount;
+            totals[i] = t.totalAmount;
+            i++;
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(UPSERT_SQL)) {
+            int index = 1;
+            pstmt.setString(index++, schemaType.name());
+            pstmt.setArray(index++, connection.createArrayOf("timestamp", hours));
+            pstmt.setArray(index++, connection.createArrayOf("int4", zones));
+            pstmt.setArray(index++, connection.createArrayOf("int8", tripCounts));
+            pstmt.setArray(index++, connection.createArrayOf("int8", passengerCounts));
+            pstmt.setArray(index++, connection.createArrayOf("float8", distances));
+            pstmt.setArray(index++, connection.createArrayOf("float8", fares));
+            pstmt.setArray(index++, connection.createArrayOf("float8", tips));
+            pstmt.setArray(index++, connection.createArrayOf("float8", totals));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Gets the CREATE TABLE SQL statement for the rollup table.
+     * The primary key leads with taxi type and hour so dashboard time-range queries use it.
+     *
+     * @return DDL for the rollup table
+     */
+    public static String getCreateTableSql() {
+        return "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                "pickup_hour TIMESTAMP NOT NULL, " +
+                "trip_count BIGINT NOT NULL, " +
+                "passenger_count_sum BIGINT NOT NULL, " +
+                "trip_distance_sum DOUBLE PRECISION NOT NULL, " +
+                "fare_amount_sum DOUBLE PRECISION NOT NULL, " +
+                "tip_amount_sum DOUBLE PRECISION NOT NULL, " +
+                "total_amount_sum DOUBLE PRECISION NOT NULL, " +
+                "pu_location_id INTEGER NOT NULL, " +
+                "taxi_type VARCHAR(6) NOT NULL, " +
+                "PRIMARY KEY (taxi_type, pickup_hour, pu_location_id)" +
+                ")";
+    }
+}
@@ -0,0 +1,77 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkSpoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static GreenTripdata green(int vendorId) {
+        GreenTripdata trip = new GreenTripdata();
+        trip.setVendorId(vendorId);
+        return trip;
+    }
+
+    @Test
+    void testSegmentsAreReadInAppendOrder() throws IOException {
+        ChunkSpool spool = new ChunkSpool(tempDir);
+        spool.appendGreen(List.of(green(1), green(2)));
+        spool.appendYellow(List.of(new YellowTripdata()));
+
+        List<Path> segments = spool.segments();
+
+        assertEquals(2, segments.size());
+        assertEquals(2, spool.pendingSegments());
+        TripChunkCodec.DecodedChunk first = spool.read(segments.get(0));
+        assertEquals(DatabaseService.SchemaType.GREEN, first.schemaType());
+        assertEquals(2, first.greenTrips().get(1).getVendorId());
+        assertEquals(DatabaseService.SchemaType.YELLOW, spool.read(segments.get(1)).schemaType());
+
+        spool.remove(segments.get(0));
+        assertEquals(1, spool.pendingSegments());
+        assertEquals(List.of(segments.get(1)), spool.segments());
+    }
+
+    @Test
+    void testReopenRemovesTempFilesAndKeepsSegments() throws IOException {
+        ChunkSpool spool = new ChunkSpool(tempDir);
+        Path segment = spool.appendGreen(List.of(green(1)));
+        Path leftover = Files.write(tempDir.resolve("segment-00000000000000000002.spool.tmp"), new byte[] {1, 2});
+
+        ChunkSpool reopened = new ChunkSpool(tempDir);
+
+        assertFalse(Files.exists(leftover), "Temporary files of a crashed append must be removed");
+        assertEquals(List.of(segment), reopened.segments());
+        assertEquals(1, reopened.pendingSegments());
+        Path next = reopened.appendGreen(List.of(green(2)));
+        assertTrue(next.getFileName().toString().compareTo(segment.getFileName().toString()) > 0,
+                "Sequence must continue after the existing segments");
+    }
+
+    @Test
+    void testCorruptSegmentIsQuarantined() throws IOException {
+        ChunkSpool spool = new ChunkSpool(tempDir);
+        Path segment = spool.appendGreen(List.of(green(1)));
+        byte[] data = Files.readAllBytes(segment);
+        data[data.length / 2] ^= 0x01;
+        Files.write(segment, data);
+
+        assertThrows(IOException.class, () -> spool.read(segment));
+        Path quarantined = spool.quarantine(segment);
+
+        assertTrue(Files.exists(quarantined));
+        assertTrue(spool.segments().isEmpty());
+        assertEquals(0, spool.pendingSegments());
+    }
+}
@@ -0,0 +1,81 @@
+package com.bscllc.taxis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+
+    private static Connection connection() {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        closed.set(true);
+                        yield null;
+                    }
+                    case "isClosed" -> closed.get();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Test
+    void testReleasedConnectionIsReused() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(1, ConnectionPoolTest::connection);
+
+        Connection connection = pool.borrow();
+        pool.release(connection);
+
+        assertSame(connection, pool.borrow());
+    }
+
+    @Test
+    void testCloseClosesIdleAndReleasedConnections() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(2, ConnectionPoolTest::connection);
+        Connection borrowed = pool.borrow();
+        Connection idle = pool.borrow();
+        pool.release(idle);
+
+        pool.close();
+        pool.release(borrowed);
+
+        assertTrue(idle.isClosed());
+        assertTrue(borrowed.isClosed(), "A connection released after close must be closed");
+        assertThrows(SQLException.class, pool::borrow);
+    }
+
+    @Test
+    void testConcurrentReleaseAndCloseLeaveNoOpenConnection() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            ConnectionPool pool = new ConnectionPool(1, ConnectionPoolTest::connection);
+            Connection connection = pool.borrow();
+            Thread releaser = new Thread(() -> pool.release(connection));
+
+            releaser.start();
+            pool.close();
+            releaser.join();
+
+            assertTrue(connection.isClosed(), "Connection left open after close, iteration " + i);
+        }
+    }
+
+    @Test
+    void testInvalidatedConnectionIsReplaced() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(1, ConnectionPoolTest::connection);
+        Connection broken = pool.borrow();
+
+        pool.invalidate(broken);
+        Connection replacement = pool.borrow();
+
+        assertTrue(broken.isClosed());
+        assertNotSame(broken, replacement);
+        assertFalse(replacement.isClosed());
+    }
+}
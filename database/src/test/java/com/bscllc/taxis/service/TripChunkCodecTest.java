@@ -0,0 +1,109 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripChunkCodecTest {
+
+    private static GreenTripdata green(int vendorId) {
+        GreenTripdata trip = new GreenTripdata();
+        trip.setVendorId(vendorId);
+        trip.setLpepPickupDatetime(LocalDateTime.of(2024, 1, 15, 8, 30, 5));
+        trip.setLpepDropoffDatetime(LocalDateTime.of(2024, 1, 15, 8, 52, 40));
+        trip.setStoreAndFwdFlag("N");
+        trip.setPuLocationId(74);
+        trip.setDoLocationId(132);
+        trip.setTripDistance(12.35);
+        trip.setFareAmount(38.7);
+        trip.setTotalAmount(45.25);
+        trip.setPaymentType(1);
+        return trip;
+    }
+
+    @Test
+    void testGreenRoundTrip() throws IOException {
+        GreenTripdata empty = new GreenTripdata();
+
+        TripChunkCodec.DecodedChunk chunk = TripChunkCodec.decode(TripChunkCodec.encodeGreen(List.of(green(2), empty)));
+
+        assertEquals(DatabaseService.SchemaType.GREEN, chunk.schemaType());
+        assertNull(chunk.yellowTrips());
+        assertEquals(2, chunk.size());
+        GreenTripdata trip = chunk.greenTrips().get(0);
+        assertEquals(2, trip.getVendorId());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 8, 30, 5), trip.getLpepPickupDatetime());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 8, 52, 40), trip.getLpepDropoffDatetime());
+        assertEquals("N", trip.getStoreAndFwdFlag());
+        assertEquals(74, trip.getPuLocationId());
+        assertEquals(132, trip.getDoLocationId());
+        assertEquals(12.35, trip.getTripDistance());
+        assertEquals(38.7, trip.getFareAmount());
+        assertEquals(45.25, trip.getTotalAmount());
+        assertEquals(1, trip.getPaymentType());
+        assertNull(trip.getRatecodeId(), "Null fields must stay null");
+        assertNull(trip.getEhailFee());
+
+        GreenTripdata decodedEmpty = chunk.greenTrips().get(1);
+        assertNull(decodedEmpty.getVendorId());
+        assertNull(decodedEmpty.getLpepPickupDatetime());
+        assertNull(decodedEmpty.getStoreAndFwdFlag());
+    }
+
+    @Test
+    void testYellowRoundTrip() throws IOException {
+        YellowTripdata trip = new YellowTripdata();
+        trip.setVendorId(1);
+        trip.setTpepPickupDatetime(LocalDateTime.of(2023, 12, 31, 23, 59, 59));
+        trip.setPassengerCount(3);
+        trip.setStoreAndFwdFlag("Y");
+        trip.setCongestionSurcharge(2.5);
+
+        TripChunkCodec.DecodedChunk chunk = TripChunkCodec.decode(TripChunkCodec.encodeYellow(List.of(trip)));
+
+        assertEquals(DatabaseService.SchemaType.YELLOW, chunk.schemaType());
+        assertNull(chunk.greenTrips());
+        YellowTripdata decoded = chunk.yellowTrips().get(0);
+        assertEquals(1, decoded.getVendorId());
+        assertEquals(LocalDateTime.of(2023, 12, 31, 23, 59, 59), decoded.getTpepPickupDatetime());
+        assertEquals(3, decoded.getPassengerCount());
+        assertEquals("Y", decoded.getStoreAndFwdFlag());
+        assertEquals(2.5, decoded.getCongestionSurcharge());
+        assertNull(decoded.getTpepDropoffDatetime());
+        assertNull(decoded.getFareAmount());
+    }
+
+    @Test
+    void testEmptyChunk() throws IOException {
+        TripChunkCodec.DecodedChunk chunk = TripChunkCodec.decode(TripChunkCodec.encodeGreen(List.of()));
+
+        assertEquals(0, chunk.size());
+    }
+
+    @Test
+    void testCorruptedByteIsDetected() {
+        byte[] data = TripChunkCodec.encodeGreen(List.of(green(1), green(2)));
+        for (int i = 0; i < data.length; i++) {
+            byte[] corrupted = data.clone();
+            corrupted[i] ^= 0x10;
+            assertThrows(IOException.class, () -> TripChunkCodec.decode(corrupted),
+                    "Flipped bit at byte " + i + " was not detected");
+        }
+    }
+
+    @Test
+    void testTruncatedChunkIsDetected() {
+        byte[] data = TripChunkCodec.encodeYellow(List.of(new YellowTripdata()));
+
+        assertThrows(IOException.class, () -> TripChunkCodec.decode(Arrays.copyOf(data, data.length - 1)));
+        assertThrows(IOException.class, () -> TripChunkCodec.decode(Arrays.copyOf(data, 4)));
+        assertThrows(IOException.class, () -> TripChunkCodec.decode(new byte[0]));
+    }
+}
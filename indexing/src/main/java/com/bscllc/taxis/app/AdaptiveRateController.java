@@ -0,0 +1,231 @@
+package com.bscllc.taxis.app;
+
+import com.bscllc.taxis.service.BulkIngester;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adjusts a {@link RateLimiter} from bulk request outcomes (additive increase, multiplicative
+ * decrease). While bulk requests succeed within the latency target the rate rises by
+ * {@code increase} per interval; a request with rejected items (429, queue full), a transient
+ * request failure (whether retried or not) or a latency above target cuts it by
+ * {@code decreaseFactor}. Latency is measured per attempt, without retry backoff. At most one cut is
+ * applied per interval, since the requests already in flight report the same congestion, and the
+ * rate only rises again a full interval after a cut.
+ * The rate stays within {@code [minRate, maxRate]}.
+ */
+public class AdaptiveRateController implements BulkIngester.Listener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveRateController.class);
+
+    private final RateLimiter rateLimiter;
+    private final int minRate;
+    private final int maxRate;
+    private final int increase;
+    private final double decreaseFactor;
+    private final long latencyTargetNanos;
+    private final long intervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long lastIncreaseNanos = System.nanoTime();
+    private long lastDecreaseNanos = lastIncreaseNanos - Long.MAX_VALUE / 2;
+
+    /**
+     * Builder class for creating AdaptiveRateController instances.
+     */
+    public static class Builder {
+        private RateLimiter rateLimiter;
+        private int minRate = 50;
+        private int maxRate = 10000;
+        private int increase = 100;
+        private double decreaseFactor = 0.5;
+        private long latencyTargetMillis = 2000;
+        private long intervalMillis = 1000;
+
+        /**
+         * Sets the rate limiter to adjust.
+         *
+         * @param rateLimiter rate limiter
+         * @return this builder
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Sets the bounds of the rate.
+         *
+         * @param minRate lowest permits per second
+         * @param maxRate highest permits per second
+         * @return this builder
+         */
+        public Builder bounds(int minRate, int maxRate) {
+            this.minRate = minRate;
+            this.maxRate = maxRate;
+            return this;
+        }
+
+        /**
+         * Sets the additive increase applied per healthy interval.
+         *
+         * @param increase permits per second added
+         * @return this builder
+         */
+        public Builder increase(int increase) {
+            this.increase = increase;
+            return this;
+        }
+
+        /**
+         * Sets the multiplicative decrease applied on congestion.
+         *
+         * @param decreaseFactor factor in (0, 1)
+         * @return this builder
+         */
+        public Builder decreaseFactor(double decreaseFactor) {
+            this.decreaseFactor = decreaseFactor;
+            return this;
+        }
+
+        /**
+         * Sets the bulk latency above which the cluster is considered congested.
+         *
+         * @param latencyTargetMillis latency target in milliseconds
+         * @return this builder
+         */
+        public Builder latencyTargetMillis(long latencyTargetMillis) {
+            this.latencyTargetMillis = latencyTargetMillis;
+            return this;
+        }
+
+        /**
+         * Sets the shortest time between two rate changes.
+         *
+         * @param intervalMillis adjustment interval in milliseconds
+         * @return this builder
+         */
+        public Builder intervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Builds the AdaptiveRateController instance.
+         *
+         * @return configured AdaptiveRateController
+         */
+        public AdaptiveRateController build() {
+            if (rateLimiter == null) {
+                throw new IllegalArgumentException("Rate limiter is required");
+            }
+            if (minRate <= 0 || maxRate < minRate) {
+                throw new IllegalArgumentException("Invalid rate bounds: " + minRate + ".." + maxRate);
+            }
+            if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+                throw new IllegalArgumentException("Decrease factor must be between 0 and 1");
+            }
+            return new AdaptiveRateController(this);
+        }
+    }
+
+    /**
+     * Creates a new Builder instance.
+     *
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private AdaptiveRateController(Builder builder) {
+        this.rateLimiter = builder.rateLimiter;
+        this.minRate = builder.minRate;
+        this.maxRate = builder.maxRate;
+        this.increase = builder.increase;
+        this.decreaseFactor = builder.decreaseFactor;
+        this.latencyTargetNanos = builder.latencyTargetMillis * 1_000_000L;
+        this.intervalNanos = builder.intervalMillis * 1_000_000L;
+        rateLimiter.setRate(Math.max(minRate, Math.min(maxRate, rateLimiter.getRate())));
+    }
+
+    @Override
+    public void afterBulk(long executionId, int operations, BulkResponse response, long tookNanos) {
+        if (hasRejections(response)) {
+            decrease("rejected items");
+        } else if (tookNanos > latencyTargetNanos) {
+            decrease("latency " + tookNanos / 1_000_000 + " ms");
+        } else {
+            increase();
+        }
+    }
+
+    @Override
+    public void onRetry(long executionId, int operations, Throwable failure, long tookNanos) {
+        decrease(failure.getMessage());
+    }
+
+    @Override
+    public void afterFailure(long executionId, int operations, Throwable failure, long tookNanos) {
+        if (BulkIngester.isRetryable(failure)) {
+            decrease(failure.getMessage());
+        }
+    }
+
+    private static boolean hasRejections(BulkResponse response) {
+        if (!response.errors()) {
+            return false;
+        }
+        for (BulkResponseItem item : response.items()) {
+            if (item.error() != null && BulkIngester.isRetryableItem(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void increase() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            int rate = rateLimiter.getRate();
+            if (rate >= maxRate || now - lastIncreaseNanos < intervalNanos || now - lastDecreaseNanos < intervalNanos) {
+                return;
+            }
+            rateLimiter.setRate(Math.min(maxRate, rate + increase));
+            lastIncreaseNanos = now;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(String reason) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            int rate = rateLimiter.getRate();
+            if (rate <= minRate || now - lastDecreaseNanos < intervalNanos) {
+                return;
+            }
+            int lowered = Math.max(minRate, (int) (rate * decreaseFactor));
+            rateLimiter.setRate(lowered);
+            lastDecreaseNanos = now;
+            LOG.info("Indexing rate lowered from " + rate + " to " + lowered + " docs/s (" + reason + ")");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current rate.
+     *
+     * @return permits per second
+     */
+    public int getRate() {
+        return rateLimiter.getRate();
+    }
+}
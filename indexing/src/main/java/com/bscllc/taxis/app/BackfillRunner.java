@@ -0,0 +1,169 @@
+package com.bscllc.taxis.app;
+
+import com.bscllc.taxis.config.BackfillConfig;
+import com.bscllc.taxis.config.IndexingConfig;
+import com.bscllc.taxis.config.ProcessingConfig;
+import com.bscllc.taxis.service.BackfillService;
+import com.bscllc.taxis.service.IndexingService;
+import com.bscllc.taxis.util.ExecutorMode;
+import com.bscllc.taxis.util.FanOutPipeline;
+import com.bscllc.taxis.util.TripSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the PostgreSQL-to-OpenSearch backfill on a background thread when enabled.
+ * Rows are indexed through the same rate-limited OpenSearch sink as parquet files, fanned out by
+ * a {@link FanOutPipeline} that returns once every chunk of a page is acknowledged. Every
+ * configured PostgreSQL shard is read in turn, each resuming from its own high-water marks.
+ */
+@ApplicationScoped
+public class BackfillRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackfillRunner.class);
+
+    @Inject
+    BackfillConfig backfillConfig;
+
+    @Inject
+    ProcessingConfig processingConfig;
+
+    @Inject
+    IndexingConfig indexingConfig;
+
+    @Inject
+    IndexingService indexingService;
+
+    @Inject
+    MetricsService metricsService;
+
+    @Inject
+    RateLimiter rateLimiter;
+
+    private Thread backfillThread;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Starts the backfill if it is enabled. Index settings left in bulk-load mode by a
+     * backfill that died are restored first unless the backfill resumes in that mode.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (indexingService.isBulkLoadPending() && !(backfillConfig.enabled() && backfillConfig.bulkLoadMode())) {
+                try {
+                    indexingService.restoreBulkLoad();
+                } catch (Exception e) {
+                    LOG.error("Failed to restore index settings left by an interrupted bulk load", e);
+                }
+            }
+            if (!backfillConfig.enabled() || backfillThread != null) {
+                return;
+            }
+            backfillThread = new Thread(this::runBackfill, "Backfill");
+            backfillThread.setDaemon(true);
+            backfillThread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runBackfill() {
+        List<String> endpoints = backfillConfig.shardEndpoints()
+                .orElse(List.of(backfillConfig.host() + ":" + backfillConfig.port()));
+        try (FanOutPipeline pipeline = FanOutPipeline.builder()
+                    .name("Backfill")
+                    .queueCapacity(indexingConfig.queueCapacity())
+                    .writerThreads(indexingConfig.writerThreads())
+                    .executorMode(ExecutorMode.fromString(processingConfig.executorMode()))
+                    .onAcknowledged((sink, records) -> metricsService.incrementRecordsBackfilled(records))
+                    .build()) {
+            LOG.info("Backfill started from " + endpoints + "/" + backfillConfig.database() +
+                    ", tables: " + backfillConfig.tables());
+
+            if (backfillConfig.bulkLoadMode()) {
+                indexingService.beginBulkLoad();
+            }
+            // The same rate limit as for parquet files, applied in the sink's write path
+            TripSink sink = new RateLimitedTripSink(indexingService, rateLimiter);
+            for (int shard = 0; shard < endpoints.size(); shard++) {
+                backfillShard(shard, endpoints.get(shard).trim(), pipeline, sink);
+            }
+            if (backfillConfig.bulkLoadMode()) {
+                indexingService.endBulkLoad();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Backfill interrupted, will resume from the stored high-water mark");
+        } catch (Exception e) {
+            LOG.error("Backfill failed, will resume from the stored high-water mark", e);
+        } finally {
+            restoreBulkLoad();
+        }
+    }
+
+    /**
+     * Backfills the configured tables of one shard.
+     */
+    private void backfillShard(int shard, String endpoint, FanOutPipeline pipeline, TripSink sink) throws Exception {
+        int separator = endpoint.lastIndexOf(':');
+        String host = separator > 0 ? endpoint.substring(0, separator) : endpoint;
+        int port = separator > 0 ? Integer.parseInt(endpoint.substring(separator + 1)) : backfillConfig.port();
+
+        try (BackfillService backfill = BackfillService.builder()
+                .host(host)
+                .port(port)
+                .database(backfillConfig.database())
+                .credentials(backfillConfig.username(), backfillConfig.password())
+                .useTls(backfillConfig.useTls())
+                .fetchSize(backfillConfig.fetchSize())
+                .pageSize(backfillConfig.pageSize())
+                .stateFile(Paths.get(backfillConfig.stateFile()))
+                .shard(shard)
+                .build()) {
+            for (String table : backfillConfig.tables()) {
+                BackfillService.TripTable tripTable =
+                        BackfillService.TripTable.valueOf(table.trim().toUpperCase(Locale.ROOT));
+                long count = backfill.backfill(tripTable, pipeline, indexingConfig.batchSize(), sink);
+                LOG.info("Backfilled " + count + " rows from " + tripTable.getTableName() + " on shard " + shard +
+                        " (" + host + ":" + port + ")");
+            }
+        }
+    }
+
+    /**
+     * Restores index settings after a failed or interrupted backfill; after a complete one
+     * they are already restored.
+     */
+    private void restoreBulkLoad() {
+        if (!indexingService.isBulkLoadPending()) {
+            return;
+        }
+        try {
+            indexingService.restoreBulkLoad();
+        } catch (Exception e) {
+            LOG.error("Failed to restore index settings after backfill, will retry on next start", e);
+        }
+    }
+
+    @PreDestroy
+    void cleanup() {
+        Thread thread = backfillThread;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -2,12 +2,14 @@ package com.bscllc.taxis.app;
 
 import com.bscllc.taxis.config.IndexingConfig;
 import com.bscllc.taxis.config.ProcessingConfig;
-import com.bscllc.taxis.model.GreenTripdata;
-import com.bscllc.taxis.model.YellowTripdata;
 import com.bscllc.taxis.service.IndexingService;
+import com.bscllc.taxis.util.ChunkPipeline;
+import com.bscllc.taxis.util.ExecutorMode;
+import com.bscllc.taxis.util.FanOutPipeline;
 import com.bscllc.taxis.util.Monitor;
-import com.bscllc.taxis.util.TripDataParser;
-import com.bscllc.taxis.util.TripDataParserException;
+import com.bscllc.taxis.util.TripFileProcessor;
+import com.bscllc.taxis.util.TripKind;
+import com.bscllc.taxis.util.TripSink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,20 +17,19 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Service for processing parquet files from the input directory and indexing them in OpenSearch.
- * Includes rate limiting and batch processing.
+ * Includes rate limiting and batch processing. Up to {@code max-concurrent-files} files are
+ * processed at once, each streaming parsed batches to concurrent bulk writers.
  */
 @ApplicationScoped
 public class FileProcessingService {
@@ -47,31 +48,70 @@ public class FileProcessingService {
     @Inject
     MetricsService metricsService;
     
+    @Inject
+    RateLimiter rateLimiter;
+    
     private Monitor monitor;
-    private RateLimiter rateLimiter;
+    private TripFileProcessor fileProcessor;
     private BlockingQueue<ProcessingTask> processingQueue;
     private Thread processingThread;
+    private ExecutorService fileExecutor;
+    private Semaphore fileSlots;
+    private FanOutPipeline pipeline;
+    private List<TripSink> sinks;
     private volatile boolean running = false;
     
     @PostConstruct
     void init() {
         try {
-            // Create directories if they don't exist
-            createDirectories();
+            // Moves each file to the output or error directory once processed
+            fileProcessor = TripFileProcessor.builder()
+                    .inputDirectory(processingConfig.inputDirectory())
+                    .outputDirectory(processingConfig.outputDirectory())
+                    .errorDirectory(processingConfig.errorDirectory())
+                    .handler(this::processTrips)
+                    .onProcessed(file -> metricsService.incrementFilesProcessed())
+                    .onFailed((file, errorFile, error) -> metricsService.incrementFilesErrored())
+                    .build();
             
-            // Initialize rate limiter
-            rateLimiter = new RateLimiter(indexingConfig.rateLimitPerSecond());
-            LOG.info("Rate limiter initialized: " + indexingConfig.rateLimitPerSecond() + " permits/second");
+            // Create directories if they don't exist
+            fileProcessor.createDirectories();
             
             // Initialize processing queue
             processingQueue = new LinkedBlockingQueue<>();
             
+            // Files are dispatched to their own threads; batches of a file to pipeline writers
+            ExecutorMode executorMode = ExecutorMode.fromString(processingConfig.executorMode());
+            fileExecutor = executorMode.newExecutor("FileProcessing-File");
+            fileSlots = new Semaphore(processingConfig.maxConcurrentFiles());
+            pipeline = FanOutPipeline.builder()
+                    .name("Indexing")
+                    .queueCapacity(indexingConfig.queueCapacity())
+                    .writerThreads(indexingConfig.writerThreads())
+                    .executorMode(executorMode)
+                    .onAcknowledged((sink, records) -> metricsService.incrementRecordsIndexed(records))
+                    .build();
+            // The rate limit applies to the OpenSearch writes, not to parsing
+            sinks = List.of(new RateLimitedTripSink(indexingService, rateLimiter));
+            for (TripSink sink : sinks) {
+                sink.open();
+                LOG.info("Sink " + sink.name() + " opened - Capabilities: " + sink.capabilities());
+            }
+            LOG.info("Executor mode: " + executorMode + ", Max concurrent files: " +
+                    processingConfig.maxConcurrentFiles() + ", Writer threads per file: " +
+                    indexingConfig.writerThreads());
+            
             // Start processing thread
             running = true;
             processingThread = new Thread(this::processQueue, "FileProcessing-Queue");
             processingThread.setDaemon(false);
             processingThread.start();
             
+            if (!processingConfig.monitorEnabled()) {
+                LOG.info("Directory monitoring disabled");
+                return;
+            }
+            
             // Create and configure the monitor
             monitor = Monitor.builder()
                     .directory(processingConfig.inputDirectory())
@@ -84,7 +124,7 @@ public class FileProcessingService {
             monitor.start();
             LOG.info("File processing service started. Monitoring directory: " + processingConfig.inputDirectory());
             LOG.info("Batch size: " + indexingConfig.batchSize());
-        } catch (IOException e) {
+        } catch (Exception e) {
             LOG.error("Failed to initialize file processing service", e);
             throw new RuntimeException("Failed to initialize file processing service", e);
         }
@@ -109,8 +149,21 @@ public class FileProcessingService {
             }
         }
         
-        if (rateLimiter != null) {
-            rateLimiter.shutdown();
+        // Let files in progress finish
+        if (fileExecutor != null) {
+            fileExecutor.shutdown();
+            try {
+                if (!fileExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    fileExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                fileExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        if (pipeline != null) {
+            pipeline.close();
         }
         
         if (indexingService != null) {
@@ -124,21 +177,6 @@ public class FileProcessingService {
         LOG.info("File processing service stopped");
     }
     
-    /**
-     * Creates the required directories if they don't exist.
-     */
-    private void createDirectories() throws IOException {
-        Path inputDir = Paths.get(processingConfig.inputDirectory());
-        Path outputDir = Paths.get(processingConfig.outputDirectory());
-        Path errorDir = Paths.get(processingConfig.errorDirectory());
-        
-        Files.createDirectories(inputDir);
-        Files.createDirectories(outputDir);
-        Files.createDirectories(errorDir);
-        
-        LOG.info("Created directories - Input: " + inputDir + ", Output: " + outputDir + ", Error: " + errorDir);
-    }
-    
     /**
      * Queues a file for processing.
      */
@@ -153,7 +191,7 @@ public class FileProcessingService {
     }
     
     /**
-     * Processes the queue of files.
+     * Processes the queue of files, dispatching each to the file executor once a slot is free.
      */
     private void processQueue() {
         LOG.info("File processing queue thread started");
@@ -162,7 +200,19 @@ public class FileProcessingService {
             try {
                 ProcessingTask task = processingQueue.poll(1, TimeUnit.SECONDS);
                 if (task != null) {
-                    processFile(task.filePath);
+                    fileSlots.acquire();
+                    try {
+                        fileExecutor.execute(() -> {
+                            try {
+                                fileProcessor.process(task.filePath);
+                            } finally {
+                                fileSlots.release();
+                            }
+                        });
+                    } catch (RuntimeException e) {
+                        fileSlots.release();
+                        throw e;
+                    }
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -177,140 +227,20 @@ public class FileProcessingService {
     }
     
     /**
-     * Processes a parquet file: parses it and indexes the data in OpenSearch.
-     */
-    private void processFile(Path filePath) {
-        LOG.info("Processing file: " + filePath);
-        
-        try {
-            // Determine schema type
-            boolean isGreen = TripDataParser.isGreenTripdataFile(filePath.toFile());
-            boolean isYellow = TripDataParser.isYellowTripdataFile(filePath.toFile());
-            
-            if (!isGreen && !isYellow) {
-                LOG.warn("File does not match green or yellow tripdata schema: " + filePath);
-                metricsService.incrementFilesErrored();
-                moveToErrorDirectory(filePath, "Unknown schema type");
-                return;
-            }
-            
-            // Parse and index the data
-            if (isGreen) {
-                processGreenTripdata(filePath);
-            } else {
-                processYellowTripdata(filePath);
-            }
-            
-            // Move file to output directory on success
-            moveToOutputDirectory(filePath);
-            metricsService.incrementFilesProcessed();
-            LOG.info("Successfully processed file: " + filePath);
-            
-        } catch (Exception e) {
-            LOG.error("Error processing file: " + filePath, e);
-            metricsService.incrementFilesErrored();
-            try {
-                moveToErrorDirectory(filePath, e.getMessage());
-            } catch (IOException ioException) {
-                LOG.error("Failed to move file to error directory: " + filePath, ioException);
-            }
-        }
-    }
-    
-    /**
-     * Processes green tripdata file with rate limiting.
-     */
-    private void processGreenTripdata(Path filePath) throws TripDataParserException, InterruptedException {
-        List<GreenTripdata> trips = TripDataParser.parseGreenTripdata(filePath.toString());
-        LOG.info("Parsed " + trips.size() + " green trip records from " + filePath);
-        
-        if (trips.isEmpty()) {
-            return;
-        }
-        
-        // Process in batches with rate limiting
-        int batchSize = indexingConfig.batchSize();
-        for (int i = 0; i < trips.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, trips.size());
-            List<GreenTripdata> batch = trips.subList(i, end);
-            
-            // Acquire permits for this batch (rate limiting)
-            rateLimiter.acquire(batch.size());
-            
-            // Index the batch to OpenSearch
-            try {
-                indexingService.indexGreenTrips(batch);
-                metricsService.incrementRecordsIndexed(batch.size());
-                LOG.info("Indexed batch of " + batch.size() + " green trip records (total: " + trips.size() + ")");
-            } catch (Exception e) {
-                LOG.error("Failed to index batch of green trip records: " + e.getMessage(), e);
-                throw new RuntimeException("Failed to index green trip records", e);
-            }
-        }
-        
-        LOG.info("Indexed " + trips.size() + " green trip records into OpenSearch");
-    }
-    
-    /**
-     * Processes yellow tripdata file with rate limiting.
-     */
-    private void processYellowTripdata(Path filePath) throws TripDataParserException, InterruptedException {
-        List<YellowTripdata> trips = TripDataParser.parseYellowTripdata(filePath.toString());
-        LOG.info("Parsed " + trips.size() + " yellow trip records from " + filePath);
-        
-        if (trips.isEmpty()) {
-            return;
-        }
-        
-        // Process in batches with rate limiting
-        int batchSize = indexingConfig.batchSize();
-        for (int i = 0; i < trips.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, trips.size());
-            List<YellowTripdata> batch = trips.subList(i, end);
-            
-            // Acquire permits for this batch (rate limiting)
-            rateLimiter.acquire(batch.size());
-            
-            // Index the batch to OpenSearch
-            try {
-                indexingService.indexYellowTrips(batch);
-                metricsService.incrementRecordsIndexed(batch.size());
-                LOG.info("Indexed batch of " + batch.size() + " yellow trip records (total: " + trips.size() + ")");
-            } catch (Exception e) {
-                LOG.error("Failed to index batch of yellow trip records: " + e.getMessage(), e);
-                throw new RuntimeException("Failed to index yellow trip records", e);
-            }
-        }
-        
-        LOG.info("Indexed " + trips.size() + " yellow trip records into OpenSearch");
-    }
-    
-    /**
-     * Moves a file to the output directory.
-     */
-    private void moveToOutputDirectory(Path filePath) throws IOException {
-        Path outputDir = Paths.get(processingConfig.outputDirectory());
-        Path destination = outputDir.resolve(filePath.getFileName());
-        Files.move(filePath, destination, StandardCopyOption.REPLACE_EXISTING);
-    }
-    
-    /**
-     * Moves a file to the error directory with an error message suffix.
+     * Processes a tripdata file, queueing batches for bulk indexing while the rest of the file is
+     * parsed; the OpenSearch sink applies the rate limit. Returns once every batch is acknowledged
+     * by every sink.
      */
-    private void moveToErrorDirectory(Path filePath, String errorMessage) throws IOException {
-        Path errorDir = Paths.get(processingConfig.errorDirectory());
-        String fileName = filePath.getFileName().toString();
-        // Add timestamp and error suffix to filename
-        String errorFileName = fileName.replace(".parquet", "_" + System.currentTimeMillis() + ".parquet");
-        Path destination = errorDir.resolve(errorFileName);
-        Files.move(filePath, destination, StandardCopyOption.REPLACE_EXISTING);
-        LOG.warn("Moved file to error directory: " + destination + " (Error: " + errorMessage + ")");
+    private <T> void processTrips(Path filePath, TripKind<T> kind) throws Exception {
+        ChunkPipeline.Producer<T> parser = kind.producer(filePath.toFile(), indexingConfig.batchSize());
+        Map<String, Long> indexed = pipeline.run(parser, sinks.stream().map(kind::sink).toList());
+        LOG.info("Indexed " + indexed.get(indexingService.name()) + " " + kind + " trip records into OpenSearch from " + filePath);
     }
     
     /**
      * Gets the monitor instance.
      *
-     * @return monitor instance
+     * @return monitor instance, or null if directory monitoring is disabled
      */
     public Monitor getMonitor() {
         return monitor;
@@ -1,9 +1,15 @@
 package com.bscllc.taxis.app;
 
+import com.bscllc.taxis.service.BulkIngester;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.opensearch.client.opensearch.core.BulkResponse;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for managing application metrics.
@@ -11,12 +17,18 @@ import jakarta.inject.Inject;
 @ApplicationScoped
 public class MetricsService {
     
+    private final MeterRegistry meterRegistry;
     private final Counter filesProcessed;
     private final Counter filesErrored;
     private final Counter recordsIndexed;
+    private final Counter recordsBackfilled;
+    private final Timer bulkSucceeded;
+    private final Timer bulkFailed;
     
     @Inject
     public MetricsService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        
         this.filesProcessed = Counter.builder("taxis.files.processed")
                 .description("Total number of files processed successfully")
                 .register(meterRegistry);
@@ -29,6 +41,76 @@ public class MetricsService {
                 .description("Total number of records indexed into OpenSearch")
                 .tag("type", "opensearch")
                 .register(meterRegistry);
+        
+        this.recordsBackfilled = Counter.builder("taxis.records.backfilled")
+                .description("Total number of PostgreSQL rows backfilled into OpenSearch")
+                .tag("type", "opensearch")
+                .register(meterRegistry);
+        
+        this.bulkSucceeded = Timer.builder("taxis.bulk.requests")
+                .description("Bulk request latency per attempt")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        
+        this.bulkFailed = Timer.builder("taxis.bulk.requests")
+                .description("Bulk request latency per attempt")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Registers the in-flight gauge and the retried/dropped document counters of a bulk ingester.
+     *
+     * @param ingester bulk ingester
+     */
+    public void registerBulkIngester(BulkIngester ingester) {
+        Gauge.builder("taxis.bulk.inflight", ingester, BulkIngester::getInFlightRequests)
+                .description("Bulk requests currently in flight")
+                .register(meterRegistry);
+        
+        FunctionCounter.builder("taxis.bulk.documents.retried", ingester, BulkIngester::getRetriedDocuments)
+                .description("Documents resent after a transient bulk item rejection")
+                .register(meterRegistry);
+        
+        FunctionCounter.builder("taxis.bulk.documents.dropped", ingester, BulkIngester::getDroppedDocuments)
+                .description("Documents refused by OpenSearch and written to the dead-letter file")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Registers a gauge of the current indexing rate limit.
+     *
+     * @param rateLimiter rate limiter
+     */
+    public void registerRateLimiter(RateLimiter rateLimiter) {
+        Gauge.builder("taxis.indexing.rate", rateLimiter, RateLimiter::getRate)
+                .description("Current indexing rate limit in documents per second")
+                .baseUnit("documents")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Creates a bulk listener recording request latency by outcome.
+     *
+     * @return bulk listener
+     */
+    public BulkIngester.Listener bulkListener() {
+        return new BulkIngester.Listener() {
+            @Override
+            public void afterBulk(long executionId, int operations, BulkResponse response, long tookNanos) {
+                bulkSucceeded.record(tookNanos, TimeUnit.NANOSECONDS);
+            }
+            
+            @Override
+            public void onRetry(long executionId, int operations, Throwable failure, long tookNanos) {
+                bulkFailed.record(tookNanos, TimeUnit.NANOSECONDS);
+            }
+            
+            @Override
+            public void afterFailure(long executionId, int operations, Throwable failure, long tookNanos) {
+                bulkFailed.record(tookNanos, TimeUnit.NANOSECONDS);
+            }
+        };
     }
     
     public void incrementFilesProcessed() {
@@ -42,5 +124,9 @@ public class MetricsService {
     public void incrementRecordsIndexed(long count) {
         recordsIndexed.increment(count);
     }
+    
+    public void incrementRecordsBackfilled(long count) {
+        recordsBackfilled.increment(count);
+    }
 }
 
@@ -0,0 +1,68 @@
+package com.bscllc.taxis.app;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import com.bscllc.taxis.util.TripSink;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link TripSink} whose writes take one {@link RateLimiter} permit per trip before reaching
+ * the wrapped sink. The limit sits in the sink's own write path, so in a fan-out pipeline it
+ * throttles only that sink; the other sinks keep pace with the parser.
+ */
+public class RateLimitedTripSink implements TripSink {
+
+    private final TripSink delegate;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Wraps a sink.
+     *
+     * @param delegate sink receiving the batches
+     * @param rateLimiter limiter paid one permit per trip
+     */
+    public RateLimitedTripSink(TripSink delegate, RateLimiter rateLimiter) {
+        this.delegate = delegate;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return delegate.capabilities();
+    }
+
+    @Override
+    public void open() throws Exception {
+        delegate.open();
+    }
+
+    @Override
+    public CompletionStage<Void> writeGreen(List<GreenTripdata> trips) throws Exception {
+        rateLimiter.acquire(trips.size());
+        return delegate.writeGreen(trips);
+    }
+
+    @Override
+    public CompletionStage<Void> writeYellow(List<YellowTripdata> trips) throws Exception {
+        rateLimiter.acquire(trips.size());
+        return delegate.writeYellow(trips);
+    }
+
+    @Override
+    public void flush() throws Exception {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+}
@@ -1,77 +1,101 @@
 package com.bscllc.taxis.app;
 
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Simple rate limiter implementation using a semaphore and scheduled token refill.
+ * Lock-free token bucket rate limiter.
+ * <p>
+ * Tokens accrue continuously at {@code permitsPerSecond}, up to {@code burst} tokens when idle,
+ * so throughput is smooth instead of arriving in one-second waves. The bucket is kept as a single
+ * "theoretical arrival time" (the instant all granted permits are paid for; the bucket is full when
+ * it lies {@code burst} permits in the past) advanced with CAS and refilled lazily from
+ * {@link System#nanoTime()}, so there is no lock and no background thread.
+ * Each acquire reserves its permits first and then sleeps until they are due, which serves waiters
+ * in reservation order and lets a request larger than the burst go through after waiting out its
+ * deficit instead of blocking forever. Sleeping callers on virtual threads unmount rather than pin
+ * their carrier thread. The rate can be changed while running, e.g. by {@link AdaptiveRateController}.
  */
 public class RateLimiter {
-    
-    private final Semaphore semaphore;
-    private final int permitsPerSecond;
-    private final java.util.concurrent.ScheduledExecutorService scheduler;
-    
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
     /**
-     * Creates a new rate limiter.
+     * Rate settings, swapped as a whole so readers never see a torn update.
+     */
+    private record Settings(int permitsPerSecond, long nanosPerPermit, long burstNanos) {
+    }
+
+    private final int burst;
+    private final AtomicLong theoreticalArrival;
+    private volatile Settings settings;
+
+    /**
+     * Creates a new rate limiter with a burst of one second's permits.
      *
      * @param permitsPerSecond maximum number of permits per second
      */
     public RateLimiter(int permitsPerSecond) {
+        this(permitsPerSecond, 0);
+    }
+
+    /**
+     * Creates a new rate limiter.
+     *
+     * @param permitsPerSecond maximum number of permits per second
+     * @param burst permits that may be taken at once after an idle period; 0 for one second's permits
+     */
+    public RateLimiter(int permitsPerSecond, int burst) {
+        if (burst < 0) {
+            throw new IllegalArgumentException("Burst must not be negative");
+        }
+        this.burst = burst;
+        this.settings = settings(permitsPerSecond);
+        // Start with a full bucket
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - settings.burstNanos());
+    }
+
+    private Settings settings(int permitsPerSecond) {
         if (permitsPerSecond <= 0) {
             throw new IllegalArgumentException("Permits per second must be positive");
         }
-        this.permitsPerSecond = permitsPerSecond;
-        // Initialize with max permits available
-        this.semaphore = new Semaphore(permitsPerSecond, true);
-        this.scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1, r -> {
-            Thread t = new Thread(r, "RateLimiter-Refill");
-            t.setDaemon(true);
-            return t;
-        });
-        
-        // Refill permits every second - release up to permitsPerSecond
-        scheduler.scheduleAtFixedRate(
-            () -> {
-                int currentAvailable = semaphore.availablePermits();
-                // Only add permits if we're below the max
-                if (currentAvailable < permitsPerSecond) {
-                    int permitsToAdd = permitsPerSecond - currentAvailable;
-                    semaphore.release(permitsToAdd);
-                }
-            },
-            1, 1, TimeUnit.SECONDS
-        );
+        long nanosPerPermit = Math.max(1, NANOS_PER_SECOND / permitsPerSecond);
+        int burstPermits = burst > 0 ? burst : permitsPerSecond;
+        return new Settings(permitsPerSecond, nanosPerPermit, nanosPerPermit * burstPermits);
     }
-    
+
     /**
      * Acquires a permit, blocking if necessary until one is available.
      *
      * @throws InterruptedException if interrupted while waiting
      */
     public void acquire() throws InterruptedException {
-        semaphore.acquire();
+        acquire(1);
     }
-    
+
     /**
-     * Acquires the given number of permits, blocking if necessary.
+     * Acquires the given number of permits, blocking if necessary. Requests larger than the
+     * burst are granted after waiting for the tokens they exceed it by.
      *
      * @param permits number of permits to acquire
-     * @throws InterruptedException if interrupted while waiting
+     * @throws InterruptedException if interrupted while waiting; the permits stay consumed
      */
     public void acquire(int permits) throws InterruptedException {
-        semaphore.acquire(permits);
+        long waitNanos = reserve(permits, Long.MAX_VALUE);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
     }
-    
+
     /**
      * Tries to acquire a permit without blocking.
      *
      * @return true if permit was acquired, false otherwise
      */
     public boolean tryAcquire() {
-        return semaphore.tryAcquire();
+        return tryAcquire(1);
     }
-    
+
     /**
      * Tries to acquire the given number of permits without blocking.
      *
@@ -79,9 +103,9 @@ public class RateLimiter {
      * @return true if permits were acquired, false otherwise
      */
     public boolean tryAcquire(int permits) {
-        return semaphore.tryAcquire(permits);
+        return reserve(permits, 0) == 0;
     }
-    
+
     /**
      * Tries to acquire a permit within the given timeout.
      *
@@ -91,31 +115,77 @@ public class RateLimiter {
      * @throws InterruptedException if interrupted while waiting
      */
     public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
-        return semaphore.tryAcquire(timeout, unit);
+        long waitNanos = reserve(1, unit.toNanos(timeout));
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return true;
     }
-    
+
     /**
-     * Gets the number of available permits.
+     * Reserves permits if they become due within the given wait.
+     *
+     * @return nanoseconds until the permits are due (0 if now), or -1 if that exceeds maxWaitNanos
+     */
+    private long reserve(int permits, long maxWaitNanos) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive");
+        }
+        while (true) {
+            Settings current = settings;
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            // Idle time refills the bucket, but never beyond the burst
+            long base = arrival - now < -current.burstNanos() ? now - current.burstNanos() : arrival;
+            long next = base + permits * current.nanosPerPermit();
+            long waitNanos = Math.max(0, next - now);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return waitNanos;
+            }
+        }
+    }
+
+    /**
+     * Changes the rate. Permits already reserved keep their due time.
+     *
+     * @param permitsPerSecond new maximum number of permits per second
+     */
+    public void setRate(int permitsPerSecond) {
+        this.settings = settings(permitsPerSecond);
+    }
+
+    /**
+     * Gets the current rate.
+     *
+     * @return permits per second
+     */
+    public int getRate() {
+        return settings.permitsPerSecond();
+    }
+
+    /**
+     * Gets the number of permits that could be taken right now without waiting.
      *
      * @return available permits
      */
     public int availablePermits() {
-        return semaphore.availablePermits();
+        Settings current = settings;
+        long now = System.nanoTime();
+        long arrival = theoreticalArrival.get();
+        long base = arrival - now < -current.burstNanos() ? now - current.burstNanos() : arrival;
+        return (int) Math.max(0, (now - base) / current.nanosPerPermit());
     }
-    
+
     /**
-     * Shuts down the rate limiter.
+     * Shuts down the rate limiter. Kept for callers of the former timer-based limiter; the token
+     * bucket holds no threads, so there is nothing to release.
      */
     public void shutdown() {
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
     }
 }
-
@@ -1,5 +1,6 @@
 package com.bscllc.taxis.app;
 
+import com.bscllc.taxis.util.Monitor;
 import io.quarkus.runtime.Quarkus;
 import io.quarkus.runtime.QuarkusApplication;
 import io.quarkus.runtime.annotations.QuarkusMain;
@@ -19,11 +20,20 @@ public class TaxiDataIndexerApplication implements QuarkusApplication {
     @Inject
     FileProcessingService fileProcessingService;
     
+    @Inject
+    BackfillRunner backfillRunner;
+    
     @Override
     public int run(String... args) {
         LOG.info("Taxi Data Indexer Application started");
-        LOG.info("Monitoring directory: " + fileProcessingService.getMonitor().getDirectory());
-        LOG.info("Scan period: " + fileProcessingService.getMonitor().getScanPeriodMillis() + " ms");
+        Monitor monitor = fileProcessingService.getMonitor();
+        if (monitor != null) {
+            LOG.info("Monitoring directory: " + monitor.getDirectory());
+            LOG.info("Scan period: " + monitor.getScanPeriodMillis() + " ms");
+        }
+        
+        // Backfill from PostgreSQL runs alongside directory monitoring when enabled
+        backfillRunner.start();
         
         // Keep the application running
         Quarkus.waitForExit();
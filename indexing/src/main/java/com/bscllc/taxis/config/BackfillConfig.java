@@ -0,0 +1,82 @@
+package com.bscllc.taxis.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+import io.smallrye.config.WithName;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Configuration properties for backfilling OpenSearch from the PostgreSQL trip tables.
+ */
+@ConfigMapping(prefix = "taxis.backfill")
+public interface BackfillConfig {
+
+    /**
+     * Runs the backfill at startup, alongside directory monitoring.
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    @WithDefault("localhost")
+    String host();
+
+    @WithDefault("5432")
+    int port();
+
+    /**
+     * PostgreSQL shards to backfill from, as {@code host:port} entries in the order of the
+     * database application's {@code taxis.database.shard-endpoints}, so shard numbers and their
+     * high-water marks match. When unset, only {@link #host()}:{@link #port()} is read.
+     */
+    @WithName("shard-endpoints")
+    Optional<List<String>> shardEndpoints();
+
+    @WithDefault("taxidb")
+    String database();
+
+    @WithDefault("postgres")
+    String username();
+
+    @WithDefault("postgres")
+    String password();
+
+    @WithName("use-tls")
+    @WithDefault("false")
+    boolean useTls();
+
+    /**
+     * Tables to backfill: GREEN and/or YELLOW.
+     */
+    @WithDefault("GREEN,YELLOW")
+    List<String> tables();
+
+    /**
+     * Rows fetched per server-side cursor round trip.
+     */
+    @WithName("fetch-size")
+    @WithDefault("5000")
+    int fetchSize();
+
+    /**
+     * Rows per keyset page; the high-water mark is stored after each page.
+     */
+    @WithName("page-size")
+    @WithDefault("100000")
+    int pageSize();
+
+    /**
+     * File holding the last indexed id of each table, used to resume.
+     */
+    @WithName("state-file")
+    @WithDefault("./data/state/backfill-state.properties")
+    String stateFile();
+
+    /**
+     * Runs the trip indices with bulk-load settings (no refresh, no replicas, asynchronous
+     * translog) for the duration of the backfill.
+     */
+    @WithName("bulk-load-mode")
+    @WithDefault("true")
+    boolean bulkLoadMode();
+}
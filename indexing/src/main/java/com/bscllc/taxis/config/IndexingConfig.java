@@ -1,7 +1,9 @@
 package com.bscllc.taxis.config;
 
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
 import io.smallrye.config.WithName;
+import java.util.Optional;
 
 /**
  * Configuration properties for indexing operations.
@@ -10,15 +12,187 @@ import io.smallrye.config.WithName;
 public interface IndexingConfig {
     
     /**
-     * Maximum number of documents to index per second (rate limit).
+     * Maximum number of documents to index per second (rate limit), shared by all files and the
+     * backfill. With adaptive rate enabled this is the starting rate.
      */
     @WithName("rate-limit-per-second")
     int rateLimitPerSecond();
     
     /**
-     * Batch size for indexing operations.
+     * Documents that may be indexed at once after an idle period; 0 for one second's worth.
+     */
+    @WithName("rate-limit-burst")
+    @WithDefault("0")
+    int rateLimitBurst();
+    
+    /**
+     * Rows per parsed batch handed to a writer. Bulk request size is governed by
+     * {@link #bulkMaxBytes()}, not by this value.
      */
     @WithName("batch-size")
     int batchSize();
+    
+    /**
+     * Maximum number of parsed batches waiting for a writer before parsing blocks.
+     */
+    @WithName("queue-capacity")
+    @WithDefault("4")
+    int queueCapacity();
+    
+    /**
+     * Number of concurrent bulk requests per file.
+     */
+    @WithName("writer-threads")
+    @WithDefault("1")
+    int writerThreads();
+    
+    /**
+     * Most documents per bulk request, a ceiling for very small documents.
+     */
+    @WithName("bulk-max-operations")
+    @WithDefault("20000")
+    int bulkMaxOperations();
+    
+    /**
+     * Target payload size in bytes of a bulk request, estimated from the documents.
+     */
+    @WithName("bulk-max-bytes")
+    @WithDefault("10485760")
+    long bulkMaxBytes();
+    
+    /**
+     * Longest time in milliseconds a document waits before its bulk request is sent.
+     */
+    @WithName("bulk-flush-interval-ms")
+    @WithDefault("1000")
+    long bulkFlushIntervalMs();
+    
+    /**
+     * Number of bulk requests in flight at once, shared by all files.
+     */
+    @WithName("bulk-max-concurrent-requests")
+    @WithDefault("2")
+    int bulkMaxConcurrentRequests();
+    
+    /**
+     * NDJSON file receiving documents OpenSearch refused for good, with the reason.
+     */
+    @WithName("dead-letter-file")
+    @WithDefault("./data/error/dead-letter.ndjson")
+    String deadLetterFile();
+    
+    /**
+     * File holding the original index settings while bulk load mode is active, used to restore
+     * them after a crash.
+     */
+    @WithName("bulk-load-state-file")
+    @WithDefault("./data/state/bulk-load-state.properties")
+    String bulkLoadStateFile();
+    
+    /**
+     * Adjusts the rate limit from bulk outcomes: additive increase while healthy,
+     * multiplicative decrease on rejections or high latency.
+     */
+    @WithName("adaptive-rate-enabled")
+    @WithDefault("false")
+    boolean adaptiveRateEnabled();
+    
+    /**
+     * Lowest adaptive rate in documents per second.
+     */
+    @WithName("adaptive-rate-min-per-second")
+    @WithDefault("50")
+    int adaptiveRateMinPerSecond();
+    
+    /**
+     * Highest adaptive rate in documents per second.
+     */
+    @WithName("adaptive-rate-max-per-second")
+    @WithDefault("10000")
+    int adaptiveRateMaxPerSecond();
+    
+    /**
+     * Documents per second added after each healthy interval.
+     */
+    @WithName("adaptive-rate-increase-per-second")
+    @WithDefault("100")
+    int adaptiveRateIncreasePerSecond();
+    
+    /**
+     * Factor applied to the rate on back-pressure.
+     */
+    @WithName("adaptive-rate-decrease-factor")
+    @WithDefault("0.5")
+    double adaptiveRateDecreaseFactor();
+    
+    /**
+     * Bulk latency in milliseconds above which the cluster is treated as overloaded.
+     */
+    @WithName("adaptive-rate-latency-target-ms")
+    @WithDefault("2000")
+    long adaptiveRateLatencyTargetMs();
+    
+    /**
+     * Shortest time in milliseconds between two rate changes.
+     */
+    @WithName("adaptive-rate-interval-ms")
+    @WithDefault("1000")
+    long adaptiveRateIntervalMs();
+    
+    /**
+     * Expected green trips per month, sizing the shards of each monthly green index.
+     */
+    @WithName("green-monthly-documents")
+    @WithDefault("1000000")
+    long greenMonthlyDocuments();
+    
+    /**
+     * Expected yellow trips per month, sizing the shards of each monthly yellow index.
+     */
+    @WithName("yellow-monthly-documents")
+    @WithDefault("4000000")
+    long yellowMonthlyDocuments();
+    
+    /**
+     * Documents a single shard should hold at most.
+     */
+    @WithName("shard-target-documents")
+    @WithDefault("50000000")
+    long shardTargetDocuments();
+    
+    /**
+     * Installs the Index State Management policy for the monthly indices. Off by default, since
+     * writes to a month made read-only are refused.
+     */
+    @WithName("lifecycle-policy-enabled")
+    @WithDefault("false")
+    boolean lifecyclePolicyEnabled();
+    
+    /**
+     * Index age after which a monthly index is force-merged and made read-only, e.g. {@code 30d}.
+     */
+    @WithName("lifecycle-read-only-after")
+    @WithDefault("30d")
+    String lifecycleReadOnlyAfter();
+    
+    /**
+     * Custom routing of trip documents: NONE, PICKUP_ZONE or BOROUGH.
+     */
+    @WithName("routing")
+    @WithDefault("NONE")
+    String routing();
+    
+    /**
+     * Lowest number of shards of a monthly index while routing is on.
+     */
+    @WithName("routing-shards")
+    @WithDefault("4")
+    int routingShards();
+    
+    /**
+     * CSV of taxi zone centroids; adds pickup/dropoff geo points to trip documents and is
+     * required for BOROUGH routing and borough searches.
+     */
+    @WithName("zone-centroids-path")
+    Optional<String> zoneCentroidsPath();
 }
-
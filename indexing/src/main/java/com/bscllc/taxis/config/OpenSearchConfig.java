@@ -3,6 +3,7 @@ package com.bscllc.taxis.config;
 import io.smallrye.config.ConfigMapping;
 import io.smallrye.config.WithName;
 import io.smallrye.config.WithDefault;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -29,5 +30,38 @@ public interface OpenSearchConfig {
     
     @WithName("cert-path")
     Optional<String> certPath();
+    
+    /**
+     * Nodes as {@code host} or {@code host:port}, spread over round-robin; replaces host and port when set.
+     */
+    Optional<List<String>> hosts();
+    
+    /**
+     * Gzip request bodies and accept gzip responses.
+     */
+    @WithDefault("true")
+    boolean compression();
+    
+    @WithName("max-connections")
+    @WithDefault("30")
+    int maxConnections();
+    
+    @WithName("max-connections-per-route")
+    @WithDefault("10")
+    int maxConnectionsPerRoute();
+    
+    /**
+     * How long an idle pooled connection is kept open, in milliseconds.
+     */
+    @WithName("keep-alive-ms")
+    @WithDefault("60000")
+    long keepAliveMs();
+    
+    /**
+     * Interval in milliseconds for discovering the cluster's nodes from {@code _nodes/http}; 0 disables sniffing.
+     */
+    @WithName("sniff-interval-ms")
+    @WithDefault("0")
+    long sniffIntervalMs();
 }
 
@@ -1,6 +1,7 @@
 package com.bscllc.taxis.config;
 
 import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
 import io.smallrye.config.WithName;
 
 /**
@@ -32,5 +33,28 @@ public interface ProcessingConfig {
      */
     @WithName("monitor-period-ms")
     long monitorPeriodMs();
+    
+    /**
+     * Whether to watch the input directory. Disabled when the ingest application feeds
+     * OpenSearch from its own directory monitor.
+     */
+    @WithName("monitor-enabled")
+    @WithDefault("true")
+    boolean monitorEnabled();
+    
+    /**
+     * Thread model for per-file and per-chunk work: PLATFORM threads, or VIRTUAL threads so
+     * many blocking bulk requests can be in flight without one OS thread each.
+     */
+    @WithName("executor-mode")
+    @WithDefault("PLATFORM")
+    String executorMode();
+    
+    /**
+     * Maximum number of files processed at the same time.
+     */
+    @WithName("max-concurrent-files")
+    @WithDefault("1")
+    int maxConcurrentFiles();
 }
 
@@ -0,0 +1,487 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import com.bscllc.taxis.util.FanOutPipeline;
+import com.bscllc.taxis.util.TripKind;
+import com.bscllc.taxis.util.TripSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Streams trip rows out of the PostgreSQL trip tables so they can be bulk-indexed into a new
+ * OpenSearch cluster without re-dropping parquet files.
+ * <p>
+ * Rows are read in keyset pages ({@code WHERE id > ? ORDER BY id LIMIT pageSize}), each page
+ * through a server-side cursor ({@code fetchSize} rows per round trip), and handed to a
+ * {@link FanOutPipeline} in chunks for parallel writes to a {@link TripSink}. A run returns once
+ * the sink acknowledged every chunk of the page; only then is its last id stored as the table's
+ * high-water mark, so an interrupted backfill resumes from the last completed page. Both the standard and the compact table layouts are read.
+ * <p>
+ * One instance reads one PostgreSQL shard. Ids are only ordered within a shard, so each shard
+ * keeps its own high-water marks, stored as {@code <table>.shard-<n>.last-id}.
+ */
+public class BackfillService implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackfillService.class);
+
+    public enum TripTable {
+        GREEN("green_tripdata"),
+        YELLOW("yellow_tripdata");
+
+        private final String tableName;
+
+        TripTable(String tableName) {
+            this.tableName = tableName;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+    }
+
+    /**
+     * Converts the current result set row into a trip.
+     */
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs, boolean compact) throws SQLException;
+    }
+
+    private final Connection connection;
+    private final int fetchSize;
+    private final int pageSize;
+    private final Path stateFile;
+    private final int shard;
+
+    /**
+     * Builder class for creating BackfillService instances.
+     */
+    public static class Builder {
+        private String host = "localhost";
+        private int port = 5432;
+        private String database = "taxidb";
+        private String username = "postgres";
+        private String password = "postgres";
+        private boolean useTls = false;
+        private int fetchSize = 5000;
+        private int pageSize = 100000;
+        private Path stateFile;
+        private int shard = 0;
+
+        /**
+         * Sets the PostgreSQL host.
+         *
+         * @param host hostname or IP address
+         * @return this builder
+         */
+        public Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Sets the PostgreSQL port.
+         *
+         * @param port port number
+         * @return this builder
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Sets the database name.
+         *
+         * @param database database name
+         * @return this builder
+         */
+        public Builder database(String database) {
+            this.database = database;
+            return this;
+        }
+
+        /**
+         * Sets credentials for authentication.
+         *
+         * @param username username
+         * @param password password
+         * @return this builder
+         */
+        public Builder credentials(String username, String password) {
+            this.username = username;
+            this.password = password;
+            return this;
+        }
+
+        /**
+         * Enables or disables TLS.
+         *
+         * @param useTls true to require TLS
+         * @return this builder
+         */
+        public Builder useTls(boolean useTls) {
+            this.useTls = useTls;
+            return this;
+        }
+
+        /**
+         * Sets the number of rows fetched per cursor round trip.
+         *
+         * @param fetchSize rows per fetch
+         * @return this builder
+         */
+        public Builder fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of rows per keyset page. The high-water mark advances once per page.
+         *
+         * @param pageSize rows per page
+         * @return this builder
+         */
+        public Builder pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Sets the file storing the high-water mark of each table.
+         *
+         * @param stateFile state file path
+         * @return this builder
+         */
+        public Builder stateFile(Path stateFile) {
+            this.stateFile = stateFile;
+            return this;
+        }
+
+        /**
+         * Sets the number of the shard read, its position in the shard map. It selects the
+         * high-water marks in the state file.
+         *
+         * @param shard shard number, 0 without sharding
+         * @return this builder
+         */
+        public Builder shard(int shard) {
+            this.shard = shard;
+            return this;
+        }
+
+        /**
+         * Builds the BackfillService instance and connects to PostgreSQL.
+         *
+         * @return configured BackfillService
+         * @throws SQLException if the connection fails
+         */
+        public BackfillService build() throws SQLException {
+            if (fetchSize <= 0 || pageSize <= 0) {
+                throw new IllegalArgumentException("Fetch size and page size must be positive");
+            }
+            if (stateFile == null) {
+                throw new IllegalArgumentException("State file is required");
+            }
+            if (shard < 0) {
+                throw new IllegalArgumentException("Shard must not be negative");
+            }
+            return new BackfillService(this);
+        }
+    }
+
+    /**
+     * Creates a new Builder instance.
+     *
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private BackfillService(Builder builder) throws SQLException {
+        this.fetchSize = builder.fetchSize;
+        this.pageSize = builder.pageSize;
+        this.stateFile = builder.stateFile;
+        this.shard = builder.shard;
+
+        Properties props = new Properties();
+        props.setProperty("user", builder.username);
+        props.setProperty("password", builder.password);
+        if (builder.useTls) {
+            props.setProperty("ssl", "true");
+            props.setProperty("sslmode", "require");
+        }
+        this.connection = DriverManager.getConnection(
+                "jdbc:postgresql://" + builder.host + ":" + builder.port + "/" + builder.database, props);
+        // A server-side cursor is only used outside autocommit
+        this.connection.setAutoCommit(false);
+        this.connection.setReadOnly(true);
+    }
+
+    /**
+     * Backfills the trips of a table newer than the stored high-water mark.
+     *
+     * @param table trip table
+     * @param pipeline pipeline running the sink's writers
+     * @param chunkSize rows per chunk handed to the sink
+     * @param sink destination of the trips, e.g. the rate-limited OpenSearch sink
+     * @return number of rows acknowledged by the sink
+     * @throws Exception if reading or writing fails; completed pages stay recorded
+     */
+    public long backfill(TripTable table, FanOutPipeline pipeline, int chunkSize, TripSink sink) throws Exception {
+        if (table == TripTable.GREEN) {
+            return backfill(table, pipeline, chunkSize, BackfillService::mapGreen, TripKind.GREEN.sink(sink));
+        }
+        return backfill(table, pipeline, chunkSize, BackfillService::mapYellow, TripKind.YELLOW.sink(sink));
+    }
+
+    private <T> long backfill(TripTable table, FanOutPipeline pipeline, int chunkSize,
+                              RowMapper<T> mapper, FanOutPipeline.Sink<T> sink) throws Exception {
+        String sql = "SELECT * FROM " + table.getTableName() + " WHERE id > ? ORDER BY id LIMIT ?";
+        long highWaterMark = getHighWaterMark(table);
+        long total = 0;
+        LOG.info("Backfilling " + table.getTableName() + " on shard " + shard + " from id > " + highWaterMark);
+
+        while (true) {
+            long from = highWaterMark;
+            long[] page = {0, from}; // rows read, last id
+            long indexed;
+            try {
+                indexed = pipeline.<T>run(consumer -> {
+                    try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                        pstmt.setFetchSize(fetchSize);
+                        pstmt.setLong(1, from);
+                        pstmt.setInt(2, pageSize);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            boolean compact = isCompact(rs.getMetaData());
+                            List<T> chunk = new ArrayList<>(chunkSize);
+                            while (rs.next()) {
+                                chunk.add(mapper.map(rs, compact));
+                                page[0]++;
+                                page[1] = rs.getLong("id");
+                                if (chunk.size() >= chunkSize) {
+                                    consumer.accept(chunk);
+                                    chunk = new ArrayList<>(chunkSize);
+                                }
+                            }
+                            if (!chunk.isEmpty()) {
+                                consumer.accept(chunk);
+                            }
+                        }
+                    }
+                }, List.of(sink)).get(sink.name());
+            } finally {
+                // Ends the read transaction and releases the cursor
+                connection.commit();
+            }
+
+            if (page[0] == 0) {
+                break;
+            }
+            highWaterMark = page[1];
+            saveHighWaterMark(table, highWaterMark);
+            total += indexed;
+            LOG.info("Backfilled " + total + " rows from " + table.getTableName() + " on shard " + shard +
+                    ", high-water mark id " + highWaterMark);
+            if (page[0] < pageSize) {
+                break;
+            }
+        }
+
+        LOG.info("Backfill of " + table.getTableName() + " on shard " + shard + " complete: " + total + " rows");
+        return total;
+    }
+
+    /**
+     * Gets the last id of a table on this shard known to be fully indexed. On shard 0 the
+     * table-wide mark stored before the backfill was sharded is used until the shard has its own.
+     *
+     * @param table trip table
+     * @return high-water mark id, 0 if the table was never backfilled
+     * @throws IOException if the state file cannot be read
+     */
+    public long getHighWaterMark(TripTable table) throws IOException {
+        Properties state = loadState();
+        String value = state.getProperty(stateKey(table));
+        if (value == null && shard == 0) {
+            value = state.getProperty(legacyStateKey(table));
+        }
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    /**
+     * Clears the high-water mark of a table on this shard so the next backfill starts from the beginning.
+     *
+     * @param table trip table
+     * @throws IOException if the state file cannot be written
+     */
+    public void resetHighWaterMark(TripTable table) throws IOException {
+        Properties state = loadState();
+        state.remove(stateKey(table));
+        if (shard == 0) {
+            state.remove(legacyStateKey(table));
+        }
+        storeState(state);
+    }
+
+    private void saveHighWaterMark(TripTable table, long id) throws IOException {
+        Properties state = loadState();
+        state.setProperty(stateKey(table), Long.toString(id));
+        if (shard == 0) {
+            state.remove(legacyStateKey(table));
+        }
+        storeState(state);
+    }
+
+    private String stateKey(TripTable table) {
+        return table.getTableName() + ".shard-" + shard + ".last-id";
+    }
+
+    private static String legacyStateKey(TripTable table) {
+        return table.getTableName() + ".last-id";
+    }
+
+    private Properties loadState() throws IOException {
+        Properties state = new Properties();
+        if (Files.exists(stateFile)) {
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                state.load(in);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Writes the state file atomically so a crash never leaves a truncated high-water mark.
+     */
+    private void storeState(Properties state) throws IOException {
+        Path parent = stateFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            state.store(out, "Backfill high-water marks");
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Detects the compact table layout (money in cents, boolean store-and-forward flag).
+     */
+    private static boolean isCompact(ResultSetMetaData metaData) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.add(metaData.getColumnName(i).toLowerCase(Locale.ROOT));
+        }
+        return columns.contains("fare_amount_cents");
+    }
+
+    private static GreenTripdata mapGreen(ResultSet rs, boolean compact) throws SQLException {
+        GreenTripdata trip = new GreenTripdata();
+        trip.setVendorId(getInteger(rs, "vendor_id"));
+        trip.setLpepPickupDatetime(rs.getObject("lpep_pickup_datetime", LocalDateTime.class));
+        trip.setLpepDropoffDatetime(rs.getObject("lpep_dropoff_datetime", LocalDateTime.class));
+        trip.setStoreAndFwdFlag(getFlag(rs, compact));
+        trip.setRatecodeId(getInteger(rs, "ratecode_id"));
+        trip.setPuLocationId(getInteger(rs, "pu_location_id"));
+        trip.setDoLocationId(getInteger(rs, "do_location_id"));
+        trip.setPassengerCount(getInteger(rs, "passenger_count"));
+        trip.setTripDistance(getDouble(rs, "trip_distance"));
+        trip.setFareAmount(getAmount(rs, "fare_amount", compact));
+        trip.setExtra(getAmount(rs, "extra", compact));
+        trip.setMtaTax(getAmount(rs, "mta_tax", compact));
+        trip.setTipAmount(getAmount(rs, "tip_amount", compact));
+        trip.setTollsAmount(getAmount(rs, "tolls_amount", compact));
+        trip.setEhailFee(getAmount(rs, "ehail_fee", compact));
+        trip.setImprovementSurcharge(getAmount(rs, "improvement_surcharge", compact));
+        trip.setTotalAmount(getAmount(rs, "total_amount", compact));
+        trip.setPaymentType(getInteger(rs, "payment_type"));
+        trip.setTripType(getInteger(rs, "trip_type"));
+        trip.setCongestionSurcharge(getAmount(rs, "congestion_surcharge", compact));
+        return trip;
+    }
+
+    private static YellowTripdata mapYellow(ResultSet rs, boolean compact) throws SQLException {
+        YellowTripdata trip = new YellowTripdata();
+        trip.setVendorId(getInteger(rs, "vendor_id"));
+        trip.setTpepPickupDatetime(rs.getObject("tpep_pickup_datetime", LocalDateTime.class));
+        trip.setTpepDropoffDatetime(rs.getObject("tpep_dropoff_datetime", LocalDateTime.class));
+        trip.setPassengerCount(getInteger(rs, "passenger_count"));
+        trip.setTripDistance(getDouble(rs, "trip_distance"));
+        trip.setRatecodeId(getInteger(rs, "ratecode_id"));
+        trip.setStoreAndFwdFlag(getFlag(rs, compact));
+        trip.setPuLocationId(getInteger(rs, "pu_location_id"));
+        trip.setDoLocationId(getInteger(rs, "do_location_id"));
+        trip.setPaymentType(getInteger(rs, "payment_type"));
+        trip.setFareAmount(getAmount(rs, "fare_amount", compact));
+        trip.setExtra(getAmount(rs, "extra", compact));
+        trip.setMtaTax(getAmount(rs, "mta_tax", compact));
+        trip.setTipAmount(getAmount(rs, "tip_amount", compact));
+        trip.setTollsAmount(getAmount(rs, "tolls_amount", compact));
+        trip.setImprovementSurcharge(getAmount(rs, "improvement_surcharge", compact));
+        trip.setTotalAmount(getAmount(rs, "total_amount", compact));
+        trip.setCongestionSurcharge(getAmount(rs, "congestion_surcharge", compact));
+        return trip;
+    }
+
+    private static Integer getInteger(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Double getDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Double getAmount(ResultSet rs, String baseName, boolean compact) throws SQLException {
+        if (!compact) {
+            return getDouble(rs, baseName);
+        }
+        long cents = rs.getLong(baseName + "_cents");
+        return rs.wasNull() ? null : cents / 100.0;
+    }
+
+    private static String getFlag(ResultSet rs, boolean compact) throws SQLException {
+        if (!compact) {
+            return rs.getString("store_and_fwd_flag");
+        }
+        boolean flag = rs.getBoolean("store_and_fwd_flag");
+        return rs.wasNull() ? null : (flag ? "Y" : "N");
+    }
+
+    /**
+     * Closes the PostgreSQL connection.
+     *
+     * @throws SQLException if closing fails
+     */
+    @Override
+    public void close() throws SQLException {
+        if (connection != null && !connection.isClosed()) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,721 @@
+package com.bscllc.taxis.service;
+
+import org.opensearch.client.ResponseException;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Accumulates bulk operations from many callers and sends them as asynchronous bulk requests.
+ * <p>
+ * Bulk requests are formed by payload size: the buffer is sent before an add would take it past
+ * {@code maxBytes} estimated bytes (see {@link BulkSizeEstimator}) or {@code maxOperations}
+ * operations, and when its oldest operation has waited {@code flushInterval}. Requests thus stay
+ * close to the byte target whatever columns the documents carry, with the operation count as a
+ * ceiling. Operations added together always travel in the same request, so a single add larger
+ * than a limit is sent on its own.
+ * At most {@code maxConcurrentRequests} requests are in flight; further flushes block the caller,
+ * which is the back-pressure that slows parsing down to what the cluster accepts.
+ * <p>
+ * Requests failing as a whole with a transient error (connection failure, 429, 502-504) are
+ * resent with jittered exponential backoff while keeping their in-flight slot. Within a response,
+ * only the items rejected with a transient status are resent; items failing for good (e.g. mapping
+ * errors) or running out of retries go to the dead-letter file. Operations complete once every item
+ * is either indexed or dead-lettered.
+ */
+public class BulkIngester implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkIngester.class);
+
+    /**
+     * Observes bulk requests. Callbacks run on the ingester's completion thread and should be quick.
+     */
+    public interface Listener {
+
+        /**
+         * Combines listeners, called in order.
+         *
+         * @param listeners listeners
+         * @return listener notifying all of them
+         */
+        static Listener of(Listener... listeners) {
+            return new Listener() {
+                @Override
+                public void beforeBulk(long executionId, int operations, long bytes) {
+                    for (Listener listener : listeners) {
+                        listener.beforeBulk(executionId, operations, bytes);
+                    }
+                }
+
+                @Override
+                public void afterBulk(long executionId, int operations, BulkResponse response, long tookNanos) {
+                    for (Listener listener : listeners) {
+                        listener.afterBulk(executionId, operations, response, tookNanos);
+                    }
+                }
+
+                @Override
+                public void onRetry(long executionId, int operations, Throwable failure, long tookNanos) {
+                    for (Listener listener : listeners) {
+                        listener.onRetry(executionId, operations, failure, tookNanos);
+                    }
+                }
+
+                @Override
+                public void afterFailure(long executionId, int operations, Throwable failure, long tookNanos) {
+                    for (Listener listener : listeners) {
+                        listener.afterFailure(executionId, operations, failure, tookNanos);
+                    }
+                }
+            };
+        }
+
+        /**
+         * Called before a bulk request is sent, including retries.
+         *
+         * @param executionId request id, stable across retries
+         * @param operations number of operations
+         * @param bytes estimated payload size
+         */
+        default void beforeBulk(long executionId, int operations, long bytes) {
+        }
+
+        /**
+         * Called when a bulk request got a response. Item failures are handled after this call.
+         *
+         * @param executionId request id
+         * @param operations number of operations
+         * @param response bulk response
+         * @param tookNanos time of this attempt
+         */
+        default void afterBulk(long executionId, int operations, BulkResponse response, long tookNanos) {
+        }
+
+        /**
+         * Called when a bulk request failed with a transient error and is about to be resent.
+         *
+         * @param executionId request id
+         * @param operations number of operations
+         * @param failure failure of this attempt
+         * @param tookNanos time of this attempt
+         */
+        default void onRetry(long executionId, int operations, Throwable failure, long tookNanos) {
+        }
+
+        /**
+         * Called when a bulk request failed for good.
+         *
+         * @param executionId request id
+         * @param operations number of operations
+         * @param failure last failure
+         * @param tookNanos time of the last attempt
+         */
+        default void afterFailure(long executionId, int operations, Throwable failure, long tookNanos) {
+        }
+    }
+
+    /**
+     * Operations added together, completed together.
+     */
+    private static final class Entry {
+        final List<BulkOperation> operations;
+        final long estimatedBytes;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        // set on the completion thread when one of its refused documents could not be dead-lettered
+        Throwable failure;
+
+        Entry(List<BulkOperation> operations, long estimatedBytes) {
+            this.operations = operations;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    private final OpenSearchAsyncClient client;
+    private final int maxOperations;
+    private final long maxBytes;
+    private final long flushIntervalMillis;
+    private final int maxConcurrentRequests;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final Listener listener;
+    private final DeadLetterWriter deadLetters;
+
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService flushTimer;
+    private final ScheduledExecutorService completions;
+    private final AtomicLong executionIds = new AtomicLong();
+    private final AtomicLong retriedDocuments = new AtomicLong();
+    private final AtomicLong droppedDocuments = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<Entry> buffer = new ArrayList<>();
+    private int bufferedOperations;
+    private long bufferedBytes;
+    private long oldestNanos;
+    private volatile boolean closed = false;
+
+    /**
+     * Builder class for creating BulkIngester instances.
+     */
+    public static class Builder {
+        private OpenSearchAsyncClient client;
+        private int maxOperations = 20000;
+        private long maxBytes = 10L * 1024 * 1024;
+        private long flushIntervalMillis = 1000;
+        private int maxConcurrentRequests = 2;
+        private int maxRetries = 3;
+        private long initialBackoffMillis = 200;
+        private Listener listener = new Listener() { };
+        private DeadLetterWriter deadLetters;
+
+        /**
+         * Sets the client sending the bulk requests.
+         *
+         * @param client async OpenSearch client
+         * @return this builder
+         */
+        public Builder client(OpenSearchAsyncClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * Sets the most operations per bulk request.
+         *
+         * @param maxOperations operations per bulk request
+         * @return this builder
+         */
+        public Builder maxOperations(int maxOperations) {
+            this.maxOperations = maxOperations;
+            return this;
+        }
+
+        /**
+         * Sets the target payload size of a bulk request.
+         *
+         * @param maxBytes estimated bytes per bulk request
+         * @return this builder
+         */
+        public Builder maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the longest time an operation waits in the buffer. 0 disables timed flushes.
+         *
+         * @param flushIntervalMillis flush interval in milliseconds
+         * @return this builder
+         */
+        public Builder flushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Sets the number of bulk requests allowed in flight at once.
+         *
+         * @param maxConcurrentRequests concurrent requests
+         * @return this builder
+         */
+        public Builder maxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Sets how often a request failing with a transient error is resent.
+         *
+         * @param maxRetries retries per request
+         * @param initialBackoffMillis delay before the first retry, doubled for each further one
+         * @return this builder
+         */
+        public Builder retries(int maxRetries, long initialBackoffMillis) {
+            this.maxRetries = maxRetries;
+            this.initialBackoffMillis = initialBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Sets the request listener.
+         *
+         * @param listener listener
+         * @return this builder
+         */
+        public Builder listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Sets where documents refused for good are written. Without one, or if writing fails,
+         * the batches holding refused documents complete exceptionally.
+         *
+         * @param deadLetters dead-letter writer, may be null
+         * @return this builder
+         */
+        public Builder deadLetters(DeadLetterWriter deadLetters) {
+            this.deadLetters = deadLetters;
+            return this;
+        }
+
+        /**
+         * Builds the BulkIngester instance.
+         *
+         * @return configured BulkIngester
+         */
+        public BulkIngester build() {
+            if (client == null) {
+                throw new IllegalArgumentException("Client is required");
+            }
+            if (maxOperations <= 0 || maxBytes <= 0 || maxConcurrentRequests <= 0) {
+                throw new IllegalArgumentException("Bulk limits must be positive");
+            }
+            return new BulkIngester(this);
+        }
+    }
+
+    /**
+     * Creates a new Builder instance.
+     *
+     * @return new Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private BulkIngester(Builder builder) {
+        this.client = builder.client;
+        this.maxOperations = builder.maxOperations;
+        this.maxBytes = builder.maxBytes;
+        this.flushIntervalMillis = builder.flushIntervalMillis;
+        this.maxConcurrentRequests = builder.maxConcurrentRequests;
+        this.maxRetries = builder.maxRetries;
+        this.initialBackoffMillis = builder.initialBackoffMillis;
+        this.listener = builder.listener;
+        this.deadLetters = builder.deadLetters;
+        this.inFlight = new Semaphore(maxConcurrentRequests);
+
+        // Flushes may block on the in-flight limit, responses and retries must not wait behind them.
+        // Responses are handled off the HTTP client threads since dead-lettering writes to disk.
+        this.flushTimer = Executors.newSingleThreadScheduledExecutor(daemon("BulkIngester-Flush"));
+        this.completions = Executors.newSingleThreadScheduledExecutor(daemon("BulkIngester-Completion"));
+        if (flushIntervalMillis > 0) {
+            long period = Math.max(1, flushIntervalMillis / 4);
+            flushTimer.scheduleWithFixedDelay(this::flushIfDue, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Adds operations to the next bulk request, sending it if a threshold is reached.
+     * Blocks while the in-flight limit is reached.
+     *
+     * @param operations operations to send together
+     * @param estimatedBytes estimated payload size of the operations
+     * @return completes when the request carrying the operations got a response,
+     *         exceptionally if it failed for good
+     * @throws InterruptedException if interrupted while waiting for an in-flight slot
+     */
+    public CompletableFuture<Void> add(List<BulkOperation> operations, long estimatedBytes) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Bulk ingester is closed");
+        }
+        Entry entry = new Entry(operations, estimatedBytes);
+        if (operations.isEmpty()) {
+            entry.future.complete(null);
+            return entry.future;
+        }
+
+        List<Entry> full = null;
+        List<Entry> ready = null;
+        lock.lock();
+        try {
+            if (bufferedOperations + operations.size() > maxOperations || bufferedBytes + estimatedBytes > maxBytes) {
+                // Send what is buffered rather than overshoot the target
+                full = drain();
+            }
+            if (buffer.isEmpty()) {
+                oldestNanos = System.nanoTime();
+            }
+            buffer.add(entry);
+            bufferedOperations += operations.size();
+            bufferedBytes += estimatedBytes;
+            if (bufferedOperations >= maxOperations || bufferedBytes >= maxBytes) {
+                ready = drain();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            send(full);
+        }
+        if (ready != null) {
+            send(ready);
+        }
+        return entry.future;
+    }
+
+    /**
+     * Sends the buffered operations now. Blocks while the in-flight limit is reached.
+     *
+     * @throws InterruptedException if interrupted while waiting for an in-flight slot
+     */
+    public void flush() throws InterruptedException {
+        List<Entry> ready;
+        lock.lock();
+        try {
+            ready = drain();
+        } finally {
+            lock.unlock();
+        }
+        if (ready != null) {
+            send(ready);
+        }
+    }
+
+    private void flushIfDue() {
+        try {
+            List<Entry> ready = null;
+            lock.lock();
+            try {
+                if (!buffer.isEmpty()
+                        && System.nanoTime() - oldestNanos >= TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis)) {
+                    ready = drain();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (ready != null) {
+                send(ready);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.error("Timed bulk flush failed", e);
+        }
+    }
+
+    /**
+     * Takes the buffer contents, or null if it is empty. Caller holds the lock.
+     */
+    private List<Entry> drain() {
+        if (buffer.isEmpty()) {
+            return null;
+        }
+        List<Entry> ready = buffer;
+        buffer = new ArrayList<>();
+        bufferedOperations = 0;
+        bufferedBytes = 0;
+        return ready;
+    }
+
+    private void send(List<Entry> entries) throws InterruptedException {
+        inFlight.acquire();
+        List<BulkOperation> operations = new ArrayList<>();
+        long bytes = 0;
+        for (Entry entry : entries) {
+            operations.addAll(entry.operations);
+            bytes += entry.estimatedBytes;
+        }
+        long executionId = executionIds.incrementAndGet();
+        execute(executionId, operations, bytes, entries, 0);
+    }
+
+    /**
+     * Sends operations and handles the outcome; retries resend only the operations still pending.
+     */
+    private void execute(long executionId, List<BulkOperation> operations, long bytes, List<Entry> entries,
+                         int attempt) {
+        listener.beforeBulk(executionId, operations.size(), bytes);
+        long startNanos = System.nanoTime();
+        CompletableFuture<BulkResponse> response;
+        try {
+            response = client.bulk(new BulkRequest.Builder().operations(operations).build());
+        } catch (IOException | RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenCompleteAsync((result, error) -> {
+            long tookNanos = System.nanoTime() - startNanos;
+            if (error == null) {
+                listener.afterBulk(executionId, operations.size(), result, tookNanos);
+                List<BulkOperation> retry = handleItems(executionId, operations, entries, result, attempt);
+                if (retry.isEmpty() || !scheduleRetry(executionId, retry, bytes, entries, attempt,
+                        retry.size() + " rejected documents")) {
+                    finish(entries, null);
+                }
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (isRetryable(cause) && canRetry(attempt)) {
+                listener.onRetry(executionId, operations.size(), cause, tookNanos);
+                if (scheduleRetry(executionId, operations, bytes, entries, attempt, cause.getMessage())) {
+                    return;
+                }
+            }
+            listener.afterFailure(executionId, operations.size(), cause, tookNanos);
+            finish(entries, cause);
+        }, completions);
+    }
+
+    private boolean scheduleRetry(long executionId, List<BulkOperation> operations, long bytes, List<Entry> entries,
+                                  int attempt, String reason) {
+        if (!canRetry(attempt)) {
+            return false;
+        }
+        long backoff = backoffMillis(attempt);
+        LOG.warn("Bulk request " + executionId + " failed (" + reason + "), retry " +
+                (attempt + 1) + "/" + maxRetries + " in " + backoff + " ms");
+        try {
+            completions.schedule(() -> execute(executionId, operations, bytes, entries, attempt + 1),
+                    backoff, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private boolean canRetry(int attempt) {
+        return attempt < maxRetries && !closed;
+    }
+
+    private void finish(List<Entry> entries, Throwable failure) {
+        inFlight.release();
+        for (Entry entry : entries) {
+            Throwable cause = failure != null ? failure : entry.failure;
+            if (cause == null) {
+                entry.future.complete(null);
+            } else {
+                entry.future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Sorts the failed items of a response: transient rejections are returned for a retry while
+     * retries remain, everything else is dead-lettered. Entries whose refused documents cannot be
+     * dead-lettered are marked failed.
+     *
+     * @return operations to resend, in request order
+     */
+    private List<BulkOperation> handleItems(long executionId, List<BulkOperation> operations, List<Entry> entries,
+                                            BulkResponse response, int attempt) {
+        List<BulkOperation> retry = new ArrayList<>();
+        if (!response.errors()) {
+            return retry;
+        }
+        List<DeadLetterWriter.DeadLetter> dropped = new ArrayList<>();
+        Set<BulkOperation> droppedOperations = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < items.size() && i < operations.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            if (item.error() == null) {
+                continue;
+            }
+            if (isRetryableItem(item)) {
+                if (canRetry(attempt)) {
+                    retry.add(operations.get(i));
+                    continue;
+                }
+                dropped.add(deadLetter(operations.get(i), item, "retries exhausted: "));
+            } else {
+                dropped.add(deadLetter(operations.get(i), item, ""));
+            }
+            droppedOperations.add(operations.get(i));
+        }
+        retriedDocuments.addAndGet(retry.size());
+        if (!dropped.isEmpty()) {
+            droppedDocuments.addAndGet(dropped.size());
+            DeadLetterWriter.DeadLetter first = dropped.get(0);
+            LOG.error("Bulk request " + executionId + " dropped " + dropped.size() + " documents, first: " +
+                    first.status() + " " + first.type() + " " + first.reason());
+            IOException failure = null;
+            if (deadLetters == null) {
+                failure = new IOException(dropped.size() + " documents refused and no dead-letter file configured");
+            } else {
+                try {
+                    deadLetters.write(dropped);
+                } catch (IOException e) {
+                    LOG.error("Failed to write " + dropped.size() + " documents to dead-letter file " +
+                            deadLetters.getFile(), e);
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                for (Entry entry : entries) {
+                    if (entry.failure == null && entry.operations.stream().anyMatch(droppedOperations::contains)) {
+                        entry.failure = failure;
+                    }
+                }
+            }
+        }
+        return retry;
+    }
+
+    private static DeadLetterWriter.DeadLetter deadLetter(BulkOperation operation, BulkResponseItem item,
+                                                          String reasonPrefix) {
+        Object document = operation.isIndex() ? operation.index().document() : null;
+        String routing = operation.isIndex() ? operation.index().routing() : null;
+        return new DeadLetterWriter.DeadLetter(item.index(), item.id(), routing, item.status(), item.error().type(),
+                reasonPrefix + item.error().reason(), document);
+    }
+
+    /**
+     * Checks whether a failed bulk item is worth resending.
+     *
+     * @param item failed response item
+     * @return true for rejected executions and 429/502/503/504 statuses
+     */
+    public static boolean isRetryableItem(BulkResponseItem item) {
+        return isRetryableStatus(item.status())
+                || (item.error() != null && "es_rejected_execution_exception".equals(item.error().type()));
+    }
+
+    private long backoffMillis(int attempt) {
+        long ceiling = initialBackoffMillis << Math.min(attempt, 16);
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    /**
+     * Checks whether a failed bulk request is worth resending as a whole.
+     *
+     * @param failure request failure
+     * @return true for connection failures and 429/502/503/504 responses
+     */
+    public static boolean isRetryable(Throwable failure) {
+        if (failure instanceof OpenSearchException e) {
+            return isRetryableStatus(e.status());
+        }
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof ResponseException e) {
+                return isRetryableStatus(e.getResponse().getStatusLine().getStatusCode());
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return failure instanceof IOException;
+    }
+
+    /**
+     * Checks whether an HTTP status signals a transient overload or outage.
+     *
+     * @param status HTTP status
+     * @return true for 429, 502, 503 and 504
+     */
+    public static boolean isRetryableStatus(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Gets the number of bulk requests currently in flight.
+     *
+     * @return in-flight requests
+     */
+    public int getInFlightRequests() {
+        return maxConcurrentRequests - inFlight.availablePermits();
+    }
+
+    /**
+     * Gets the number of documents resent after a transient item rejection.
+     *
+     * @return retried documents, counted once per retry
+     */
+    public long getRetriedDocuments() {
+        return retriedDocuments.get();
+    }
+
+    /**
+     * Gets the number of documents refused for good and dead-lettered.
+     *
+     * @return dropped documents
+     */
+    public long getDroppedDocuments() {
+        return droppedDocuments.get();
+    }
+
+    /**
+     * Gets the number of operations waiting in the buffer.
+     *
+     * @return buffered operations
+     */
+    public int getBufferedOperations() {
+        lock.lock();
+        try {
+            return bufferedOperations;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the in-flight request limit.
+     *
+     * @return maximum concurrent requests
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Flushes the buffer and waits for all in-flight requests to finish.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitIdle() throws InterruptedException {
+        flush();
+        inFlight.acquire(maxConcurrentRequests);
+        inFlight.release(maxConcurrentRequests);
+    }
+
+    /**
+     * Flushes the buffer, waits for in-flight requests and stops the timers.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closed = true;
+            flushTimer.shutdownNow();
+            completions.shutdownNow();
+        }
+    }
+}
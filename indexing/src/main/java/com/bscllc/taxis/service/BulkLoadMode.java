@@ -0,0 +1,346 @@
+package com.bscllc.taxis.service;
+
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
+import org.opensearch.client.Request;
+import org.opensearch.client.Response;
+import org.opensearch.client.ResponseListener;
+import org.opensearch.client.RestClient;
+import org.opensearch.client.json.JsonpMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Index settings for bulk loads: while active, the trip indices run with
+ * {@code refresh_interval: -1}, no replicas and asynchronous translog durability, which removes
+ * refresh and replication work from the cluster during large backfills. Ending the mode restores
+ * the settings each index had before, refreshes the indices and force-merges them in the background.
+ * <p>
+ * The original settings are written to a state file before any index is changed and the file is
+ * deleted only after they are restored, so a crash leaves enough behind to restore them on the
+ * next start ({@link #restore()}), and beginning again never mistakes bulk settings for originals.
+ */
+public class BulkLoadMode {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkLoadMode.class);
+
+    /**
+     * Settings changed for the load, with their bulk values.
+     */
+    static final Map<String, String> BULK_SETTINGS = bulkSettings();
+
+    // Indices per request, keeping request lines short with many monthly indices
+    private static final int INDICES_PER_REQUEST = 50;
+
+    private final RestClient restClient;
+    private final JsonpMapper mapper;
+    private final Path stateFile;
+    private final String indexPattern;
+    private final Properties originals = new Properties();
+    // include() holds it across REST calls from writer threads, which may be virtual
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean active;
+
+    /**
+     * Creates the mode, loading originals left by an earlier run.
+     *
+     * @param restClient low-level client
+     * @param mapper mapper whose JSON provider parses responses
+     * @param stateFile file holding the original settings while the mode is active
+     * @param indexPattern indices the mode applies to, e.g. {@code green-tripdata-*,yellow-tripdata-*}
+     * @throws IOException if an existing state file cannot be read
+     */
+    public BulkLoadMode(RestClient restClient, JsonpMapper mapper, Path stateFile, String indexPattern) throws IOException {
+        this.restClient = restClient;
+        this.mapper = mapper;
+        this.stateFile = stateFile;
+        this.indexPattern = indexPattern;
+        if (Files.exists(stateFile)) {
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                originals.load(in);
+            }
+        }
+    }
+
+    private static Map<String, String> bulkSettings() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("index.refresh_interval", "-1");
+        settings.put("index.number_of_replicas", "0");
+        settings.put("index.translog.durability", "async");
+        return settings;
+    }
+
+    /**
+     * Switches all existing indices matching the pattern to bulk settings. Indices created
+     * while the mode is active are switched through {@link #include(String)}.
+     *
+     * @throws IOException if the settings cannot be read, recorded or changed
+     */
+    public void begin() throws IOException {
+        lock.lock();
+        try {
+            Map<String, Map<String, String>> current = readSettings(indexPattern);
+            apply(current);
+            active = true;
+            LOG.info("Bulk load mode on for " + current.size() + " indices");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Switches a newly created index to bulk settings if the mode is active.
+     *
+     * @param index index name
+     * @throws IOException if the settings cannot be read, recorded or changed
+     */
+    public void include(String index) throws IOException {
+        lock.lock();
+        try {
+            if (active && !isRecorded(index)) {
+                apply(readSettings(index));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restores the original settings, refreshes the indices and starts a force-merge.
+     * Call after every document of the load has been acknowledged.
+     *
+     * @throws IOException if the settings cannot be restored; the state file is kept for a retry
+     */
+    public void end() throws IOException {
+        lock.lock();
+        try {
+            List<String> indices = restore();
+            for (List<String> chunk : chunks(indices)) {
+                Request forceMerge = new Request("POST", "/" + String.join(",", chunk) + "/_forcemerge");
+                forceMerge.addParameter("max_num_segments", "1");
+                restClient.performRequestAsync(forceMerge, new ResponseListener() {
+                    @Override
+                    public void onSuccess(Response response) {
+                        LOG.info("Force-merged " + chunk.size() + " indices after bulk load");
+                    }
+
+                    @Override
+                    public void onFailure(Exception exception) {
+                        LOG.warn("Force-merge after bulk load did not complete: " + exception.getMessage());
+                    }
+                });
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restores the original settings recorded in the state file and refreshes the indices,
+     * e.g. after a crash during a load. Does nothing if nothing is recorded.
+     *
+     * @return restored indices
+     * @throws IOException if the settings cannot be restored; the state file is kept for a retry
+     */
+    public List<String> restore() throws IOException {
+        lock.lock();
+        try {
+            active = false;
+            Map<String, Map<String, String>> recorded = recorded();
+            for (Map.Entry<Map<String, String>, List<String>> group : groupBySettings(recorded).entrySet()) {
+                for (List<String> chunk : chunks(group.getValue())) {
+                    putSettings(String.join(",", chunk), group.getKey());
+                }
+            }
+            List<String> indices = new ArrayList<>(recorded.keySet());
+            for (List<String> chunk : chunks(indices)) {
+                Request refresh = new Request("POST", "/" + String.join(",", chunk) + "/_refresh");
+                refresh.addParameter("ignore_unavailable", "true");
+                restClient.performRequest(refresh);
+            }
+            originals.clear();
+            Files.deleteIfExists(stateFile);
+            if (!indices.isEmpty()) {
+                LOG.info("Bulk load mode off, settings restored for " + indices.size() + " indices");
+            }
+            return indices;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the mode is active in this process.
+     *
+     * @return true between {@link #begin()} and {@link #end()}
+     */
+    public boolean isActive() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether original settings are waiting to be restored, possibly from a crashed run.
+     *
+     * @return true if the state file holds settings
+     */
+    public boolean isPending() {
+        lock.lock();
+        try {
+            return !originals.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the originals of indices not recorded yet, then switches them to bulk settings.
+     * Indices already recorded keep their first originals, since after a crash their current
+     * settings are the bulk ones.
+     */
+    private void apply(Map<String, Map<String, String>> current) throws IOException {
+        boolean changed = false;
+        for (Map.Entry<String, Map<String, String>> index : current.entrySet()) {
+            if (!isRecorded(index.getKey())) {
+                for (String setting : BULK_SETTINGS.keySet()) {
+                    String value = index.getValue().get(setting);
+                    if (value != null) {
+                        originals.setProperty(index.getKey() + "/" + setting, value);
+                    }
+                }
+                changed = true;
+            }
+        }
+        if (changed) {
+            saveState();
+        }
+        List<String> indices = new ArrayList<>(current.keySet());
+        for (List<String> chunk : chunks(indices)) {
+            putSettings(String.join(",", chunk), BULK_SETTINGS);
+        }
+    }
+
+    private boolean isRecorded(String index) {
+        for (String setting : BULK_SETTINGS.keySet()) {
+            if (originals.containsKey(index + "/" + setting)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recorded originals by index; keys are {@code <index>/<setting>}.
+     */
+    private Map<String, Map<String, String>> recorded() {
+        Map<String, Map<String, String>> recorded = new TreeMap<>();
+        for (String key : originals.stringPropertyNames()) {
+            int slash = key.lastIndexOf('/');
+            recorded.computeIfAbsent(key.substring(0, slash), k -> new LinkedHashMap<>())
+                    .put(key.substring(slash + 1), originals.getProperty(key));
+        }
+        return recorded;
+    }
+
+    private static Map<Map<String, String>, List<String>> groupBySettings(Map<String, Map<String, String>> byIndex) {
+        Map<Map<String, String>, List<String>> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, String>> index : byIndex.entrySet()) {
+            groups.computeIfAbsent(index.getValue(), k -> new ArrayList<>()).add(index.getKey());
+        }
+        return groups;
+    }
+
+    private static List<List<String>> chunks(List<String> indices) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < indices.size(); i += INDICES_PER_REQUEST) {
+            chunks.add(indices.subList(i, Math.min(indices.size(), i + INDICES_PER_REQUEST)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Reads the managed settings of the given indices, falling back to cluster defaults for
+     * settings never set on an index.
+     */
+    private Map<String, Map<String, String>> readSettings(String indices) throws IOException {
+        Request request = new Request("GET", "/" + indices + "/_settings/" + String.join(",", BULK_SETTINGS.keySet()));
+        request.addParameter("flat_settings", "true");
+        request.addParameter("include_defaults", "true");
+        request.addParameter("allow_no_indices", "true");
+        request.addParameter("expand_wildcards", "open");
+        Response response = restClient.performRequest(request);
+        Map<String, Map<String, String>> settings = new TreeMap<>();
+        try (InputStream body = response.getEntity().getContent();
+             JsonParser parser = mapper.jsonProvider().createParser(body)) {
+            parser.next();
+            JsonObject root = parser.getObject();
+            for (Map.Entry<String, JsonValue> index : root.entrySet()) {
+                JsonObject state = index.getValue().asJsonObject();
+                Map<String, String> values = new LinkedHashMap<>();
+                for (String section : List.of("defaults", "settings")) {
+                    JsonObject flat = state.getJsonObject(section);
+                    if (flat == null) {
+                        continue;
+                    }
+                    for (String setting : BULK_SETTINGS.keySet()) {
+                        if (flat.containsKey(setting)) {
+                            values.put(setting, flat.getString(setting));
+                        }
+                    }
+                }
+                settings.put(index.getKey(), values);
+            }
+        }
+        return settings;
+    }
+
+    private void putSettings(String indices, Map<String, String> settings) throws IOException {
+        Request request = new Request("PUT", "/" + indices + "/_settings");
+        // Indices deleted since they were recorded are skipped
+        request.addParameter("ignore_unavailable", "true");
+        StringBuilder body = new StringBuilder("{");
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append('"').append(setting.getKey()).append("\":\"").append(setting.getValue()).append('"');
+        }
+        request.setJsonEntity(body.append('}').toString());
+        restClient.performRequest(request);
+    }
+
+    /**
+     * Writes the originals to a temporary file and moves it into place, so the state file is
+     * never left half written.
+     */
+    private void saveState() throws IOException {
+        Path parent = stateFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            originals.store(out, "Index settings to restore after bulk load");
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,155 @@
+package com.bscllc.taxis.service;
+
+import java.util.Map;
+
+/**
+ * Estimates the bytes a bulk index operation adds to the NDJSON request body: the action line
+ * plus the document, as Jackson serializes it or as a {@link TripDocument} writes itself. Only
+ * the fields present are counted, so sparse and wide rows are sized closely without serializing
+ * them twice.
+ */
+public final class BulkSizeEstimator {
+
+    // {"index":{"_index":"","_id":""}}\n
+    private static final int ACTION_OVERHEAD = 33;
+
+    // ,"routing": before the quoted routing value
+    private static final int ROUTING_OVERHEAD = 11;
+
+    private BulkSizeEstimator() {
+    }
+
+    /**
+     * Estimates the size of one index operation.
+     *
+     * @param index target index
+     * @param id document id, may be null
+     * @param routing custom routing value, may be null
+     * @param document document fields
+     * @return estimated bytes, action line and newlines included
+     */
+    public static long estimate(String index, String id, String routing, Map<String, ?> document) {
+        long bytes = actionLength(index, id, routing);
+        // {} and trailing newline
+        bytes += 3;
+        boolean first = true;
+        for (Map.Entry<String, ?> field : document.entrySet()) {
+            if (!first) {
+                bytes++;
+            }
+            first = false;
+            // "key":
+            bytes += stringLength(field.getKey()) + 1;
+            bytes += valueLength(field.getValue());
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the size of one index operation for a trip document.
+     *
+     * @param index target index
+     * @param id document id, may be null
+     * @param routing custom routing value, may be null
+     * @param document trip document
+     * @return estimated bytes, action line and newlines included
+     */
+    public static long estimate(String index, String id, String routing, TripDocument document) {
+        // Trailing newline
+        return actionLength(index, id, routing) + document.estimateBytes() + 1;
+    }
+
+    private static long actionLength(String index, String id, String routing) {
+        long bytes = ACTION_OVERHEAD + index.length() + (id == null ? 0 : id.length());
+        return routing == null ? bytes : bytes + ROUTING_OVERHEAD + stringLength(routing);
+    }
+
+    /**
+     * Estimates the JSON length of a scalar value.
+     *
+     * @param value value
+     * @return estimated characters
+     */
+    static int valueLength(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof String str) {
+            return stringLength(str);
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return longLength(((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return doubleLength(((Number) value).doubleValue());
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? 4 : 5;
+        }
+        if (value instanceof Map<?, ?> map) {
+            int length = 2 + Math.max(0, map.size() - 1);
+            for (Map.Entry<?, ?> field : map.entrySet()) {
+                length += stringLength(String.valueOf(field.getKey())) + 1 + valueLength(field.getValue());
+            }
+            return length;
+        }
+        return stringLength(value.toString());
+    }
+
+    /**
+     * Length of a quoted JSON string, counting escapes.
+     */
+    private static int stringLength(String value) {
+        int length = value.length() + 2;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                length++;
+            } else if (c < 0x20) {
+                length += 5;
+            } else if (c > 0x7f) {
+                // UTF-8 multi-byte
+                length += c > 0x7ff ? 2 : 1;
+            }
+        }
+        return length;
+    }
+
+    private static int longLength(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20;
+        }
+        int length = value < 0 ? 2 : 1;
+        long magnitude = Math.abs(value);
+        while (magnitude >= 10) {
+            magnitude /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Length of a double as {@link Double#toString}: integral part, point, and the fraction digits
+     * typical for trip amounts and distances (at most two, e.g. {@code 12.35}).
+     */
+    private static int doubleLength(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e7) {
+            return 24;
+        }
+        int length = longLength((long) value) + (value < 0 && value > -1 ? 1 : 0);
+        double cents = Math.abs(value * 100) % 100;
+        if (Math.abs(cents - Math.rint(cents)) > 1e-6) {
+            return length + 18;
+        }
+        long fraction = Math.round(cents) % 100;
+        return length + (fraction == 0 || fraction % 10 == 0 ? 2 : 3);
+    }
+
+    /**
+     * Length of a coordinate rounded to six decimals: integral part, point and up to six fraction
+     * digits. Trailing zeros are not dropped, so it may overestimate by a few characters.
+     */
+    static int coordinateLength(double value) {
+        return longLength((long) value) + (value < 0 && value > -1 ? 1 : 0) + 7;
+    }
+}
@@ -0,0 +1,132 @@
+package com.bscllc.taxis.service;
+
+import jakarta.json.stream.JsonGenerator;
+import org.opensearch.client.json.JsonpMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends documents that OpenSearch refused for good to an NDJSON file, one line per document:
+ * {@code {"timestamp", "index", "id", "routing", "status", "type", "reason", "document"}}. The file
+ * can be inspected after a mapping change and its documents replayed with their routing.
+ */
+public class DeadLetterWriter implements AutoCloseable {
+
+    /**
+     * A refused document and why it was refused.
+     *
+     * @param index target index
+     * @param id document id, may be null
+     * @param routing custom routing value, null for default routing
+     * @param status HTTP status of the item
+     * @param type OpenSearch error type, e.g. {@code mapper_parsing_exception}
+     * @param reason error reason
+     * @param document document as sent
+     */
+    public record DeadLetter(String index, String id, String routing, int status, String type, String reason,
+                             Object document) {
+    }
+
+    private final Path file;
+    private final JsonpMapper mapper;
+    private final BufferedWriter writer;
+    // Guards the file writes, which may come from virtual threads blocking on disk I/O
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Opens the dead-letter file for appending, creating it and its directory if needed.
+     *
+     * @param file NDJSON file
+     * @param mapper mapper serializing the documents, the same the client uses
+     * @throws IOException if the file cannot be opened
+     */
+    public DeadLetterWriter(Path file, JsonpMapper mapper) throws IOException {
+        this.file = file;
+        this.mapper = mapper;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Appends dead letters and flushes them to the file.
+     *
+     * @param letters dead letters
+     * @throws IOException if writing fails
+     */
+    public void write(List<DeadLetter> letters) throws IOException {
+        lock.lock();
+        try {
+            String timestamp = Instant.now().toString();
+            for (DeadLetter letter : letters) {
+                StringWriter line = new StringWriter();
+                try (JsonGenerator generator = mapper.jsonProvider().createGenerator(line)) {
+                    generator.writeStartObject();
+                    generator.write("timestamp", timestamp);
+                    writeString(generator, "index", letter.index());
+                    writeString(generator, "id", letter.id());
+                    writeString(generator, "routing", letter.routing());
+                    generator.write("status", letter.status());
+                    writeString(generator, "type", letter.type());
+                    writeString(generator, "reason", letter.reason());
+                    generator.writeKey("document");
+                    if (letter.document() == null) {
+                        generator.writeNull();
+                    } else {
+                        mapper.serialize(letter.document(), generator);
+                    }
+                    generator.writeEnd();
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+            writer.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, String name, String value) {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value);
+        }
+    }
+
+    /**
+     * Gets the dead-letter file.
+     *
+     * @return file path
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            writer.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.bscllc.taxis.service;
+
+import org.opensearch.client.Request;
+import org.opensearch.client.ResponseException;
+import org.opensearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Installs the component and index templates shipped under {@code opensearch/templates} on the
+ * classpath. The templates give the trip indices explicit mappings (dates, scaled floats for
+ * money, byte/short codes, keyword flags without norms, {@code dynamic: false}), so OpenSearch
+ * no longer guesses types from the first document and does not index fields that are never
+ * searched. The index templates match the monthly indices ({@code green-tripdata-*},
+ * {@code yellow-tripdata-*}) and add each new index to the read alias of its trip type.
+ * Templates are PUT on every install, which is idempotent and picks up edited files.
+ * <p>
+ * The Index State Management policy under {@code opensearch/policies} force-merges monthly
+ * indices and makes them read-only once they are old enough; it attaches itself to new monthly
+ * indices through its {@code ism_template}.
+ */
+public final class IndexTemplates {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexTemplates.class);
+
+    private static final String TEMPLATE_DIR = "/opensearch/templates/";
+
+    private static final String POLICY_DIR = "/opensearch/policies/";
+
+    /**
+     * Lifecycle policy of the monthly trip indices.
+     */
+    static final String LIFECYCLE_POLICY = "taxi-trips-lifecycle";
+
+    /**
+     * Component templates, installed first since the index templates are composed of them.
+     */
+    static final List<String> COMPONENT_TEMPLATES = List.of("taxi-trips-settings", "taxi-trips-mappings");
+
+    /**
+     * Index templates, one per trip type.
+     */
+    static final List<String> INDEX_TEMPLATES = List.of("green-tripdata", "yellow-tripdata");
+
+    private IndexTemplates() {
+    }
+
+    /**
+     * Puts all component and index templates.
+     *
+     * @param restClient low-level client
+     * @throws IOException if a template cannot be read or is refused
+     */
+    public static void install(RestClient restClient) throws IOException {
+        for (String name : COMPONENT_TEMPLATES) {
+            put(restClient, "/_component_template/" + name, name);
+        }
+        for (String name : INDEX_TEMPLATES) {
+            put(restClient, "/_index_template/" + name, name);
+        }
+        LOG.info("Installed index templates " + INDEX_TEMPLATES);
+    }
+
+    private static void put(RestClient restClient, String endpoint, String name) throws IOException {
+        Request request = new Request("PUT", endpoint);
+        request.setJsonEntity(load(TEMPLATE_DIR + name + ".json"));
+        restClient.performRequest(request);
+    }
+
+    /**
+     * Creates the lifecycle policy unless it exists. An existing policy is left as it is, since
+     * ISM only replaces a policy given its current sequence number; delete it to apply a new
+     * {@code readOnlyAfter}. Failures are logged rather than thrown, so indexing still works on
+     * clusters without the ISM plugin.
+     *
+     * @param restClient low-level client
+     * @param readOnlyAfter index age after which an index is force-merged and made read-only, e.g. {@code 30d}
+     * @return true if the policy exists afterwards
+     */
+    public static boolean installLifecyclePolicy(RestClient restClient, String readOnlyAfter) {
+        String endpoint = "/_plugins/_ism/policies/" + LIFECYCLE_POLICY;
+        try {
+            try {
+                restClient.performRequest(new Request("GET", endpoint));
+                return true;
+            } catch (ResponseException e) {
+                if (e.getResponse().getStatusLine().getStatusCode() != 404) {
+                    throw e;
+                }
+            }
+            Request request = new Request("PUT", endpoint);
+            request.setJsonEntity(load(POLICY_DIR + LIFECYCLE_POLICY + ".json").replace("${readOnlyAfter}", readOnlyAfter));
+            restClient.performRequest(request);
+            LOG.info("Installed lifecycle policy " + LIFECYCLE_POLICY + ": read-only after " + readOnlyAfter);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Could not install lifecycle policy " + LIFECYCLE_POLICY + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads a JSON body from the classpath.
+     *
+     * @param resource resource path
+     * @return JSON body
+     * @throws IOException if the resource is missing
+     */
+    static String load(String resource) throws IOException {
+        try (InputStream in = IndexTemplates.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Resource not found: " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.bscllc.taxis.service;
 
 import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.transport.rest_client.RestClientTransport;
 import org.apache.http.HttpHost;
@@ -13,10 +14,17 @@ import org.opensearch.client.RestClientBuilder;
 
 import com.bscllc.taxis.model.GreenTripdata;
 import com.bscllc.taxis.model.YellowTripdata;
-import org.opensearch.client.opensearch.core.BulkRequest;
+import com.bscllc.taxis.util.TaxiZoneCentroids;
+import com.bscllc.taxis.util.TripSink;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.BulkResponse;
 import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
 import org.opensearch.client.opensearch.core.bulk.IndexOperation;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
@@ -26,23 +34,68 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.security.cert.X509Certificate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service class for connecting to OpenSearch with optional TLS support.
+ * Documents are sent through a shared {@link BulkIngester}, so batches from concurrent callers
+ * are merged into larger bulk requests with a bounded number in flight.
+ * Trips are written to monthly indices by pickup month ({@code green-tripdata-2024.01}) and read
+ * through the {@code green-tripdata} / {@code yellow-tripdata} aliases, so each index stops growing
+ * once its month is loaded and can be force-merged and made read-only.
+ * Document IDs come from {@link DocumentIds}, so indexing a trip again overwrites it, and
+ * documents serialize themselves as {@link TripDocument}s without intermediate maps.
+ * As a {@link TripSink}, batches are acknowledged once their bulk request succeeded.
  */
-public class IndexingService {
+public class IndexingService implements TripSink {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(IndexingService.class);
+    
+    /**
+     * Suffix of the monthly trip indices, e.g. {@code green-tripdata-2024.01}.
+     */
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy.MM");
+    
+    /**
+     * Read alias over all monthly green trip indices.
+     */
+    public static final String GREEN_ALIAS = "green-tripdata";
+    
+    /**
+     * Read alias over all monthly yellow trip indices.
+     */
+    public static final String YELLOW_ALIAS = "yellow-tripdata";
     
     private final OpenSearchClient client;
+    private final BulkIngester bulkIngester;
+    private final BulkLoadMode bulkLoadMode;
+    private final NodeSniffer nodeSniffer;
+    private final DeadLetterWriter deadLetterWriter;
     private final String host;
     private final int port;
     private final boolean useTls;
     private final String username;
     private final String password;
+    private final TripRouting routing;
+    private final TaxiZoneCentroids zoneCentroids;
+    private final int greenShards;
+    private final int yellowShards;
+    private final boolean lifecyclePolicyEnabled;
+    private final String readOnlyAfter;
+    private final Set<String> readyIndices = ConcurrentHashMap.newKeySet();
+    private volatile boolean templatesInstalled;
+    private final ReentrantLock templatesLock = new ReentrantLock();
     
     /**
      * Builder class for creating IndexingService instances.
@@ -55,6 +108,27 @@ public class IndexingService {
         private String password;
         private String certPath;
         private boolean trustAllCerts = false;
+        private int bulkMaxOperations = 20000;
+        private long bulkMaxBytes = 10L * 1024 * 1024;
+        private long bulkFlushIntervalMillis = 1000;
+        private int bulkMaxConcurrentRequests = 2;
+        private BulkIngester.Listener bulkListener = new BulkIngester.Listener() { };
+        private String deadLetterFile;
+        private long greenMonthlyDocuments = 1_000_000;
+        private long yellowMonthlyDocuments = 4_000_000;
+        private long shardTargetDocuments = 50_000_000;
+        private boolean lifecyclePolicyEnabled = false;
+        private String readOnlyAfter = "30d";
+        private String bulkLoadStateFile = "./data/state/bulk-load-state.properties";
+        private List<String> hosts = List.of();
+        private boolean compression = true;
+        private int maxConnections = RestClientBuilder.DEFAULT_MAX_CONN_TOTAL;
+        private int maxConnectionsPerRoute = RestClientBuilder.DEFAULT_MAX_CONN_PER_ROUTE;
+        private long keepAliveMillis = 60_000;
+        private long sniffIntervalMillis = 0;
+        private TripRouting routing = new TripRouting(TripRouting.Strategy.NONE, null);
+        private int routingShards = 4;
+        private TaxiZoneCentroids zoneCentroids;
         
         /**
          * Sets the OpenSearch host.
@@ -78,6 +152,88 @@ public class IndexingService {
             return this;
         }
         
+        /**
+         * Sets several OpenSearch nodes to spread requests over round-robin, replacing
+         * {@link #host(String)} and {@link #port(int)}.
+         *
+         * @param hosts nodes as {@code host} or {@code host:port}; the port defaults to {@link #port(int)}
+         * @return this builder
+         */
+        public Builder hosts(List<String> hosts) {
+            this.hosts = hosts == null ? List.of() : hosts;
+            return this;
+        }
+        
+        /**
+         * Enables gzip compression of request bodies and of responses.
+         *
+         * @param compression true to compress
+         * @return this builder
+         */
+        public Builder compression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+        
+        /**
+         * Sizes the HTTP connection pool.
+         *
+         * @param maxConnections connections over all nodes
+         * @param maxConnectionsPerRoute connections per node
+         * @return this builder
+         */
+        public Builder connectionPool(int maxConnections, int maxConnectionsPerRoute) {
+            this.maxConnections = maxConnections;
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+        
+        /**
+         * Sets how long an idle pooled connection is kept open.
+         *
+         * @param keepAliveMillis keep-alive in milliseconds
+         * @return this builder
+         */
+        public Builder keepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+            return this;
+        }
+        
+        /**
+         * Enables sniffing of the cluster's nodes.
+         *
+         * @param sniffIntervalMillis time between two sniffs in milliseconds, 0 to use the configured hosts only
+         * @return this builder
+         */
+        public Builder sniffIntervalMillis(long sniffIntervalMillis) {
+            this.sniffIntervalMillis = sniffIntervalMillis;
+            return this;
+        }
+        
+        /**
+         * Sets the custom routing of trip documents.
+         *
+         * @param routing routing strategy
+         * @param routingShards lowest shard count of a monthly index while routing is on
+         * @return this builder
+         */
+        public Builder routing(TripRouting routing, int routingShards) {
+            this.routing = routing;
+            this.routingShards = routingShards;
+            return this;
+        }
+        
+        /**
+         * Sets the taxi zone lookup used to add pickup and dropoff geo points to trip documents.
+         *
+         * @param zoneCentroids zone lookup, or null for no geo points
+         * @return this builder
+         */
+        public Builder zoneCentroids(TaxiZoneCentroids zoneCentroids) {
+            this.zoneCentroids = zoneCentroids;
+            return this;
+        }
+        
         /**
          * Enables or disables TLS.
          *
@@ -124,6 +280,104 @@ public class IndexingService {
             return this;
         }
         
+        /**
+         * Sets the thresholds at which buffered documents are sent as a bulk request.
+         *
+         * @param maxOperations documents per bulk request
+         * @param maxBytes estimated bytes per bulk request
+         * @param flushIntervalMillis longest time a document waits in the buffer
+         * @return this builder
+         */
+        public Builder bulkFlush(int maxOperations, long maxBytes, long flushIntervalMillis) {
+            this.bulkMaxOperations = maxOperations;
+            this.bulkMaxBytes = maxBytes;
+            this.bulkFlushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+        
+        /**
+         * Sets the number of bulk requests allowed in flight at once.
+         *
+         * @param maxConcurrentRequests concurrent bulk requests
+         * @return this builder
+         */
+        public Builder bulkMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.bulkMaxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+        
+        /**
+         * Sets the listener notified of every bulk request, e.g. for metrics.
+         *
+         * @param listener bulk listener
+         * @return this builder
+         */
+        public Builder bulkListener(BulkIngester.Listener listener) {
+            this.bulkListener = listener;
+            return this;
+        }
+        
+        /**
+         * Sets the NDJSON file receiving documents OpenSearch refused for good.
+         *
+         * @param deadLetterFile dead-letter file path, null to fail batches with refused documents
+         * @return this builder
+         */
+        public Builder deadLetterFile(String deadLetterFile) {
+            this.deadLetterFile = deadLetterFile;
+            return this;
+        }
+        
+        /**
+         * Sets the expected documents per month, from which the shards of each monthly index
+         * are derived.
+         *
+         * @param green expected green trips per month
+         * @param yellow expected yellow trips per month
+         * @return this builder
+         */
+        public Builder expectedMonthlyDocuments(long green, long yellow) {
+            this.greenMonthlyDocuments = green;
+            this.yellowMonthlyDocuments = yellow;
+            return this;
+        }
+        
+        /**
+         * Sets the documents a single shard should hold at most.
+         *
+         * @param shardTargetDocuments documents per shard
+         * @return this builder
+         */
+        public Builder shardTargetDocuments(long shardTargetDocuments) {
+            this.shardTargetDocuments = shardTargetDocuments;
+            return this;
+        }
+        
+        /**
+         * Configures the Index State Management policy attached to new monthly indices. Disabled
+         * by default: late or replayed trips for a month made read-only are refused.
+         *
+         * @param enabled whether to install the policy
+         * @param readOnlyAfter index age after which an index is force-merged and made read-only, e.g. {@code 30d}
+         * @return this builder
+         */
+        public Builder lifecyclePolicy(boolean enabled, String readOnlyAfter) {
+            this.lifecyclePolicyEnabled = enabled;
+            this.readOnlyAfter = readOnlyAfter;
+            return this;
+        }
+        
+        /**
+         * Sets the file holding the original index settings while bulk load mode is active.
+         *
+         * @param bulkLoadStateFile state file path
+         * @return this builder
+         */
+        public Builder bulkLoadStateFile(String bulkLoadStateFile) {
+            this.bulkLoadStateFile = bulkLoadStateFile;
+            return this;
+        }
+        
         /**
          * Builds the IndexingService instance.
          *
@@ -150,43 +404,73 @@ public class IndexingService {
         this.useTls = builder.useTls;
         this.username = builder.username;
         this.password = builder.password;
+        this.routing = builder.routing;
+        this.zoneCentroids = builder.zoneCentroids;
+        // Routing only narrows searches and bulk fan-out when there are shards to choose from
+        int minShards = routing.getStrategy() == TripRouting.Strategy.NONE ? 1 : builder.routingShards;
+        this.greenShards = Math.max(minShards, shardsFor(builder.greenMonthlyDocuments, builder.shardTargetDocuments));
+        this.yellowShards = Math.max(minShards, shardsFor(builder.yellowMonthlyDocuments, builder.shardTargetDocuments));
+        this.lifecyclePolicyEnabled = builder.lifecyclePolicyEnabled;
+        this.readOnlyAfter = builder.readOnlyAfter;
         this.client = createClient(builder);
+        this.deadLetterWriter = builder.deadLetterFile == null || builder.deadLetterFile.isEmpty() ? null
+                : new DeadLetterWriter(Paths.get(builder.deadLetterFile), client._transport().jsonpMapper());
+        this.bulkIngester = BulkIngester.builder()
+                .client(new OpenSearchAsyncClient(client._transport()))
+                .maxOperations(builder.bulkMaxOperations)
+                .maxBytes(builder.bulkMaxBytes)
+                .flushIntervalMillis(builder.bulkFlushIntervalMillis)
+                .maxConcurrentRequests(builder.bulkMaxConcurrentRequests)
+                .listener(BulkIngester.Listener.of(builder.bulkListener, readyIndexInvalidator()))
+                .deadLetters(deadLetterWriter)
+                .build();
+        this.bulkLoadMode = new BulkLoadMode(((RestClientTransport) client._transport()).restClient(),
+                client._transport().jsonpMapper(), Paths.get(builder.bulkLoadStateFile),
+                GREEN_ALIAS + "-*," + YELLOW_ALIAS + "-*");
+        this.nodeSniffer = builder.sniffIntervalMillis <= 0 ? null
+                : new NodeSniffer(((RestClientTransport) client._transport()).restClient(),
+                        client._transport().jsonpMapper(), builder.useTls ? "https" : "http",
+                        builder.sniffIntervalMillis);
     }
     
     /**
-     * Creates the OpenSearch client with optional TLS support.
+     * Creates the OpenSearch client with optional TLS support, over one or more nodes, with a
+     * sized connection pool, keep-alive and optional gzip compression.
      */
     private OpenSearchClient createClient(Builder builder) throws Exception {
         String scheme = builder.useTls ? "https" : "http";
-        HttpHost httpHost = new HttpHost(builder.host, builder.port, scheme);
         
-        RestClientBuilder restClientBuilder = RestClient.builder(httpHost);
+        RestClientBuilder restClientBuilder = RestClient.builder(httpHosts(builder, scheme))
+            .setCompressionEnabled(builder.compression);
         
         // Configure authentication if credentials are provided
+        CredentialsProvider credentialsProvider = null;
         if (builder.username != null && builder.password != null) {
-            CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            credentialsProvider = new BasicCredentialsProvider();
             credentialsProvider.setCredentials(
                 AuthScope.ANY,
                 new UsernamePasswordCredentials(builder.username, builder.password)
             );
+        }
+        
+        CredentialsProvider credentials = credentialsProvider;
+        restClientBuilder.setHttpClientConfigCallback(httpClientBuilder -> {
+            if (credentials != null) {
+                httpClientBuilder.setDefaultCredentialsProvider(credentials);
+            }
             
-            restClientBuilder.setHttpClientConfigCallback(httpClientBuilder -> {
-                httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
-                
-                // Configure TLS if enabled
-                if (builder.useTls) {
-                    configureTls(httpClientBuilder, builder);
-                }
-                
-                return httpClientBuilder;
-            });
-        } else if (builder.useTls) {
-            // Configure TLS even without authentication
-            restClientBuilder.setHttpClientConfigCallback(httpClientBuilder -> {
+            // Configure TLS if enabled
+            if (builder.useTls) {
                 configureTls(httpClientBuilder, builder);
-                return httpClientBuilder;
-            });
-        }
+            }
+            
+            // Reuse connections across bulk requests instead of reconnecting
+            httpClientBuilder.setMaxConnTotal(builder.maxConnections);
+            httpClientBuilder.setMaxConnPerRoute(builder.maxConnectionsPerRoute);
+            httpClientBuilder.setKeepAliveStrategy((response, context) -> builder.keepAliveMillis);
+            
+            return httpClientBuilder;
+        });
         
         RestClient restClient = restClientBuilder.build();
         RestClientTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
@@ -194,6 +478,24 @@ public class IndexingService {
         return new OpenSearchClient(transport);
     }
     
+    /**
+     * Gets the configured nodes, or the single host and port.
+     */
+    private static HttpHost[] httpHosts(Builder builder, String scheme) {
+        if (builder.hosts.isEmpty()) {
+            return new HttpHost[] {new HttpHost(builder.host, builder.port, scheme)};
+        }
+        HttpHost[] httpHosts = new HttpHost[builder.hosts.size()];
+        for (int i = 0; i < httpHosts.length; i++) {
+            String node = builder.hosts.get(i).trim();
+            int colon = node.lastIndexOf(':');
+            httpHosts[i] = colon > 0
+                ? new HttpHost(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)), scheme)
+                : new HttpHost(node, builder.port, scheme);
+        }
+        return httpHosts;
+    }
+    
     /**
      * Configures TLS/SSL for the HTTP client.
      */
@@ -281,6 +583,15 @@ public class IndexingService {
         return port;
     }
     
+    /**
+     * Gets the bulk ingester shared by all indexing calls.
+     *
+     * @return bulk ingester
+     */
+    public BulkIngester getBulkIngester() {
+        return bulkIngester;
+    }
+    
     /**
      * Checks if TLS is enabled.
      *
@@ -295,12 +606,30 @@ public class IndexingService {
      *
      * @throws Exception if closing fails
      */
+    @Override
     public void close() throws Exception {
+        if (nodeSniffer != null) {
+            nodeSniffer.close();
+        }
+        bulkIngester.close();
+        if (deadLetterWriter != null) {
+            deadLetterWriter.close();
+        }
         if (client != null) {
             client._transport().close();
         }
     }
     
+    /**
+     * Gets the routing of trip documents, whose search helpers scope queries to a pickup zone
+     * or borough on the matching shards.
+     *
+     * @return trip routing
+     */
+    public TripRouting getRouting() {
+        return routing;
+    }
+    
     /**
      * Checks if the OpenSearch cluster is healthy.
      *
@@ -316,201 +645,301 @@ public class IndexingService {
     }
     
     /**
-     * Indexes a batch of green tripdata records to OpenSearch.
+     * Indexes a batch of green tripdata records to OpenSearch and waits until they are acknowledged.
      *
      * @param trips list of green tripdata records to index
      * @throws Exception if indexing fails
      */
     public void indexGreenTrips(List<GreenTripdata> trips) throws Exception {
+        CompletableFuture<Void> done = submitGreenTrips(trips);
+        bulkIngester.flush();
+        await(done);
+    }
+    
+    /**
+     * Queues a batch of green tripdata records for bulk indexing.
+     *
+     * @param trips list of green tripdata records to index
+     * @return completes when the records are acknowledged, exceptionally if their bulk request failed
+     * @throws Exception if the index cannot be prepared or the caller is interrupted
+     */
+    public CompletableFuture<Void> submitGreenTrips(List<GreenTripdata> trips) throws Exception {
         if (trips == null || trips.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         
-        String indexName = "green-tripdata";
-        ensureIndexExists(indexName);
-        
-        List<BulkOperation> bulkOperations = new ArrayList<>();
+        List<BulkOperation> bulkOperations = new ArrayList<>(trips.size());
+        Set<String> checked = new HashSet<>();
+        long bytes = 0;
         
         for (GreenTripdata trip : trips) {
-            Map<String, Object> doc = convertGreenTripdataToMap(trip);
-            
-            IndexOperation.Builder<Map<String, Object>> indexOp = new IndexOperation.Builder<Map<String, Object>>()
-                .index(indexName)
-                .document(doc)
-                .id(UUID.randomUUID().toString());
-            
-            bulkOperations.add(new BulkOperation.Builder()
-                .index(indexOp.build())
-                .build());
+            String indexName = monthlyIndex(GREEN_ALIAS, trip.getLpepPickupDatetime());
+            if (checked.add(indexName)) {
+                ensureIndexExists(indexName, greenShards);
+            }
+            TripDocument doc = TripDocument.green(trip, zoneCentroids);
+            String id = DocumentIds.green(trip);
+            String routingValue = routing.route(trip.getPuLocationId());
+            bytes += BulkSizeEstimator.estimate(indexName, id, routingValue, doc);
+            bulkOperations.add(indexOperation(indexName, id, routingValue, doc));
         }
         
-        BulkRequest bulkRequest = new BulkRequest.Builder()
-            .operations(bulkOperations)
-            .build();
-        
-        client.bulk(bulkRequest);
+        return bulkIngester.add(bulkOperations, bytes);
     }
     
     /**
-     * Indexes a batch of yellow tripdata records to OpenSearch.
+     * Indexes a batch of yellow tripdata records to OpenSearch and waits until they are acknowledged.
      *
      * @param trips list of yellow tripdata records to index
      * @throws Exception if indexing fails
      */
     public void indexYellowTrips(List<YellowTripdata> trips) throws Exception {
+        CompletableFuture<Void> done = submitYellowTrips(trips);
+        bulkIngester.flush();
+        await(done);
+    }
+    
+    /**
+     * Queues a batch of yellow tripdata records for bulk indexing.
+     *
+     * @param trips list of yellow tripdata records to index
+     * @return completes when the records are acknowledged, exceptionally if their bulk request failed
+     * @throws Exception if the index cannot be prepared or the caller is interrupted
+     */
+    public CompletableFuture<Void> submitYellowTrips(List<YellowTripdata> trips) throws Exception {
         if (trips == null || trips.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         
-        String indexName = "yellow-tripdata";
-        ensureIndexExists(indexName);
-        
-        List<BulkOperation> bulkOperations = new ArrayList<>();
+        List<BulkOperation> bulkOperations = new ArrayList<>(trips.size());
+        Set<String> checked = new HashSet<>();
+        long bytes = 0;
         
         for (YellowTripdata trip : trips) {
-            Map<String, Object> doc = convertYellowTripdataToMap(trip);
-            
-            IndexOperation.Builder<Map<String, Object>> indexOp = new IndexOperation.Builder<Map<String, Object>>()
-                .index(indexName)
-                .document(doc)
-                .id(UUID.randomUUID().toString());
-            
-            bulkOperations.add(new BulkOperation.Builder()
-                .index(indexOp.build())
-                .build());
+            String indexName = monthlyIndex(YELLOW_ALIAS, trip.getTpepPickupDatetime());
+            if (checked.add(indexName)) {
+                ensureIndexExists(indexName, yellowShards);
+            }
+            TripDocument doc = TripDocument.yellow(trip, zoneCentroids);
+            String id = DocumentIds.yellow(trip);
+            String routingValue = routing.route(trip.getPuLocationId());
+            bytes += BulkSizeEstimator.estimate(indexName, id, routingValue, doc);
+            bulkOperations.add(indexOperation(indexName, id, routingValue, doc));
         }
         
-        BulkRequest bulkRequest = new BulkRequest.Builder()
-            .operations(bulkOperations)
-            .build();
+        return bulkIngester.add(bulkOperations, bytes);
+    }
+    
+    /**
+     * Switches the trip indices to bulk-load settings (no refresh, no replicas, asynchronous
+     * translog) until {@link #endBulkLoad()}; monthly indices created meanwhile are switched too.
+     * Documents indexed in this mode become searchable only when it ends.
+     *
+     * @throws Exception if the settings cannot be recorded or changed
+     */
+    public void beginBulkLoad() throws Exception {
+        ensureTemplatesInstalled();
+        bulkLoadMode.begin();
+    }
+    
+    /**
+     * Restores the settings the indices had before {@link #beginBulkLoad()}, refreshes them and
+     * starts a force-merge. Call once every document of the load is acknowledged.
+     *
+     * @throws Exception if the settings cannot be restored; they stay recorded for {@link #restoreBulkLoad()}
+     */
+    public void endBulkLoad() throws Exception {
+        bulkLoadMode.end();
+    }
+    
+    /**
+     * Checks whether a bulk load left settings to restore, e.g. because the process died during it.
+     *
+     * @return true if original settings are recorded
+     */
+    public boolean isBulkLoadPending() {
+        return bulkLoadMode.isPending();
+    }
+    
+    /**
+     * Restores settings recorded by an interrupted bulk load, without force-merging.
+     *
+     * @throws Exception if the settings cannot be restored
+     */
+    public void restoreBulkLoad() throws Exception {
+        bulkLoadMode.restore();
+    }
+    
+    @Override
+    public String name() {
+        return "opensearch";
+    }
+    
+    /**
+     * Writes are merged by the shared bulk ingester, acknowledged when their bulk request
+     * completes, and idempotent thanks to deterministic document IDs.
+     */
+    @Override
+    public Set<Capability> capabilities() {
+        return EnumSet.of(Capability.CONCURRENT_WRITES, Capability.ASYNC_ACKNOWLEDGEMENT,
+                Capability.IDEMPOTENT_WRITES);
+    }
+    
+    @Override
+    public CompletionStage<Void> writeGreen(List<GreenTripdata> trips) throws Exception {
+        return submitGreenTrips(trips);
+    }
+    
+    @Override
+    public CompletionStage<Void> writeYellow(List<YellowTripdata> trips) throws Exception {
+        return submitYellowTrips(trips);
+    }
+    
+    /**
+     * Sends buffered documents now instead of waiting for a flush threshold.
+     *
+     * @throws InterruptedException if interrupted while waiting for an in-flight slot
+     */
+    @Override
+    public void flush() throws InterruptedException {
+        bulkIngester.flush();
+    }
+    
+    /**
+     * Waits for a submitted batch, rethrowing the bulk failure.
+     *
+     * @param done future returned by a submit method
+     * @throws Exception the bulk request failure
+     */
+    public static void await(CompletableFuture<Void> done) throws Exception {
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+    
+    private static BulkOperation indexOperation(String indexName, String id, String routing, TripDocument doc) {
+        IndexOperation.Builder<TripDocument> indexOp = new IndexOperation.Builder<TripDocument>()
+            .index(indexName)
+            .document(doc)
+            .id(id)
+            .routing(routing);
         
-        client.bulk(bulkRequest);
+        return new BulkOperation.Builder()
+            .index(indexOp.build())
+            .build();
+    }
+    
+    /**
+     * Gets the monthly index a trip belongs to, by pickup month. Trips without a pickup time go
+     * to {@code <alias>-undated}.
+     *
+     * @param alias read alias of the trip type
+     * @param pickup pickup time, may be null
+     * @return index name
+     */
+    public static String monthlyIndex(String alias, LocalDateTime pickup) {
+        return alias + "-" + (pickup == null ? "undated" : MONTH.format(pickup));
+    }
+    
+    /**
+     * Gets the number of shards for an index expected to hold the given documents.
+     *
+     * @param expectedDocuments expected documents in the index
+     * @param targetDocuments documents a shard should hold at most
+     * @return shards, at least 1
+     */
+    public static int shardsFor(long expectedDocuments, long targetDocuments) {
+        if (expectedDocuments <= 0 || targetDocuments <= 0) {
+            return 1;
+        }
+        return (int) Math.max(1, (expectedDocuments + targetDocuments - 1) / targetDocuments);
     }
     
     /**
      * Ensures that an index exists in OpenSearch with proper mappings.
+     * The index templates are installed before the first index is created, so new indices
+     * take their mappings, read alias and lifecycle policy from {@link IndexTemplates}; only
+     * the shard count is set per index. Indices known to exist are remembered, so the bulk path
+     * checks each index once instead of once per batch; a bulk item failing with
+     * {@code index_not_found_exception} makes the next batch check its index again.
+     * If the check fails the index is not remembered and the bulk request proceeds, relying
+     * on the cluster to create the index; callers check each index once per batch, so a failing
+     * check costs one request per batch rather than one per trip.
      *
      * @param indexName name of the index
-     * @throws Exception if index creation fails
+     * @param shards number of primary shards for a new index
      */
-    private void ensureIndexExists(String indexName) throws Exception {
+    private void ensureIndexExists(String indexName, int shards) {
+        if (readyIndices.contains(indexName)) {
+            return;
+        }
         try {
+            ensureTemplatesInstalled();
             boolean exists = client.indices().exists(e -> e.index(indexName)).value();
             if (!exists) {
-                if (indexName.equals("green-tripdata")) {
-                    createGreenTripdataIndex(indexName);
-                } else if (indexName.equals("yellow-tripdata")) {
-                    createYellowTripdataIndex(indexName);
-                } else {
-                    // Default index creation for unknown types
-                    client.indices().create(c -> c.index(indexName));
-                }
+                client.indices().create(c -> c
+                    .index(indexName)
+                    .settings(s -> s.numberOfShards(String.valueOf(shards)))
+                );
+                bulkLoadMode.include(indexName);
+            }
+            readyIndices.add(indexName);
+        } catch (OpenSearchException e) {
+            if ("resource_already_exists_exception".equals(e.error().type())) {
+                // Created concurrently by another writer or instance
+                readyIndices.add(indexName);
+            } else {
+                LOG.warn("Could not prepare index " + indexName + ": " + e.getMessage());
             }
         } catch (Exception e) {
-            // Index might already exist, ignore
+            LOG.warn("Could not prepare index " + indexName + ": " + e.getMessage());
         }
     }
     
     /**
-     * Creates the green tripdata index.
-     * OpenSearch will auto-detect field types from the first document indexed.
-     *
-     * @param indexName name of the index
-     * @throws Exception if index creation fails
+     * Forgets indices that a bulk request reported missing, e.g. deleted while indexing.
      */
-    private void createGreenTripdataIndex(String indexName) throws Exception {
-        // Create index with basic settings
-        // Field mappings will be auto-detected from the first document
-        client.indices().create(c -> c
-            .index(indexName)
-            .settings(s -> s
-                .numberOfShards("1")
-                .numberOfReplicas("0")
-            )
-        );
+    private BulkIngester.Listener readyIndexInvalidator() {
+        return new BulkIngester.Listener() {
+            @Override
+            public void afterBulk(long executionId, int operations, BulkResponse response, long tookNanos) {
+                if (!response.errors()) {
+                    return;
+                }
+                for (BulkResponseItem item : response.items()) {
+                    if (item.error() != null && "index_not_found_exception".equals(item.error().type())) {
+                        readyIndices.remove(item.index());
+                    }
+                }
+            }
+        };
     }
     
     /**
-     * Creates the yellow tripdata index.
-     * OpenSearch will auto-detect field types from the first document indexed.
+     * Installs the index templates once per service. A failed install is retried on the next
+     * index check.
      *
-     * @param indexName name of the index
-     * @throws Exception if index creation fails
+     * @throws Exception if a template is refused
      */
-    private void createYellowTripdataIndex(String indexName) throws Exception {
-        // Create index with basic settings
-        // Field mappings will be auto-detected from the first document
-        client.indices().create(c -> c
-            .index(indexName)
-            .settings(s -> s
-                .numberOfShards("1")
-                .numberOfReplicas("0")
-            )
-        );
-    }
-    
-    /**
-     * Converts a GreenTripdata object to a Map for indexing.
-     *
-     * @param trip green tripdata object
-     * @return map representation
-     */
-    private Map<String, Object> convertGreenTripdataToMap(GreenTripdata trip) {
-        Map<String, Object> doc = new HashMap<>();
-        
-        if (trip.getVendorId() != null) doc.put("vendorId", trip.getVendorId());
-        if (trip.getLpepPickupDatetime() != null) doc.put("lpepPickupDatetime", trip.getLpepPickupDatetime().toString());
-        if (trip.getLpepDropoffDatetime() != null) doc.put("lpepDropoffDatetime", trip.getLpepDropoffDatetime().toString());
-        if (trip.getStoreAndFwdFlag() != null) doc.put("storeAndFwdFlag", trip.getStoreAndFwdFlag());
-        if (trip.getRatecodeId() != null) doc.put("ratecodeId", trip.getRatecodeId());
-        if (trip.getPuLocationId() != null) doc.put("puLocationId", trip.getPuLocationId());
-        if (trip.getDoLocationId() != null) doc.put("doLocationId", trip.getDoLocationId());
-        if (trip.getPassengerCount() != null) doc.put("passengerCount", trip.getPassengerCount());
-        if (trip.getTripDistance() != null) doc.put("tripDistance", trip.getTripDistance());
-        if (trip.getFareAmount() != null) doc.put("fareAmount", trip.getFareAmount());
-        if (trip.getExtra() != null) doc.put("extra", trip.getExtra());
-        if (trip.getMtaTax() != null) doc.put("mtaTax", trip.getMtaTax());
-        if (trip.getTipAmount() != null) doc.put("tipAmount", trip.getTipAmount());
-        if (trip.getTollsAmount() != null) doc.put("tollsAmount", trip.getTollsAmount());
-        if (trip.getEhailFee() != null) doc.put("ehailFee", trip.getEhailFee());
-        if (trip.getImprovementSurcharge() != null) doc.put("improvementSurcharge", trip.getImprovementSurcharge());
-        if (trip.getTotalAmount() != null) doc.put("totalAmount", trip.getTotalAmount());
-        if (trip.getPaymentType() != null) doc.put("paymentType", trip.getPaymentType());
-        if (trip.getTripType() != null) doc.put("tripType", trip.getTripType());
-        if (trip.getCongestionSurcharge() != null) doc.put("congestionSurcharge", trip.getCongestionSurcharge());
-        
-        return doc;
-    }
-    
-    /**
-     * Converts a YellowTripdata object to a Map for indexing.
-     *
-     * @param trip yellow tripdata object
-     * @return map representation
-     */
-    private Map<String, Object> convertYellowTripdataToMap(YellowTripdata trip) {
-        Map<String, Object> doc = new HashMap<>();
-        
-        if (trip.getVendorId() != null) doc.put("vendorId", trip.getVendorId());
-        if (trip.getTpepPickupDatetime() != null) doc.put("tpepPickupDatetime", trip.getTpepPickupDatetime().toString());
-        if (trip.getTpepDropoffDatetime() != null) doc.put("tpepDropoffDatetime", trip.getTpepDropoffDatetime().toString());
-        if (trip.getPassengerCount() != null) doc.put("passengerCount", trip.getPassengerCount());
-        if (trip.getTripDistance() != null) doc.put("tripDistance", trip.getTripDistance());
-        if (trip.getRatecodeId() != null) doc.put("ratecodeId", trip.getRatecodeId());
-        if (trip.getStoreAndFwdFlag() != null) doc.put("storeAndFwdFlag", trip.getStoreAndFwdFlag());
-        if (trip.getPuLocationId() != null) doc.put("puLocationId", trip.getPuLocationId());
-        if (trip.getDoLocationId() != null) doc.put("doLocationId", trip.getDoLocationId());
-        if (trip.getPaymentType() != null) doc.put("paymentType", trip.getPaymentType());
-        if (trip.getFareAmount() != null) doc.put("fareAmount", trip.getFareAmount());
-        if (trip.getExtra() != null) doc.put("extra", trip.getExtra());
-        if (trip.getMtaTax() != null) doc.put("mtaTax", trip.getMtaTax());
-        if (trip.getTipAmount() != null) doc.put("tipAmount", trip.getTipAmount());
-        if (trip.getTollsAmount() != null) doc.put("tollsAmount", trip.getTollsAmount());
-        if (trip.getImprovementSurcharge() != null) doc.put("improvementSurcharge", trip.getImprovementSurcharge());
-        if (trip.getTotalAmount() != null) doc.put("totalAmount", trip.getTotalAmount());
-        if (trip.getCongestionSurcharge() != null) doc.put("congestionSurcharge", trip.getCongestionSurcharge());
-        
-        return doc;
+    private void ensureTemplatesInstalled() throws Exception {
+        if (templatesInstalled) {
+            return;
+        }
+        // A lock rather than synchronized, since the install blocks on HTTP from writer threads
+        templatesLock.lock();
+        try {
+            if (!templatesInstalled) {
+                RestClient restClient = ((RestClientTransport) client._transport()).restClient();
+                IndexTemplates.install(restClient);
+                if (lifecyclePolicyEnabled) {
+                    IndexTemplates.installLifecyclePolicy(restClient, readOnlyAfter);
+                }
+                templatesInstalled = true;
+            }
+        } finally {
+            templatesLock.unlock();
+        }
     }
 }
-
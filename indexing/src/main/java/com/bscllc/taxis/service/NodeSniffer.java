@@ -0,0 +1,126 @@
+package com.bscllc.taxis.service;
+
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
+import org.apache.http.HttpHost;
+import org.opensearch.client.Node;
+import org.opensearch.client.Request;
+import org.opensearch.client.Response;
+import org.opensearch.client.RestClient;
+import org.opensearch.client.json.JsonpMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the client's node list in step with the cluster: every interval the HTTP publish
+ * addresses of all nodes are read from {@code _nodes/http} and handed to
+ * {@link RestClient#setNodes}, so requests are spread round-robin over every node instead of
+ * the configured seed hosts only. If sniffing fails the current nodes are kept.
+ */
+public class NodeSniffer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NodeSniffer.class);
+
+    private final RestClient restClient;
+    private final JsonpMapper mapper;
+    private final String scheme;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Starts sniffing, the first time right away.
+     *
+     * @param restClient client whose nodes are replaced
+     * @param mapper mapper whose JSON provider parses responses
+     * @param scheme scheme of the sniffed nodes, {@code http} or {@code https}
+     * @param intervalMillis time between two sniffs
+     */
+    public NodeSniffer(RestClient restClient, JsonpMapper mapper, String scheme, long intervalMillis) {
+        this.restClient = restClient;
+        this.mapper = mapper;
+        this.scheme = scheme;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "OpenSearch-Sniffer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sniffQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void sniffQuietly() {
+        try {
+            List<Node> nodes = sniff();
+            if (!nodes.isEmpty()) {
+                restClient.setNodes(nodes);
+            }
+        } catch (Exception e) {
+            LOG.warn("Sniffing OpenSearch nodes failed, keeping " + restClient.getNodes().size() +
+                    " known nodes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the HTTP publish address of every node.
+     *
+     * @return nodes, empty if none publishes an HTTP address
+     * @throws IOException if the request fails
+     */
+    List<Node> sniff() throws IOException {
+        Request request = new Request("GET", "/_nodes/http");
+        request.addParameter("filter_path", "nodes.*.http.publish_address");
+        Response response = restClient.performRequest(request);
+        List<Node> nodes = new ArrayList<>();
+        try (InputStream body = response.getEntity().getContent();
+             JsonParser parser = mapper.jsonProvider().createParser(body)) {
+            parser.next();
+            JsonObject all = parser.getObject().getJsonObject("nodes");
+            if (all == null) {
+                return nodes;
+            }
+            for (JsonValue node : all.values()) {
+                JsonObject http = node.asJsonObject().getJsonObject("http");
+                if (http != null && http.containsKey("publish_address")) {
+                    nodes.add(new Node(toHost(http.getString("publish_address"))));
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Parses a publish address, {@code ip:port} or {@code hostname/ip:port}; the host name is
+     * preferred so TLS certificates still match.
+     */
+    HttpHost toHost(String publishAddress) {
+        String address = publishAddress;
+        String hostName = null;
+        int slash = address.indexOf('/');
+        if (slash >= 0) {
+            hostName = slash > 0 ? address.substring(0, slash) : null;
+            address = address.substring(slash + 1);
+        }
+        int colon = address.lastIndexOf(':');
+        String host = address.substring(0, colon);
+        int port = Integer.parseInt(address.substring(colon + 1));
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        return new HttpHost(hostName != null ? hostName : host, port, scheme);
+    }
+
+    /**
+     * Stops sniffing.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,271 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.model.GreenTripdata;
+import com.bscllc.taxis.model.YellowTripdata;
+import com.bscllc.taxis.util.TaxiZoneCentroids;
+import jakarta.json.stream.JsonGenerator;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.JsonpSerializable;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A trip as an OpenSearch document. The document writes its fields straight to the client's
+ * JSON generator while the bulk request body is serialized, so there is no intermediate map,
+ * no boxing beyond the model's own fields and no reflective walk by the mapper. Null fields
+ * are left out. The same field list drives the size estimate, so estimate and body always
+ * agree on which fields are present.
+ * <p>
+ * With a taxi zone lookup, the centroids of the pickup and dropoff zones are added as
+ * {@code pickupLocation}/{@code dropoffLocation} geo points, written as {@code [lon, lat]}
+ * arrays rounded to six decimals (about 10 cm, finer than the index keeps), so geo aggregations run on indexed points instead of looking zones up at query time.
+ */
+public abstract class TripDocument implements JsonpSerializable {
+
+    /**
+     * Always writes seconds, matching the {@code strict_date_optional_time} date mapping.
+     */
+    static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    /**
+     * Receives the fields of a document in order.
+     */
+    interface Fields {
+
+        void field(String name, Integer value);
+
+        void field(String name, Double value);
+
+        void field(String name, String value);
+
+        void field(String name, LocalDateTime value);
+
+        void geoPoint(String name, double longitude, double latitude);
+    }
+
+    private final TaxiZoneCentroids zones;
+
+    TripDocument(TaxiZoneCentroids zones) {
+        this.zones = zones;
+    }
+
+    /**
+     * Wraps a green trip.
+     *
+     * @param trip green trip
+     * @return document
+     */
+    public static TripDocument green(GreenTripdata trip) {
+        return green(trip, null);
+    }
+
+    /**
+     * Wraps a green trip, adding the centroids of its pickup and dropoff zones.
+     *
+     * @param trip green trip
+     * @param zones zone lookup, or null for no locations
+     * @return document
+     */
+    public static TripDocument green(GreenTripdata trip, TaxiZoneCentroids zones) {
+        return new Green(trip, zones);
+    }
+
+    /**
+     * Wraps a yellow trip.
+     *
+     * @param trip yellow trip
+     * @return document
+     */
+    public static TripDocument yellow(YellowTripdata trip) {
+        return yellow(trip, null);
+    }
+
+    /**
+     * Wraps a yellow trip, adding the centroids of its pickup and dropoff zones.
+     *
+     * @param trip yellow trip
+     * @param zones zone lookup, or null for no locations
+     * @return document
+     */
+    public static TripDocument yellow(YellowTripdata trip, TaxiZoneCentroids zones) {
+        return new Yellow(trip, zones);
+    }
+
+    /**
+     * Hands every field to the receiver.
+     *
+     * @param fields receiver
+     */
+    abstract void writeFields(Fields fields);
+
+    /**
+     * Hands the centroid of a zone to the receiver, if the zone is known.
+     */
+    void location(Fields fields, String name, Integer locationId) {
+        if (zones != null && zones.contains(locationId)) {
+            fields.geoPoint(name, Math.round(zones.longitude(locationId) * 1e6) / 1e6,
+                    Math.round(zones.latitude(locationId) * 1e6) / 1e6);
+        }
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, JsonpMapper mapper) {
+        generator.writeStartObject();
+        writeFields(new Fields() {
+            @Override
+            public void field(String name, Integer value) {
+                if (value != null) {
+                    generator.write(name, value.intValue());
+                }
+            }
+
+            @Override
+            public void field(String name, Double value) {
+                if (value != null) {
+                    generator.write(name, value.doubleValue());
+                }
+            }
+
+            @Override
+            public void field(String name, String value) {
+                if (value != null) {
+                    generator.write(name, value);
+                }
+            }
+
+            @Override
+            public void field(String name, LocalDateTime value) {
+                if (value != null) {
+                    generator.write(name, DATE_TIME.format(value));
+                }
+            }
+
+            @Override
+            public void geoPoint(String name, double longitude, double latitude) {
+                generator.writeStartArray(name).write(longitude).write(latitude).writeEnd();
+            }
+        });
+        generator.writeEnd();
+    }
+
+    /**
+     * Estimates the serialized size of the document, braces included.
+     *
+     * @return estimated bytes
+     */
+    public long estimateBytes() {
+        long[] bytes = {2};
+        int[] count = {0};
+        writeFields(new Fields() {
+            @Override
+            public void field(String name, Integer value) {
+                if (value != null) {
+                    add(name, BulkSizeEstimator.valueLength(value));
+                }
+            }
+
+            @Override
+            public void field(String name, Double value) {
+                if (value != null) {
+                    add(name, BulkSizeEstimator.valueLength(value));
+                }
+            }
+
+            @Override
+            public void field(String name, String value) {
+                if (value != null) {
+                    add(name, BulkSizeEstimator.valueLength(value));
+                }
+            }
+
+            @Override
+            public void field(String name, LocalDateTime value) {
+                if (value != null) {
+                    // "yyyy-MM-ddTHH:mm:ss" plus quotes, and a fraction when present
+                    add(name, value.getNano() == 0 ? 21 : 31);
+                }
+            }
+
+            @Override
+            public void geoPoint(String name, double longitude, double latitude) {
+                // [lon,lat]
+                add(name, BulkSizeEstimator.coordinateLength(longitude) + BulkSizeEstimator.coordinateLength(latitude) + 3);
+            }
+
+            private void add(String name, int valueLength) {
+                // "name": plus a comma after the first field
+                bytes[0] += name.length() + 3 + valueLength + (count[0]++ > 0 ? 1 : 0);
+            }
+        });
+        return bytes[0];
+    }
+
+    private static final class Green extends TripDocument {
+        private final GreenTripdata trip;
+
+        Green(GreenTripdata trip, TaxiZoneCentroids zones) {
+            super(zones);
+            this.trip = trip;
+        }
+
+        @Override
+        void writeFields(Fields fields) {
+            fields.field("vendorId", trip.getVendorId());
+            fields.field("lpepPickupDatetime", trip.getLpepPickupDatetime());
+            fields.field("lpepDropoffDatetime", trip.getLpepDropoffDatetime());
+            fields.field("storeAndFwdFlag", trip.getStoreAndFwdFlag());
+            fields.field("ratecodeId", trip.getRatecodeId());
+            fields.field("puLocationId", trip.getPuLocationId());
+            fields.field("doLocationId", trip.getDoLocationId());
+            fields.field("passengerCount", trip.getPassengerCount());
+            fields.field("tripDistance", trip.getTripDistance());
+            fields.field("fareAmount", trip.getFareAmount());
+            fields.field("extra", trip.getExtra());
+            fields.field("mtaTax", trip.getMtaTax());
+            fields.field("tipAmount", trip.getTipAmount());
+            fields.field("tollsAmount", trip.getTollsAmount());
+            fields.field("ehailFee", trip.getEhailFee());
+            fields.field("improvementSurcharge", trip.getImprovementSurcharge());
+            fields.field("totalAmount", trip.getTotalAmount());
+            fields.field("paymentType", trip.getPaymentType());
+            fields.field("tripType", trip.getTripType());
+            fields.field("congestionSurcharge", trip.getCongestionSurcharge());
+            location(fields, "pickupLocation", trip.getPuLocationId());
+            location(fields, "dropoffLocation", trip.getDoLocationId());
+        }
+    }
+
+    private static final class Yellow extends TripDocument {
+        private final YellowTripdata trip;
+
+        Yellow(YellowTripdata trip, TaxiZoneCentroids zones) {
+            super(zones);
+            this.trip = trip;
+        }
+
+        @Override
+        void writeFields(Fields fields) {
+            fields.field("vendorId", trip.getVendorId());
+            fields.field("tpepPickupDatetime", trip.getTpepPickupDatetime());
+            fields.field("tpepDropoffDatetime", trip.getTpepDropoffDatetime());
+            fields.field("passengerCount", trip.getPassengerCount());
+            fields.field("tripDistance", trip.getTripDistance());
+            fields.field("ratecodeId", trip.getRatecodeId());
+            fields.field("storeAndFwdFlag", trip.getStoreAndFwdFlag());
+            fields.field("puLocationId", trip.getPuLocationId());
+            fields.field("doLocationId", trip.getDoLocationId());
+            fields.field("paymentType", trip.getPaymentType());
+            fields.field("fareAmount", trip.getFareAmount());
+            fields.field("extra", trip.getExtra());
+            fields.field("mtaTax", trip.getMtaTax());
+            fields.field("tipAmount", trip.getTipAmount());
+            fields.field("tollsAmount", trip.getTollsAmount());
+            fields.field("improvementSurcharge", trip.getImprovementSurcharge());
+            fields.field("totalAmount", trip.getTotalAmount());
+            fields.field("congestionSurcharge", trip.getCongestionSurcharge());
+            location(fields, "pickupLocation", trip.getPuLocationId());
+            location(fields, "dropoffLocation", trip.getDoLocationId());
+        }
+    }
+}
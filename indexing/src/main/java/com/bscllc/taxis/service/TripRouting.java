@@ -0,0 +1,139 @@
+package com.bscllc.taxis.service;
+
+import com.bscllc.taxis.util.TaxiZoneCentroids;
+import org.opensearch.client.opensearch._types.FieldValue;
+import org.opensearch.client.opensearch.core.SearchRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Custom {@code _routing} of trip documents by pickup location, so that every trip of a
+ * pickup zone (or borough) lives on one shard of its monthly index. A query scoped to that zone
+ * or borough then searches one shard instead of all of them, and a bulk request of trips from
+ * few zones touches few shards. Trips without a known pickup location keep the default routing
+ * by {@code _id}.
+ * <p>
+ * The search helpers apply the routing that matches the strategy, so callers ask for a zone or a
+ * borough without knowing how documents were routed.
+ */
+public final class TripRouting {
+
+    /**
+     * Routing key of trip documents.
+     */
+    public enum Strategy {
+        NONE,
+        PICKUP_ZONE,
+        BOROUGH;
+
+        /**
+         * Parses a strategy name, case-insensitively.
+         *
+         * @param value strategy name
+         * @return strategy, {@link #NONE} if blank
+         */
+        public static Strategy fromString(String value) {
+            if (value == null || value.isBlank()) {
+                return NONE;
+            }
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final String PICKUP_FIELD = "puLocationId";
+
+    private final Strategy strategy;
+    private final TaxiZoneCentroids zones;
+
+    /**
+     * Creates a routing.
+     *
+     * @param strategy routing key
+     * @param zones zone lookup; required for {@link Strategy#BOROUGH} and for borough searches
+     */
+    public TripRouting(Strategy strategy, TaxiZoneCentroids zones) {
+        if (strategy == Strategy.BOROUGH && zones == null) {
+            throw new IllegalArgumentException("Borough routing requires taxi zone centroids");
+        }
+        this.strategy = strategy;
+        this.zones = zones;
+    }
+
+    /**
+     * Gets the routing strategy.
+     *
+     * @return strategy
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Gets the routing value of a trip picked up in the given zone.
+     *
+     * @param puLocationId pickup location ID, may be null
+     * @return routing value, or null for default routing
+     */
+    public String route(Integer puLocationId) {
+        if (puLocationId == null) {
+            return null;
+        }
+        return switch (strategy) {
+            case NONE -> null;
+            case PICKUP_ZONE -> puLocationId.toString();
+            case BOROUGH -> zones.contains(puLocationId) ? zones.borough(puLocationId) : null;
+        };
+    }
+
+    /**
+     * Starts a search for trips picked up in a zone: the index, the routing that reaches the
+     * zone's shard and a filter on the zone are set; queries, aggregations and size can be added.
+     *
+     * @param index index or alias, e.g. {@link IndexingService#YELLOW_ALIAS}
+     * @param puLocationId pickup location ID
+     * @return search request builder
+     */
+    public SearchRequest.Builder pickupZoneSearch(String index, int puLocationId) {
+        SearchRequest.Builder search = new SearchRequest.Builder().index(index);
+        String routing = route(puLocationId);
+        if (routing != null) {
+            search.routing(routing);
+        }
+        return search.query(q -> q.bool(b -> b.filter(f -> f.term(t -> t
+                .field(PICKUP_FIELD)
+                .value(FieldValue.of(puLocationId))))));
+    }
+
+    /**
+     * Starts a search for trips picked up anywhere in a borough: with borough routing it hits
+     * one shard, with zone routing only the shards of the borough's zones.
+     *
+     * @param index index or alias, e.g. {@link IndexingService#YELLOW_ALIAS}
+     * @param borough borough name as in the zone lookup, e.g. {@code Manhattan}
+     * @return search request builder
+     */
+    public SearchRequest.Builder pickupBoroughSearch(String index, String borough) {
+        if (zones == null) {
+            throw new IllegalStateException("Borough searches require taxi zone centroids");
+        }
+        List<Integer> zoneIds = new ArrayList<>();
+        for (int id = 0; id <= zones.maxLocationId(); id++) {
+            if (zones.contains(id) && borough.equalsIgnoreCase(zones.borough(id))) {
+                zoneIds.add(id);
+            }
+        }
+        SearchRequest.Builder search = new SearchRequest.Builder().index(index);
+        if (strategy == Strategy.BOROUGH && !zoneIds.isEmpty()) {
+            search.routing(zones.borough(zoneIds.get(0)));
+        } else if (strategy == Strategy.PICKUP_ZONE && !zoneIds.isEmpty()) {
+            search.routing(zoneIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        }
+        List<FieldValue> values = zoneIds.stream().map(id -> FieldValue.of(id)).toList();
+        return search.query(q -> q.bool(b -> b.filter(f -> f.terms(t -> t
+                .field(PICKUP_FIELD)
+                .terms(v -> v.value(values))))));
+    }
+}
@@ -0,0 +1,216 @@
+package com.bscllc.taxis.ingest;
+
+import com.bscllc.taxis.app.RateLimitedTripSink;
+import com.bscllc.taxis.app.RateLimiter;
+import com.bscllc.taxis.ingest.config.IngestConfig;
+import com.bscllc.taxis.service.DatabaseTripSink;
+import com.bscllc.taxis.service.IndexingService;
+import com.bscllc.taxis.service.ShardedDatabaseService;
+import com.bscllc.taxis.util.ExecutorMode;
+import com.bscllc.taxis.util.FanOutPipeline;
+import com.bscllc.taxis.util.Monitor;
+import com.bscllc.taxis.util.SinkProgress;
+import com.bscllc.taxis.util.TripFileProcessor;
+import com.bscllc.taxis.util.TripKind;
+import com.bscllc.taxis.util.TripSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Service for processing parquet files from the input directory into both PostgreSQL and
+ * OpenSearch. Each file is parsed once by a single monitor and fanned out to the database sink
+ * and the rate-limited OpenSearch sink; a file moves to the output directory only after both
+ * have acknowledged every chunk.
+ * <p>
+ * The sinks are acknowledged independently. When one fails, the sinks that stored the whole
+ * file are recorded before it moves to the error directory, and dropping the file again only
+ * writes to the others, so the database never gets its rows twice.
+ */
+@ApplicationScoped
+public class FileProcessingService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileProcessingService.class);
+
+    @Inject
+    IngestConfig ingestConfig;
+
+    @Inject
+    ShardedDatabaseService databaseService;
+
+    @Inject
+    IndexingService indexingService;
+
+    @Inject
+    RateLimiter rateLimiter;
+
+    @Inject
+    MetricsService metricsService;
+
+    private Monitor monitor;
+    private TripFileProcessor fileProcessor;
+    private FanOutPipeline pipeline;
+    private List<TripSink> sinks;
+    private SinkProgress progress;
+
+    @PostConstruct
+    void init() {
+        try {
+            // Moves each file to the output or error directory once processed
+            fileProcessor = TripFileProcessor.builder()
+                    .inputDirectory(ingestConfig.inputDirectory())
+                    .outputDirectory(ingestConfig.outputDirectory())
+                    .errorDirectory(ingestConfig.errorDirectory())
+                    .handler(this::processTrips)
+                    .onProcessed(file -> metricsService.incrementFilesProcessed())
+                    .onFailed(this::fileFailed)
+                    .build();
+
+            // Create directories if they don't exist
+            fileProcessor.createDirectories();
+
+            // Parse-to-write pipeline shared by all files and both sinks
+            pipeline = FanOutPipeline.builder()
+                    .name("Ingest")
+                    .queueCapacity(ingestConfig.queueCapacity())
+                    .writerThreads(ingestConfig.writerThreads())
+                    .executorMode(ExecutorMode.fromString(ingestConfig.executorMode()))
+                    .onAcknowledged((sink, records) -> {
+                        if (sink.equals(indexingService.name())) {
+                            metricsService.incrementRecordsIndexed(records);
+                        }
+                    })
+                    .build();
+            LOG.info("Ingest pipeline initialized - Chunk size: " + ingestConfig.chunkSize() +
+                    ", Queue capacity: " + ingestConfig.queueCapacity() +
+                    ", Writer threads: " + ingestConfig.writerThreads() +
+                    ", Executor mode: " + pipeline.getExecutorMode());
+
+            // One writer per shard, spooling locally while its node is down
+            DatabaseTripSink databaseSink = DatabaseTripSink.builder()
+                    .databaseService(databaseService)
+                    .spool(ingestConfig.spoolEnabled(), ingestConfig.spoolDirectory())
+                    .spoolBackoff(ingestConfig.spoolInitialBackoffMs(), ingestConfig.spoolMaxBackoffMs())
+                    .onSpoolCreated(metricsService::registerSpoolGauge)
+                    .onInserted(metricsService::incrementRecordsInserted)
+                    .onSpooled(metricsService::incrementChunksSpooled)
+                    .build();
+
+            // The rate limit applies to the OpenSearch writes only, so it never slows the database
+            sinks = List.of(databaseSink, new RateLimitedTripSink(indexingService, rateLimiter));
+            for (TripSink sink : sinks) {
+                sink.open();
+                LOG.info("Sink " + sink.name() + " opened - Capabilities: " + sink.capabilities());
+            }
+
+            progress = new SinkProgress(Paths.get(ingestConfig.stateFile()));
+            LOG.info("Sink progress of partially failed files kept in " + progress.getStateFile());
+
+            // Create and configure the monitor
+            monitor = Monitor.builder()
+                    .directory(ingestConfig.inputDirectory())
+                    .filePattern(".*\\.parquet$")
+                    .scanPeriod(ingestConfig.monitorPeriodMs())
+                    .onFileAdded(fileProcessor::process)
+                    .build();
+
+            // Start monitoring
+            monitor.start();
+            LOG.info("File processing service started. Monitoring directory: " + ingestConfig.inputDirectory());
+        } catch (Exception e) {
+            LOG.error("Failed to initialize file processing service", e);
+            throw new RuntimeException("Failed to initialize file processing service", e);
+        }
+    }
+
+    @PreDestroy
+    void cleanup() {
+        if (monitor != null && monitor.isRunning()) {
+            monitor.stop();
+            LOG.info("File processing service stopped");
+        }
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        if (sinks != null) {
+            for (TripSink sink : sinks) {
+                try {
+                    sink.close();
+                } catch (Exception e) {
+                    LOG.error("Error closing sink " + sink.name(), e);
+                }
+            }
+        }
+        if (databaseService != null) {
+            try {
+                databaseService.close();
+            } catch (SQLException e) {
+                LOG.error("Error closing database connection", e);
+            }
+        }
+    }
+
+    /**
+     * Processes a tripdata file, writing chunks to the sinks that have not completed it yet
+     * while the rest of the file is parsed. Returns once every chunk is acknowledged by every
+     * pending sink. If a sink fails, the sinks that completed are recorded before rethrowing.
+     */
+    private <T> void processTrips(Path filePath, TripKind<T> kind) throws Exception {
+        Set<String> completed = progress.completedSinks(filePath);
+        List<TripSink> pending = sinks.stream().filter(sink -> !completed.contains(sink.name())).toList();
+        if (!completed.isEmpty()) {
+            LOG.info("Skipping sinks that already stored " + filePath + ": " + completed);
+        }
+        if (!pending.isEmpty()) {
+            Map<String, Long> written;
+            try {
+                written = pipeline.run(
+                        kind.producer(filePath.toFile(), ingestConfig.chunkSize()),
+                        pending.stream().map(kind::sink).toList());
+            } catch (FanOutPipeline.SinkFailureException e) {
+                progress.recordCompleted(filePath, e.getCompletedSinks());
+                throw e;
+            }
+            for (Map.Entry<String, Long> entry : written.entrySet()) {
+                LOG.info("Wrote " + entry.getValue() + " " + kind + " trip records from " + filePath +
+                        " to " + entry.getKey());
+            }
+        }
+        progress.clear(filePath);
+    }
+
+    /**
+     * Counts a failed file. After a sink failure, the completed sinks are also recorded under
+     * the error file name, so the file can be dropped again under either name.
+     */
+    private void fileFailed(Path filePath, Path errorFile, Exception error) {
+        metricsService.incrementFilesErrored();
+        if (error instanceof FanOutPipeline.SinkFailureException sinkFailure && errorFile != null) {
+            try {
+                progress.recordCompleted(errorFile, sinkFailure.getCompletedSinks());
+            } catch (IOException e) {
+                LOG.error("Failed to record completed sinks of " + errorFile, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the monitor instance.
+     *
+     * @return monitor instance
+     */
+    public Monitor getMonitor() {
+        return monitor;
+    }
+}
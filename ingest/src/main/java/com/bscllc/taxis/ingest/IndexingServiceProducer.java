@@ -0,0 +1,166 @@
+package com.bscllc.taxis.ingest;
+
+import com.bscllc.taxis.app.AdaptiveRateController;
+import com.bscllc.taxis.app.RateLimiter;
+import com.bscllc.taxis.ingest.config.IngestIndexingConfig;
+import com.bscllc.taxis.ingest.config.IngestOpenSearchConfig;
+import com.bscllc.taxis.service.BulkIngester;
+import com.bscllc.taxis.service.IndexingService;
+import com.bscllc.taxis.service.TripRouting;
+import com.bscllc.taxis.util.TaxiZoneCentroids;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Producer for the IndexingService behind the OpenSearch sink and its rate limiter, configured
+ * from the indexing module's {@code taxis.indexing} and {@code taxis.opensearch} properties.
+ */
+@ApplicationScoped
+public class IndexingServiceProducer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexingServiceProducer.class);
+
+    @Inject
+    IngestOpenSearchConfig openSearchConfig;
+
+    @Inject
+    IngestIndexingConfig indexingConfig;
+
+    @Inject
+    MetricsService metricsService;
+
+    @Produces
+    @Singleton
+    public RateLimiter produceRateLimiter() {
+        RateLimiter rateLimiter = new RateLimiter(indexingConfig.rateLimitPerSecond(), indexingConfig.rateLimitBurst());
+        LOG.info("Rate limiter initialized: " + indexingConfig.rateLimitPerSecond() + " permits/second, burst " +
+                (indexingConfig.rateLimitBurst() > 0 ? indexingConfig.rateLimitBurst() : indexingConfig.rateLimitPerSecond()));
+        metricsService.registerRateLimiter(rateLimiter);
+        return rateLimiter;
+    }
+
+    void disposeRateLimiter(@Disposes RateLimiter rateLimiter) {
+        rateLimiter.shutdown();
+    }
+
+    @Produces
+    @Singleton
+    public IndexingService produceIndexingService(RateLimiter rateLimiter) {
+        try {
+            LOG.info("Creating IndexingService - Host: " + openSearchConfig.host() +
+                    ", Port: " + openSearchConfig.port() +
+                    ", TLS: " + openSearchConfig.useTls() +
+                    ", Compression: " + openSearchConfig.compression() +
+                    ", Pool: " + openSearchConfig.maxConnections() + "/" + openSearchConfig.maxConnectionsPerRoute() +
+                    openSearchConfig.hosts().map(hosts -> ", Hosts: " + hosts).orElse(""));
+
+            TaxiZoneCentroids zones = loadZoneCentroids();
+            IndexingService.Builder builder = IndexingService.builder()
+                    .host(openSearchConfig.host())
+                    .port(openSearchConfig.port())
+                    .useTls(openSearchConfig.useTls())
+                    .hosts(openSearchConfig.hosts().orElse(List.of()))
+                    .compression(openSearchConfig.compression())
+                    .connectionPool(openSearchConfig.maxConnections(), openSearchConfig.maxConnectionsPerRoute())
+                    .keepAliveMillis(openSearchConfig.keepAliveMs())
+                    .sniffIntervalMillis(openSearchConfig.sniffIntervalMs())
+                    .bulkFlush(indexingConfig.bulkMaxOperations(), indexingConfig.bulkMaxBytes(),
+                            indexingConfig.bulkFlushIntervalMs())
+                    .bulkMaxConcurrentRequests(indexingConfig.bulkMaxConcurrentRequests())
+                    .deadLetterFile(indexingConfig.deadLetterFile())
+                    .bulkLoadStateFile(indexingConfig.bulkLoadStateFile())
+                    .expectedMonthlyDocuments(indexingConfig.greenMonthlyDocuments(),
+                            indexingConfig.yellowMonthlyDocuments())
+                    .shardTargetDocuments(indexingConfig.shardTargetDocuments())
+                    .lifecyclePolicy(indexingConfig.lifecyclePolicyEnabled(), indexingConfig.lifecycleReadOnlyAfter())
+                    .routing(tripRouting(zones), indexingConfig.routingShards())
+                    .zoneCentroids(zones)
+                    .bulkListener(bulkListener(rateLimiter));
+
+            if (openSearchConfig.username() != null && openSearchConfig.password() != null) {
+                builder.credentials(openSearchConfig.username(), openSearchConfig.password());
+            }
+
+            if (openSearchConfig.useTls() && openSearchConfig.certPath().isPresent() &&
+                !openSearchConfig.certPath().get().isEmpty()) {
+                builder.certPath(openSearchConfig.certPath().get());
+            } else if (openSearchConfig.useTls()) {
+                builder.trustAllCerts(true);
+            }
+
+            IndexingService service = builder.build();
+            metricsService.registerBulkIngester(service.getBulkIngester());
+            LOG.info("IndexingService created successfully - Bulk: " + indexingConfig.bulkMaxOperations() +
+                    " docs / " + indexingConfig.bulkMaxBytes() + " bytes / " + indexingConfig.bulkFlushIntervalMs() +
+                    " ms, " + indexingConfig.bulkMaxConcurrentRequests() + " in flight");
+            return service;
+        } catch (Exception e) {
+            LOG.error("Failed to create IndexingService", e);
+            throw new RuntimeException("Failed to create IndexingService", e);
+        }
+    }
+
+    /**
+     * Loads the taxi zone lookup if configured.
+     *
+     * @return zone lookup, or null without a centroids file
+     */
+    private TaxiZoneCentroids loadZoneCentroids() {
+        String path = indexingConfig.zoneCentroidsPath().orElse("");
+        if (path.isEmpty()) {
+            return null;
+        }
+        try {
+            TaxiZoneCentroids zones = TaxiZoneCentroids.load(Paths.get(path));
+            LOG.info("Loaded " + zones.size() + " taxi zone centroids from " + path +
+                    ", adding pickup/dropoff geo points to trip documents");
+            return zones;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load taxi zone centroids from " + path, e);
+        }
+    }
+
+    /**
+     * Routing of trip documents.
+     */
+    private TripRouting tripRouting(TaxiZoneCentroids zones) {
+        TripRouting routing = new TripRouting(TripRouting.Strategy.fromString(indexingConfig.routing()), zones);
+        if (routing.getStrategy() != TripRouting.Strategy.NONE) {
+            LOG.info("Routing trip documents by " + routing.getStrategy() + ", at least " +
+                    indexingConfig.routingShards() + " shards per monthly index");
+        }
+        return routing;
+    }
+
+    /**
+     * Metrics listener, combined with the adaptive rate controller when enabled.
+     */
+    private BulkIngester.Listener bulkListener(RateLimiter rateLimiter) {
+        if (!indexingConfig.adaptiveRateEnabled()) {
+            return metricsService.bulkListener();
+        }
+        int minRate = indexingConfig.adaptiveRateMinPerSecond();
+        int maxRate = Math.max(indexingConfig.adaptiveRateMaxPerSecond(), minRate);
+        AdaptiveRateController controller = AdaptiveRateController.builder()
+                .rateLimiter(rateLimiter)
+                .bounds(minRate, maxRate)
+                .increase(indexingConfig.adaptiveRateIncreasePerSecond())
+                .decreaseFactor(indexingConfig.adaptiveRateDecreaseFactor())
+                .latencyTargetMillis(indexingConfig.adaptiveRateLatencyTargetMs())
+                .intervalMillis(indexingConfig.adaptiveRateIntervalMs())
+                .build();
+        LOG.info("Adaptive indexing rate enabled: " + minRate + ".." + maxRate + " docs/s, latency target " +
+                indexingConfig.adaptiveRateLatencyTargetMs() + " ms");
+        return BulkIngester.Listener.of(metricsService.bulkListener(), controller);
+    }
+}
@@ -0,0 +1,179 @@
+package com.bscllc.taxis.ingest;
+
+import com.bscllc.taxis.app.RateLimiter;
+import com.bscllc.taxis.service.BulkIngester;
+import com.bscllc.taxis.service.ChunkSpool;
+import com.bscllc.taxis.service.DatabaseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for managing application metrics. Uses the meter names of the database and indexing
+ * applications, so their dashboards work unchanged.
+ */
+@ApplicationScoped
+public class MetricsService {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter filesProcessed;
+    private final Counter filesErrored;
+    private final Counter recordsInserted;
+    private final Counter recordsIndexed;
+    private final Counter tablesCreated;
+    private final Counter chunksSpooled;
+    private final Timer bulkSucceeded;
+    private final Timer bulkFailed;
+
+    @Inject
+    public MetricsService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        this.filesProcessed = Counter.builder("taxis.files.processed")
+                .description("Total number of files processed successfully")
+                .register(meterRegistry);
+
+        this.filesErrored = Counter.builder("taxis.files.errored")
+                .description("Total number of files that failed to process")
+                .register(meterRegistry);
+
+        this.recordsInserted = Counter.builder("taxis.records.inserted")
+                .description("Total number of records inserted into the database")
+                .tag("type", "database")
+                .register(meterRegistry);
+
+        this.recordsIndexed = Counter.builder("taxis.records.indexed")
+                .description("Total number of records indexed into OpenSearch")
+                .tag("type", "opensearch")
+                .register(meterRegistry);
+
+        this.tablesCreated = Counter.builder("taxis.tables.created")
+                .description("Total number of database tables created")
+                .register(meterRegistry);
+
+        this.chunksSpooled = Counter.builder("taxis.chunks.spooled")
+                .description("Total number of chunks spooled to disk while the database was unreachable")
+                .register(meterRegistry);
+
+        this.bulkSucceeded = Timer.builder("taxis.bulk.requests")
+                .description("Bulk request latency per attempt")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+
+        this.bulkFailed = Timer.builder("taxis.bulk.requests")
+                .description("Bulk request latency per attempt")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a gauge reporting the number of spooled chunks waiting to be written to one shard.
+     *
+     * @param spool spool to observe
+     * @param shard shard number the spool belongs to
+     */
+    public void registerSpoolGauge(ChunkSpool spool, int shard) {
+        Gauge.builder("taxis.spool.pending", spool, ChunkSpool::pendingSegments)
+                .description("Number of spooled chunks waiting to be written to the database")
+                .tag("shard", String.valueOf(shard))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a counter reporting rows moved to the reject table of one shard.
+     *
+     * @param databaseService service whose rejects are counted
+     * @param shard shard number of the service
+     */
+    public void registerRejectCounter(DatabaseService databaseService, int shard) {
+        FunctionCounter.builder("taxis.records.rejected", databaseService, DatabaseService::getRejectedRecords)
+                .description("Total number of records refused by the database and moved to the reject table")
+                .tag("shard", String.valueOf(shard))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers the in-flight gauge and the retried/dropped document counters of a bulk ingester.
+     *
+     * @param ingester bulk ingester
+     */
+    public void registerBulkIngester(BulkIngester ingester) {
+        Gauge.builder("taxis.bulk.inflight", ingester, BulkIngester::getInFlightRequests)
+                .description("Bulk requests currently in flight")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("taxis.bulk.documents.retried", ingester, BulkIngester::getRetriedDocuments)
+                .description("Documents resent after a transient bulk item rejection")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("taxis.bulk.documents.dropped", ingester, BulkIngester::getDroppedDocuments)
+                .description("Documents refused by OpenSearch and written to the dead-letter file")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a gauge of the current indexing rate limit.
+     *
+     * @param rateLimiter rate limiter
+     */
+    public void registerRateLimiter(RateLimiter rateLimiter) {
+        Gauge.builder("taxis.indexing.rate", rateLimiter, RateLimiter::getRate)
+                .description("Current indexing rate limit in documents per second")
+                .baseUnit("documents")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates a bulk listener recording request latency by outcome.
+     *
+     * @return bulk listener
+     */
+    public BulkIngester.Listener bulkListener() {
+        return new BulkIngester.Listener() {
+            @Override
+            public void afterBulk(long executionId, int operations, BulkResponse response, long tookNanos) {
+                bulkSucceeded.record(tookNanos, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void onRetry(long executionId, int operations, Throwable failure, long tookNanos) {
+                bulkFailed.record(tookNanos, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void afterFailure(long executionId, int operations, Throwable failure, long tookNanos) {
+                bulkFailed.record(tookNanos, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    public void incrementFilesProcessed() {
+        filesProcessed.increment();
+    }
+
+    public void incrementFilesErrored() {
+        filesErrored.increment();
+    }
+
+    public void incrementRecordsInserted(long count) {
+        recordsInserted.increment(count);
+    }
+
+    public void incrementRecordsIndexed(long count) {
+        recordsIndexed.increment(count);
+    }
+
+    public void incrementTablesCreated() {
+        tablesCreated.increment();
+    }
+
+    public void incrementChunksSpooled() {
+        chunksSpooled.increment();
+    }
+}
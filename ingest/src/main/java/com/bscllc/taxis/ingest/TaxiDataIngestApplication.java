@@ -0,0 +1,37 @@
+package com.bscllc.taxis.ingest;
+
+import io.quarkus.runtime.Quarkus;
+import io.quarkus.runtime.QuarkusApplication;
+import io.quarkus.runtime.annotations.QuarkusMain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+
+/**
+ * Main Quarkus application for ingesting taxi trip data into PostgreSQL and OpenSearch from a
+ * single watched directory.
+ */
+@QuarkusMain
+public class TaxiDataIngestApplication implements QuarkusApplication {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaxiDataIngestApplication.class);
+
+    @Inject
+    FileProcessingService fileProcessingService;
+
+    @Override
+    public int run(String... args) {
+        LOG.info("Taxi Data Ingest Application started");
+        LOG.info("Monitoring directory: " + fileProcessingService.getMonitor().getDirectory());
+        LOG.info("Scan period: " + fileProcessingService.getMonitor().getScanPeriodMillis() + " ms");
+
+        // Keep the application running
+        Quarkus.waitForExit();
+        return 0;
+    }
+
+    public static void main(String... args) {
+        Quarkus.run(TaxiDataIngestApplication.class, args);
+    }
+}
@@ -0,0 +1,102 @@
+package com.bscllc.taxis.ingest.config;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+import io.smallrye.config.WithName;
+
+/**
+ * Configuration properties for the ingest application: the watched directories and the
+ * fan-out pipeline shared by the PostgreSQL and OpenSearch sinks.
+ */
+@ConfigMapping(prefix = "taxis.ingest")
+public interface IngestConfig {
+
+    /**
+     * Input directory to monitor for parquet files.
+     */
+    @WithName("input-directory")
+    String inputDirectory();
+
+    /**
+     * Output directory for files stored by every sink.
+     */
+    @WithName("output-directory")
+    String outputDirectory();
+
+    /**
+     * Error directory for files that couldn't be processed by one of the sinks.
+     */
+    @WithName("error-directory")
+    String errorDirectory();
+
+    /**
+     * Time period in milliseconds to monitor the input directory.
+     */
+    @WithName("monitor-period-ms")
+    long monitorPeriodMs();
+
+    /**
+     * Properties file remembering the sinks that completed a file that failed in another sink,
+     * so that dropping the file again only writes to the sinks that did not.
+     */
+    @WithName("state-file")
+    @WithDefault("./data/state/ingest-progress.properties")
+    String stateFile();
+
+    /**
+     * Number of parsed records handed to both sinks at a time.
+     */
+    @WithName("chunk-size")
+    @WithDefault("5000")
+    int chunkSize();
+
+    /**
+     * Maximum number of parsed chunks waiting per sink before parsing blocks.
+     */
+    @WithName("queue-capacity")
+    @WithDefault("4")
+    int queueCapacity();
+
+    /**
+     * Number of concurrent writers per sink.
+     */
+    @WithName("writer-threads")
+    @WithDefault("2")
+    int writerThreads();
+
+    /**
+     * Thread model for writers: PLATFORM threads, or VIRTUAL threads so many blocking
+     * writes can be in flight without one OS thread each.
+     */
+    @WithName("executor-mode")
+    @WithDefault("PLATFORM")
+    String executorMode();
+
+    /**
+     * Whether chunks are spooled to disk while a database shard is unreachable.
+     */
+    @WithName("spool-enabled")
+    @WithDefault("true")
+    boolean spoolEnabled();
+
+    /**
+     * Directory holding spooled chunks; one subdirectory per shard when sharded.
+     */
+    @WithName("spool-directory")
+    @WithDefault("./data/spool")
+    String spoolDirectory();
+
+    /**
+     * First delay in milliseconds before replaying spooled chunks to an unreachable shard.
+     */
+    @WithName("spool-initial-backoff-ms")
+    @WithDefault("1000")
+    long spoolInitialBackoffMs();
+
+    /**
+     * Longest delay in milliseconds between replay attempts.
+     */
+    @WithName("spool-max-backoff-ms")
+    @WithDefault("60000")
+    long spoolMaxBackoffMs();
+}
@@ -0,0 +1,12 @@
+package com.bscllc.taxis.ingest.config;
+
+import com.bscllc.taxis.config.DatabaseConfig;
+import io.smallrye.config.ConfigMapping;
+
+/**
+ * The database module's {@code taxis.database} properties, registered for the ingest
+ * application. Dependency jars are not indexed, so their mappings are redeclared here.
+ */
+@ConfigMapping(prefix = "taxis.database")
+public interface IngestDatabaseConfig extends DatabaseConfig {
+}
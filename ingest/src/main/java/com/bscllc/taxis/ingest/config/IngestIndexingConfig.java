@@ -0,0 +1,12 @@
+package com.bscllc.taxis.ingest.config;
+
+import com.bscllc.taxis.config.IndexingConfig;
+import io.smallrye.config.ConfigMapping;
+
+/**
+ * The indexing module's {@code taxis.indexing} properties, registered for the ingest
+ * application.
+ */
+@ConfigMapping(prefix = "taxis.indexing")
+public interface IngestIndexingConfig extends IndexingConfig {
+}
@@ -0,0 +1,12 @@
+package com.bscllc.taxis.ingest.config;
+
+import com.bscllc.taxis.config.OpenSearchConfig;
+import io.smallrye.config.ConfigMapping;
+
+/**
+ * The indexing module's {@code taxis.opensearch} properties, registered for the ingest
+ * application.
+ */
+@ConfigMapping(prefix = "taxis.opensearch")
+public interface IngestOpenSearchConfig extends OpenSearchConfig {
+}